@@ -0,0 +1,133 @@
+//    <TMSEG: Prediction of Transmembrane Helices in Proteins.>
+//    Copyright (C) 2014  Michael Bernhofer
+//
+//    This program is free software: you can redistribute it and/or modify
+//    it under the terms of the GNU General Public License as published by
+//    the Free Software Foundation, either version 3 of the License, or
+//    (at your option) any later version.
+//
+//    This program is distributed in the hope that it will be useful,
+//    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//    GNU General Public License for more details.
+//
+//    You should have received a copy of the GNU General Public License
+//    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package bench;
+
+import java.io.File;
+import java.util.Random;
+
+import main.Generator;
+import predictors.HelixIndexer;
+import predictors.HelixPredictor;
+import predictors.TopologyPredictor;
+import data.Protein;
+import data.Pssm;
+
+
+/**
+ * Provides synthetic proteins, PSSMs and stand-in models for the benchmarks
+ * (see main.Generator), so that the suite runs without the production models and data.
+ */
+public class Synthetic {
+	
+	
+	private static HelixIndexer 		helixIndexer 		= null;
+	private static HelixPredictor 		helixPredictor 		= null;
+	private static TopologyPredictor 	topologyPredictor 	= null;
+	
+	
+	/**
+	 * Returns the directory used for synthetic PSSM and model files.
+	 * 
+	 * @return
+	 */
+	public static File getDirectory()
+	{
+		File directory = new File(System.getProperty("java.io.tmpdir"), "tmseg-bench");
+		
+		directory.mkdirs();
+		
+		return directory;
+	}
+	
+	
+	/**
+	 * Creates a synthetic protein with the given number of transmembrane helices
+	 * and a PSSM read from a PSI-BLAST formatted file. The number of helices
+	 * is reduced if they do not fit into the sequence.
+	 * 
+	 * @param name
+	 * @param length
+	 * @param helices
+	 * @param seed
+	 * @return
+	 */
+	public static Protein protein(String name, int length, int helices, long seed)
+	{
+		Random 	random 	= new Random(seed);
+		Protein protein = Generator.newProtein(name, length, helices, false, 0, random);
+		String 	folder 	= getDirectory().getPath();
+		
+		Generator.writeProtein(protein, folder, folder, false, random);
+		
+		protein.setPssm(Pssm.newPssm(new File(folder, name + ".pssm").getPath(), length));
+		
+		return protein;
+	}
+	
+	
+	public static HelixIndexer getHelixIndexer()
+	{
+		loadModels();
+		
+		return helixIndexer;
+	}
+	
+	
+	public static HelixPredictor getHelixPredictor()
+	{
+		loadModels();
+		
+		return helixPredictor;
+	}
+	
+	
+	public static TopologyPredictor getTopologyPredictor()
+	{
+		loadModels();
+		
+		return topologyPredictor;
+	}
+	
+	
+	/**
+	 * Loads the stand-in models, which are generated on first use and cached on disk.
+	 */
+	private static synchronized void loadModels()
+	{
+		if (helixIndexer != null) {return;}
+		
+		File modelFolder = new File(getDirectory(), "models");
+		
+		if (!new File(modelFolder, "tPredictor.model").exists())
+		{
+			Generator.writeModels(modelFolder.getPath(), 40, new Random(1));
+		}
+		
+		helixIndexer 		= new HelixIndexer();
+		helixPredictor 		= new HelixPredictor();
+		topologyPredictor 	= new TopologyPredictor();
+		
+		helixIndexer.initialize();
+		helixPredictor.initialize();
+		topologyPredictor.initialize();
+		
+		helixIndexer.loadModelFromFile(modelFolder.getPath() + "/hIndexer");
+		helixPredictor.loadModelFromFile(modelFolder.getPath() + "/hPredictor");
+		topologyPredictor.loadModelFromFile(modelFolder.getPath() + "/tPredictor");
+	}
+
+}
@@ -0,0 +1,75 @@
+//    <TMSEG: Prediction of Transmembrane Helices in Proteins.>
+//    Copyright (C) 2014  Michael Bernhofer
+//
+//    This program is free software: you can redistribute it and/or modify
+//    it under the terms of the GNU General Public License as published by
+//    the Free Software Foundation, either version 3 of the License, or
+//    (at your option) any later version.
+//
+//    This program is distributed in the hope that it will be useful,
+//    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//    GNU General Public License for more details.
+//
+//    You should have received a copy of the GNU General Public License
+//    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package data;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import bench.Synthetic;
+
+
+/**
+ * Benchmarks parsing of PSI-BLAST PSSM files.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class PssmBenchmark {
+	
+	
+	@Param({"100", "500", "2000", "10000"})
+	public int 		length;
+	
+	@Param({"0", "4", "12"})
+	public int 		helices;
+	
+	private String 	pssmFile 	= null;
+	
+	
+	@Setup
+	public void setup()
+	{
+		String name = "pssm_" + this.length + "_" + this.helices;
+		
+		Synthetic.protein(name, this.length, this.helices, 1);
+		
+		this.pssmFile = new File(Synthetic.getDirectory(), name + ".pssm").getPath();
+	}
+	
+	
+	@Benchmark
+	public Pssm parse()
+	{
+		return Pssm.newPssm(this.pssmFile, this.length);
+	}
+
+}
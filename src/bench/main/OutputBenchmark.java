@@ -0,0 +1,102 @@
+//    <TMSEG: Prediction of Transmembrane Helices in Proteins.>
+//    Copyright (C) 2014  Michael Bernhofer
+//
+//    This program is free software: you can redistribute it and/or modify
+//    it under the terms of the GNU General Public License as published by
+//    the Free Software Foundation, either version 3 of the License, or
+//    (at your option) any later version.
+//
+//    This program is distributed in the hope that it will be useful,
+//    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//    GNU General Public License for more details.
+//
+//    You should have received a copy of the GNU General Public License
+//    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package main;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import processing.Processing;
+import util.Globals;
+import bench.Synthetic;
+import data.Prediction;
+import data.Protein;
+
+
+/**
+ * Benchmarks writing of the refined (.tmseg) and raw prediction files.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class OutputBenchmark {
+	
+	
+	@Param({"100", "500", "2000", "10000"})
+	public int 		length;
+	
+	@Param({"0", "4", "12"})
+	public int 		helices;
+	
+	private Prediction 	prediction 	= null;
+	private String 		outFile 	= null;
+	private String 		outFileRaw 	= null;
+	
+	
+	@Setup
+	public void setup()
+	{
+		String 	name 	= "output_" + this.length + "_" + this.helices;
+		Protein protein = Synthetic.protein(name, this.length, this.helices, 1);
+		
+		this.outFile 	= new File(Synthetic.getDirectory(), name + ".tmseg").getPath();
+		this.outFileRaw = new File(Synthetic.getDirectory(), name + ".tmseg-raw").getPath();
+		
+		Synthetic.getHelixIndexer().predict(protein);
+		
+		Processing.process(protein, false, 7, Globals.PROCESSING_WEIGHT_SOL, Globals.PROCESSING_WEIGHT_TMH, Globals.PROCESSING_WEIGHT_SIG);
+		
+		Synthetic.getHelixPredictor().predict(protein, 0.0);
+		
+		Processing.tmpCheck(protein);
+		
+		Synthetic.getTopologyPredictor().predict(protein, 0.45);
+		
+		Processing.assignConfidence(protein);
+		
+		this.prediction = Prediction.newPrediction(protein, true);
+	}
+	
+	
+	@Benchmark
+	public void writeRefinedPrediction()
+	{
+		TMSEG.writeRefinedPrediction(this.prediction, this.outFile);
+	}
+	
+	
+	@Benchmark
+	public void writeRawPrediction()
+	{
+		TMSEG.writeRawPrediction(this.prediction, this.outFileRaw);
+	}
+
+}
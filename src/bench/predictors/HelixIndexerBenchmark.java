@@ -0,0 +1,93 @@
+//    <TMSEG: Prediction of Transmembrane Helices in Proteins.>
+//    Copyright (C) 2014  Michael Bernhofer
+//
+//    This program is free software: you can redistribute it and/or modify
+//    it under the terms of the GNU General Public License as published by
+//    the Free Software Foundation, either version 3 of the License, or
+//    (at your option) any later version.
+//
+//    This program is distributed in the hope that it will be useful,
+//    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//    GNU General Public License for more details.
+//
+//    You should have received a copy of the GNU General Public License
+//    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package predictors;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import bench.Synthetic;
+import data.Protein;
+import data.Pssm;
+
+
+/**
+ * Benchmarks the window feature extraction and the residue-wise
+ * prediction of the HelixIndexer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class HelixIndexerBenchmark {
+	
+	
+	@Param({"100", "500", "2000"})
+	public int 				length;
+	
+	@Param({"0", "4", "12"})
+	public int 				helices;
+	
+	private HelixIndexer 	helixIndexer 	= null;
+	private Protein 		protein 		= null;
+	
+	
+	@Setup
+	public void setup()
+	{
+		this.helixIndexer 	= Synthetic.getHelixIndexer();
+		this.protein 		= Synthetic.protein("indexer_" + this.length + "_" + this.helices, this.length, this.helices, 1);
+		
+		//sets the global composition used by buildInstance
+		this.helixIndexer.predict(this.protein);
+	}
+	
+	
+	@Benchmark
+	public void buildInstance(Blackhole blackhole)
+	{
+		Pssm pssm = this.protein.getPssm();
+		
+		for (int i = 0; i < this.length; ++i)
+		{
+			blackhole.consume(this.helixIndexer.buildInstance(pssm, i));
+		}
+	}
+	
+	
+	@Benchmark
+	public int[] predict()
+	{
+		this.helixIndexer.predict(this.protein);
+		
+		return this.protein.getTmhRaw();
+	}
+
+}
@@ -0,0 +1,84 @@
+//    <TMSEG: Prediction of Transmembrane Helices in Proteins.>
+//    Copyright (C) 2014  Michael Bernhofer
+//
+//    This program is free software: you can redistribute it and/or modify
+//    it under the terms of the GNU General Public License as published by
+//    the Free Software Foundation, either version 3 of the License, or
+//    (at your option) any later version.
+//
+//    This program is distributed in the hope that it will be useful,
+//    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//    GNU General Public License for more details.
+//
+//    You should have received a copy of the GNU General Public License
+//    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package processing;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import util.Globals;
+import bench.Synthetic;
+import data.Protein;
+
+
+/**
+ * Benchmarks the median filter and the conversion of the raw
+ * HelixIndexer scores into a structure prediction.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ProcessingBenchmark {
+	
+	
+	@Param({"100", "500", "2000", "10000"})
+	public int 		length;
+	
+	@Param({"0", "4", "12"})
+	public int 		helices;
+	
+	private Protein protein = null;
+	
+	
+	@Setup
+	public void setup()
+	{
+		this.protein = Synthetic.protein("processing_" + this.length + "_" + this.helices, this.length, this.helices, 1);
+		
+		Synthetic.getHelixIndexer().predict(this.protein);
+	}
+	
+	
+	@Benchmark
+	public int[] medianFilter()
+	{
+		return Processing.medianFilter(this.protein.getTmhRaw(), 5);
+	}
+	
+	
+	@Benchmark
+	public byte[] processPrediction()
+	{
+		Processing.processPrediction(this.protein, 7, Globals.PROCESSING_WEIGHT_SOL, Globals.PROCESSING_WEIGHT_TMH, Globals.PROCESSING_WEIGHT_SIG);
+		
+		return this.protein.getPrediction();
+	}
+
+}
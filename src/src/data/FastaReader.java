@@ -32,6 +32,58 @@ public class FastaReader {
 	 * @return
 	 */
 	public static ArrayList<Protein> readFastaFile(String filename)
+	{
+		FReader.openFile(filename);
+		
+		return readFasta();
+	}
+	
+	
+	/**
+	 * Read (multi-line) FASTA records given as text, the name is used in messages only
+	 * 
+	 * @param name
+	 * @param text
+	 * @return
+	 */
+	public static ArrayList<Protein> readFastaText(String name, String text)
+	{
+		FReader.openText(name, text);
+		
+		return readFasta();
+	}
+	
+	
+	/**
+	 * Read (multi-line) structure files
+	 * 
+	 * @param filename
+	 * @return
+	 */
+	public static ArrayList<Protein> readStructureFile(String filename)
+	{
+		FReader.openFile(filename);
+		
+		return readStructure();
+	}
+	
+	
+	/**
+	 * Read structure records given as text, the name is used in messages only
+	 * 
+	 * @param name
+	 * @param text
+	 * @return
+	 */
+	public static ArrayList<Protein> readStructureText(String name, String text)
+	{
+		FReader.openText(name, text);
+		
+		return readStructure();
+	}
+	
+	
+	private static ArrayList<Protein> readFasta()
 	{
 		ArrayList<Protein> 	proteins 	= new ArrayList<Protein>();
 		StringBuilder 		sequence 	= new StringBuilder();
@@ -40,8 +92,6 @@ public class FastaReader {
 		String 				name 		= null;
 		String 				header 		= null;
 		
-		FReader.openFile(filename);
-		
 		line = FReader.readLine();
 		
 		while (line != null)
@@ -79,13 +129,7 @@ public class FastaReader {
 	}
 	
 	
-	/**
-	 * Read (multi-line) structure files
-	 * 
-	 * @param filename
-	 * @return
-	 */
-	public static ArrayList<Protein> readStructureFile(String filename)
+	private static ArrayList<Protein> readStructure()
 	{
 		ArrayList<Protein> 	proteins 	= new ArrayList<Protein>();
 		String[] 			content 	= null;
@@ -95,8 +139,6 @@ public class FastaReader {
 		String 				sequence 	= null;
 		String 				structure 	= null;
 		
-		FReader.openFile(filename);
-		
 		line = FReader.readLine();
 		
 		while (line != null)
@@ -0,0 +1,272 @@
+//    <TMSEG: Prediction of Transmembrane Helices in Proteins.>
+//    Copyright (C) 2014  Michael Bernhofer
+//
+//    This program is free software: you can redistribute it and/or modify
+//    it under the terms of the GNU General Public License as published by
+//    the Free Software Foundation, either version 3 of the License, or
+//    (at your option) any later version.
+//
+//    This program is distributed in the hope that it will be useful,
+//    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//    GNU General Public License for more details.
+//
+//    You should have received a copy of the GNU General Public License
+//    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package data;
+
+import java.util.Arrays;
+
+import util.Mappings;
+
+
+/**
+ * Immutable result of the prediction of a protein: the predicted segments with
+ * their confidence and, if requested, the raw scores in permille. Once it is
+ * created, the protein (including its PSSM and the working arrays of the
+ * predictors) is no longer needed for the output.
+ * The arrays returned by the getters are shared and must not be modified.
+ */
+public class Prediction {
+	
+	
+	private final String 	name;
+	private final String 	header;
+	private final byte[] 	sequence;
+	
+	private final int[] 	starts;
+	private final int[] 	ends; //inclusive
+	private final byte[] 	types;
+	private final byte[] 	confidence; //-1 if no confidence was assigned
+	
+	private final short[] 	solRaw;
+	private final short[] 	tmhRaw;
+	private final short[] 	sigRaw;
+	private final short[] 	segmentRaw;
+	private final int 		topologyRaw;
+	
+	private final boolean 	isPredTmp;
+	private final boolean 	hasPredSigP;
+	
+	
+	private Prediction(Protein protein, boolean keepRaw)
+	{
+		SegmentIndex 	segments 	= protein.getSegments();
+		int[] 			confidence 	= protein.getConfidence();
+		int 			size 		= segments != null ? segments.size() : 0;
+		
+		this.name 		= protein.getName();
+		this.header 	= protein.getHeader();
+		this.sequence 	= protein.getSequence();
+		this.starts 	= new int[size];
+		this.ends 		= new int[size];
+		this.types 		= new byte[size];
+		this.confidence = new byte[size];
+		
+		for (int k = 0; k < size; ++k)
+		{
+			this.starts[k] 	= segments.getStart(k);
+			this.ends[k] 	= segments.getEnd(k);
+			this.types[k] 	= segments.getType(k);
+			
+			//the refined output has always reported the confidence of the second residue
+			if (confidence != null && Mappings.ssOf(this.types[k]) == Mappings.indexTmh) 	{this.confidence[k] = (byte)confidence[this.starts[k]+1];}
+			else 																			{this.confidence[k] = -1;}
+		}
+		
+		this.solRaw 		= keepRaw ? quantize(protein.getSolRaw()) : null;
+		this.tmhRaw 		= keepRaw ? quantize(protein.getTmhRaw()) : null;
+		this.sigRaw 		= keepRaw ? quantize(protein.getSigRaw()) : null;
+		this.segmentRaw 	= keepRaw ? quantize(protein.getSegmentRaw()) : null;
+		this.topologyRaw 	= protein.getTopologyRaw();
+		this.isPredTmp 		= protein.isPredTmp();
+		this.hasPredSigP 	= protein.hasPredSigP();
+	}
+	
+	
+	/**
+	 * Creates a result from its parts (see RawFormat), the arrays are not copied.
+	 * 
+	 * @param name
+	 * @param header
+	 * @param sequence
+	 * @param starts
+	 * @param ends
+	 * @param types
+	 * @param confidence
+	 * @param raw
+	 * @param topologyRaw
+	 * @param isPredTmp
+	 * @param hasPredSigP
+	 */
+	Prediction(String name, String header, byte[] sequence, int[] starts, int[] ends, byte[] types, byte[] confidence, short[][] raw, int topologyRaw, boolean isPredTmp, boolean hasPredSigP)
+	{
+		this.name 			= name;
+		this.header 		= header;
+		this.sequence 		= sequence;
+		this.starts 		= starts;
+		this.ends 			= ends;
+		this.types 			= types;
+		this.confidence 	= confidence;
+		this.solRaw 		= raw[0];
+		this.tmhRaw 		= raw[1];
+		this.sigRaw 		= raw[2];
+		this.segmentRaw 	= raw[3];
+		this.topologyRaw 	= topologyRaw;
+		this.isPredTmp 		= isPredTmp;
+		this.hasPredSigP 	= hasPredSigP;
+	}
+	
+	
+	/**
+	 * Creates the result of a predicted protein. The raw scores are only kept
+	 * if requested (raw output or shadow checks).
+	 * 
+	 * @param protein
+	 * @param keepRaw
+	 * @return
+	 */
+	public static Prediction newPrediction(Protein protein, boolean keepRaw)
+	{
+		if (protein == null || protein.getSequence() == null || protein.getPrediction() == null) {return null;}
+		
+		return new Prediction(protein, keepRaw);
+	}
+	
+	
+	public String getName()
+	{
+		return this.name;
+	}
+	
+	
+	public String getHeader()
+	{
+		return this.header;
+	}
+	
+	
+	public byte[] getSequence()
+	{
+		return this.sequence;
+	}
+	
+	
+	public int getLength()
+	{
+		return this.sequence.length;
+	}
+	
+	
+	public int size()
+	{
+		return this.starts.length;
+	}
+	
+	
+	public int getStart(int segment)
+	{
+		return this.starts[segment];
+	}
+	
+	
+	public int getEnd(int segment)
+	{
+		return this.ends[segment];
+	}
+	
+	
+	public byte getType(int segment)
+	{
+		return this.types[segment];
+	}
+	
+	
+	public int getConfidence(int segment)
+	{
+		return this.confidence[segment];
+	}
+	
+	
+	public short[] getSolRaw()
+	{
+		return this.solRaw;
+	}
+	
+	
+	public short[] getTmhRaw()
+	{
+		return this.tmhRaw;
+	}
+	
+	
+	public short[] getSigRaw()
+	{
+		return this.sigRaw;
+	}
+	
+	
+	public short[] getSegmentRaw()
+	{
+		return this.segmentRaw;
+	}
+	
+	
+	public int getTopologyRaw()
+	{
+		return this.topologyRaw;
+	}
+	
+	
+	public boolean isPredTmp()
+	{
+		return this.isPredTmp;
+	}
+	
+	
+	public boolean hasPredSigP()
+	{
+		return this.hasPredSigP;
+	}
+	
+	
+	/**
+	 * Expands the segments into a new array of state codes (see Mappings).
+	 * 
+	 * @return
+	 */
+	public byte[] getStates()
+	{
+		byte[] states = new byte[this.sequence.length];
+		
+		for (int k = 0; k < this.starts.length; ++k)
+		{
+			Arrays.fill(states, this.starts[k], this.ends[k] + 1, this.types[k]);
+		}
+		
+		return states;
+	}
+	
+	
+	/**
+	 * Stores raw scores (permille, -1 if missing) as shorts without loss.
+	 * 
+	 * @param raw
+	 * @return
+	 */
+	private static short[] quantize(int[] raw)
+	{
+		if (raw == null) {return null;}
+		
+		short[] values = new short[raw.length];
+		
+		for (int i = 0; i < raw.length; ++i)
+		{
+			values[i] = (short)Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, raw[i]));
+		}
+		
+		return values;
+	}
+
+}
@@ -19,17 +19,24 @@ package data;
 import java.util.Arrays;
 
 import util.ErrorUtils;
+import util.Mappings;
 
+/**
+ * Sequence, structure and prediction are stored as byte codes (see Mappings)
+ * and decoded into characters for the output only. The segments of the
+ * prediction are indexed (see SegmentIndex).
+ */
 public class Protein {
 	
 	
 	private String 		name 		= null;
 	private String 		header 		= null;
-	private char[] 		sequence 	= null;
-	private char[] 		structure 	= null;
+	private byte[] 		sequence 	= null;
+	private byte[] 		structure 	= null;
 	private Pssm 		pssm 		= null;
 	
-	private char[] 		prediction 	= null;
+	private byte[] 		prediction 	= null;
+	private SegmentIndex segments 	= null;
 	private int[] 		confidence 	= null;
 	private int[] 		solRaw 		= null;
 	private int[] 		tmhRaw 		= null;
@@ -46,9 +53,10 @@ public class Protein {
 	{
 		this.name 			= name;
 		this.header 		= header;
-		this.sequence 		= sequence.toCharArray();
-		this.structure 		= structure.toCharArray();
-		this.prediction 	= new char[this.structure.length];
+		this.sequence 		= Mappings.encodeResidues(sequence);
+		this.structure 		= Mappings.encodeStates(structure);
+		this.prediction 	= new byte[this.structure.length];
+		this.segments 		= new SegmentIndex(this.prediction);
 		this.isRealTmp 		= structure.contains("H") || structure.contains("h");
 		this.hasRealSigP 	= structure.contains("S") || structure.contains("s");
 	}
@@ -111,15 +119,37 @@ public class Protein {
 	}
 	
 	
-	public void setPrediction(char[] prediction)
+	/**
+	 * Sets the prediction and indexes its segments. Must be called again
+	 * if the prediction array was changed directly.
+	 * 
+	 * @param prediction
+	 */
+	public void setPrediction(byte[] prediction)
 	{
 		if (prediction.length == this.sequence.length)
 		{
 			this.prediction = prediction;
+			this.segments 	= new SegmentIndex(prediction);
 		}
 	}
 	
 	
+	/**
+	 * Sets the predicted state from start to end (inclusive) and updates the segments.
+	 * 
+	 * @param start
+	 * @param end
+	 * @param state
+	 */
+	public void setPrediction(int start, int end, byte state)
+	{
+		Arrays.fill(this.prediction, start, end + 1, state);
+		
+		this.segments.update(this.prediction, start, end);
+	}
+	
+	
 	public void setConfidence(int[] confidence)
 	{
 		if (confidence.length == this.sequence.length)
@@ -183,13 +213,19 @@ public class Protein {
 	}
 	
 	
-	public char[] getSequence()
+	public byte[] getSequence()
 	{
 		return this.sequence;
 	}
 	
 	
-	public char[] getStructure()
+	public int getLength()
+	{
+		return this.sequence.length;
+	}
+	
+	
+	public byte[] getStructure()
 	{
 		return this.structure;
 	}
@@ -201,12 +237,18 @@ public class Protein {
 	}
 	
 	
-	public char[] getPrediction()
+	public byte[] getPrediction()
 	{
 		return this.prediction;
 	}
 	
 	
+	public SegmentIndex getSegments()
+	{
+		return this.segments;
+	}
+	
+	
 	public int[] getConfidence()
 	{
 		return this.confidence;
@@ -19,23 +19,46 @@ package data;
 import io.FReader;
 
 import java.io.File;
+import java.nio.ByteBuffer;
 
 import util.ErrorUtils;
+import util.Globals;
 import util.Mappings;
 
+/**
+ * PSSM scores packed into one byte array (20 scores per position), or into a
+ * direct buffer outside the heap if Globals.PSSM_OFF_HEAP is set. The signs of
+ * the scores are kept as two 20-bit masks per position (bit j for amino acid j),
+ * packed back to back into a long array (5 bytes per position).
+ */
 public class Pssm {
 	
 	
-	private int 	length 	= 0;
-	private int[][] pssm 	= null; //matrix with the PSSM scores
+	private int 		length 			= 0;
+	private byte[] 		pssm 			= null; //PSSM scores, position after position
+	private ByteBuffer 	buffer 			= null; //PSSM scores (off-heap)
+	private long[] 		masks 			= null; //per position: amino acids with a score > 0 (low 20 bits) and < 0 (high 20 bits)
 	
+	private static final int 	MASK_BITS 	= 20;
+	private static final int 	MASK 		= (1 << MASK_BITS) - 1;
 	
-	private Pssm(String pssmFile, int seqLength)
+	
+	private Pssm(String pssmFile, String text, int seqLength)
 	{
-		this.length = seqLength;
-		this.pssm 	= new int[seqLength][20];
+		this.length 		= seqLength;
+		this.pssm 			= new byte[seqLength * 20];
+		this.masks 			= new long[(int)(((long)seqLength * 2 * MASK_BITS + 63) / 64)];
+		
+		if (!this.readPssmFile(pssmFile, text)) {this.length = -1;}
 		
-		if (!this.readPssmFile(pssmFile)) {this.length = -1;}
+		if (Globals.PSSM_OFF_HEAP && this.length > 0)
+		{
+			this.buffer = ByteBuffer.allocateDirect(this.pssm.length);
+			
+			this.buffer.put(this.pssm);
+			
+			this.pssm = null;
+		}
 	}
 	
 	
@@ -43,16 +66,7 @@ public class Pssm {
 	{
 		if ((new File(pssmFile)).exists())
 		{
-			Pssm pssm = new Pssm(pssmFile, seqLength);
-			
-			if (pssm.getLength() > 0)
-			{
-				return pssm;
-			}
-			else
-			{
-				return null;
-			}
+			return newPssm(pssmFile, null, seqLength);
 		}
 		else
 		{
@@ -63,11 +77,36 @@ public class Pssm {
 	}
 	
 	
-	private boolean readPssmFile(String pssmFile)
+	/**
+	 * Parses a PSSM given as text (e.g. read from a stream) instead of a file.
+	 * The name is used in messages only.
+	 * 
+	 * @param name
+	 * @param text
+	 * @param seqLength
+	 * @return
+	 */
+	public static Pssm newPssm(String name, String text, int seqLength)
+	{
+		Pssm pssm = new Pssm(name, text, seqLength);
+		
+		if (pssm.getLength() > 0)
+		{
+			return pssm;
+		}
+		else
+		{
+			return null;
+		}
+	}
+	
+	
+	private boolean readPssmFile(String pssmFile, String text)
 	{
 		int lines = 0;
 		
-		FReader.openFile(pssmFile);
+		if (text == null) 	{FReader.openFile(pssmFile);}
+		else 				{FReader.openText(pssmFile, text);}
 		
 		String line = FReader.readLine();
 		
@@ -101,23 +140,21 @@ public class Pssm {
 				}
 				
 				line 	= FReader.readLine();
-				line 	= line.trim();
-				content = line.split("\\s+");
+				content = line != null ? line.trim().split("\\s+") : new String[0]; //truncated file
 				
 				while (content.length == 44)
 				{
-					int pos = Integer.valueOf(content[0]) - 1;
-					
-					for (int i = 0; i < 20; ++i)
+					if (!this.parseRow(content, newIndexPssm))
 					{
-						int value = Integer.valueOf(content[i+2]);
+						ErrorUtils.printError(this.getClass(), "Malformed pssm matrix row in " + pssmFile + ": " + line.trim(), null);
+						
+						FReader.closeFile();
 						
-						this.pssm[pos][newIndexPssm[i]] = value;
+						return false;
 					}
 					
 					line 	= FReader.readLine();
-					line 	= line.trim();
-					content = line.split("\\s+");
+					content = line != null ? line.trim().split("\\s+") : new String[0];
 					
 					++lines;
 				}
@@ -141,6 +178,80 @@ public class Pssm {
 	}
 	
 	
+	/**
+	 * Stores the scores of a matrix row (position, residue, 20 scores, ...),
+	 * returns false if the row is malformed.
+	 * 
+	 * @param content
+	 * @param indexPssm
+	 * @return
+	 */
+	private boolean parseRow(String[] content, int[] indexPssm)
+	{
+		int 	pos 	= 0;
+		int[] 	values 	= new int[20];
+		
+		try
+		{
+			pos = Integer.parseInt(content[0]) - 1;
+			
+			for (int i = 0; i < 20; ++i) {values[i] = Integer.parseInt(content[i+2]);}
+		}
+		catch (NumberFormatException e)
+		{
+			return false;
+		}
+		
+		if (pos < 0 || pos >= this.length) {return false;}
+		
+		long conserved 		= 0;
+		long nonConserved 	= 0;
+		
+		for (int i = 0; i < 20; ++i)
+		{
+			int value = values[i];
+			int index = indexPssm[i];
+			
+			//PSI-BLAST scores are far within the byte range
+			this.pssm[pos * 20 + index] = (byte)Math.max(Byte.MIN_VALUE, Math.min(Byte.MAX_VALUE, value));
+			
+			if (value > 0) 		{conserved 		|= 1L << index;}
+			else if (value < 0) {nonConserved 	|= 1L << index;}
+		}
+		
+		long 	bit 	= (long)pos * 2 * MASK_BITS;
+		int 	word 	= (int)(bit >>> 6);
+		int 	shift 	= (int)(bit & 63);
+		long 	value 	= conserved | (nonConserved << MASK_BITS);
+		
+		this.masks[word] |= value << shift;
+		
+		//the masks of a position may continue in the next word
+		if (shift > 64 - 2 * MASK_BITS) {this.masks[word+1] |= value >>> (64 - shift);}
+		
+		return true;
+	}
+	
+	
+	/**
+	 * Returns both masks of a position (conserved in the low 20 bits).
+	 * 
+	 * @param pos
+	 * @return
+	 */
+	private long getMasks(int pos)
+	{
+		long 	bit 	= (long)pos * 2 * MASK_BITS;
+		int 	word 	= (int)(bit >>> 6);
+		int 	shift 	= (int)(bit & 63);
+		long 	value 	= this.masks[word] >>> shift;
+		
+		if (shift > 64 - 2 * MASK_BITS) {value |= this.masks[word+1] << (64 - shift);}
+		
+		return value;
+	}
+	
+	
 	public int getLength()
 	{
 		return this.length;
@@ -149,7 +260,35 @@ public class Pssm {
 	
 	public int getScore(int pos, int aa)
 	{
-		return this.pssm[pos][aa];
+		if (this.buffer != null) {return this.buffer.get(pos * 20 + aa);}
+		
+		return this.pssm[pos * 20 + aa];
+	}
+	
+	
+	/**
+	 * Returns the amino acids with a positive score at the given position
+	 * as bit mask (bit j for amino acid j, see Mappings.aaToInt).
+	 * 
+	 * @param pos
+	 * @return
+	 */
+	public int getConserved(int pos)
+	{
+		return (int)this.getMasks(pos) & MASK;
+	}
+	
+	
+	/**
+	 * Returns the amino acids with a negative score at the given position
+	 * as bit mask (bit j for amino acid j, see Mappings.aaToInt).
+	 * 
+	 * @param pos
+	 * @return
+	 */
+	public int getNonConserved(int pos)
+	{
+		return (int)(this.getMasks(pos) >>> MASK_BITS) & MASK;
 	}
 
 }
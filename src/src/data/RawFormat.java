@@ -0,0 +1,296 @@
+//    <TMSEG: Prediction of Transmembrane Helices in Proteins.>
+//    Copyright (C) 2014  Michael Bernhofer
+//
+//    This program is free software: you can redistribute it and/or modify
+//    it under the terms of the GNU General Public License as published by
+//    the Free Software Foundation, either version 3 of the License, or
+//    (at your option) any later version.
+//
+//    This program is distributed in the hope that it will be useful,
+//    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//    GNU General Public License for more details.
+//
+//    You should have received a copy of the GNU General Public License
+//    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package data;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+
+/**
+ * Binary format of the raw prediction scores. A file starts with the magic
+ * bytes TMRW and the format version, followed by one or more records. A record
+ * is its length (varint) and the protein: name, header, length, flags,
+ * topology score, residue codes (see Mappings), the segments (state, length,
+ * RI) and one column per available raw score. The scores are permille values,
+ * stored as zigzag varints of the difference to the previous residue, i.e.
+ * mostly one byte per score instead of about eight characters of text.
+ */
+public class RawFormat {
+	
+	
+	public static final String 	EXTENSION 	= ".tmseg-rawb";
+	public static final int 	VERSION 	= 1;
+	
+	private static final byte[] MAGIC 		= {'T', 'M', 'R', 'W'};
+	private static final int 	COLUMNS 	= 4; //sol, tmh, sig, segment
+	private static final int 	FLAG_TMP 	= 1 << COLUMNS;
+	private static final int 	FLAG_SIGP 	= 1 << (COLUMNS + 1);
+	
+	
+	/**
+	 * Returns a complete file with the record of a single protein.
+	 * 
+	 * @param prediction
+	 * @return
+	 */
+	public static byte[] encodeFile(Prediction prediction)
+	{
+		ByteArrayOutputStream output = new ByteArrayOutputStream(4 * prediction.getLength() + 256);
+		
+		output.write(MAGIC, 0, MAGIC.length);
+		output.write(VERSION);
+		
+		encode(prediction, output);
+		
+		return output.toByteArray();
+	}
+	
+	
+	/**
+	 * Appends the record of a protein.
+	 * 
+	 * @param prediction
+	 * @param output
+	 */
+	public static void encode(Prediction prediction, ByteArrayOutputStream output)
+	{
+		ByteArrayOutputStream 	record 	= new ByteArrayOutputStream(4 * prediction.getLength() + 128);
+		short[][] 				raw 	= {prediction.getSolRaw(), prediction.getTmhRaw(), prediction.getSigRaw(), prediction.getSegmentRaw()};
+		int 					flags 	= 0;
+		
+		for (int j = 0; j < COLUMNS; ++j)
+		{
+			if (raw[j] != null) {flags |= 1 << j;}
+		}
+		
+		if (prediction.isPredTmp()) 	{flags |= FLAG_TMP;}
+		if (prediction.hasPredSigP()) 	{flags |= FLAG_SIGP;}
+		
+		writeString(record, prediction.getName());
+		writeString(record, prediction.getHeader());
+		writeVarint(record, prediction.getLength());
+		writeVarint(record, flags);
+		writeVarint(record, zigzag(prediction.getTopologyRaw()));
+		
+		record.write(prediction.getSequence(), 0, prediction.getLength());
+		
+		writeVarint(record, prediction.size());
+		
+		for (int k = 0; k < prediction.size(); ++k)
+		{
+			record.write(prediction.getType(k));
+			
+			writeVarint(record, prediction.getEnd(k) - prediction.getStart(k) + 1);
+			writeVarint(record, zigzag(prediction.getConfidence(k)));
+		}
+		
+		for (short[] scores : raw)
+		{
+			if (scores == null) {continue;}
+			
+			int previous = 0;
+			
+			for (short score : scores)
+			{
+				writeVarint(record, zigzag(score - previous));
+				
+				previous = score;
+			}
+		}
+		
+		writeVarint(output, record.size());
+		
+		output.write(record.toByteArray(), 0, record.size());
+	}
+	
+	
+	/**
+	 * Checks the magic bytes and the version at the start of a file.
+	 * 
+	 * @param buffer
+	 * @throws IOException
+	 */
+	static void readFileHeader(ByteBuffer buffer) throws IOException
+	{
+		try
+		{
+			for (byte magic : MAGIC)
+			{
+				if (buffer.get() != magic) {throw new IOException("Not a TMSEG raw score file");}
+			}
+			
+			int version = buffer.get();
+			
+			if (version != VERSION) {throw new IOException("Unsupported raw score format version " + version);}
+		}
+		catch (BufferUnderflowException e)
+		{
+			throw new IOException("Not a TMSEG raw score file");
+		}
+	}
+	
+	
+	/**
+	 * Reads the next record.
+	 * 
+	 * @param buffer
+	 * @return
+	 * @throws IOException
+	 */
+	static Prediction decode(ByteBuffer buffer) throws IOException
+	{
+		try
+		{
+			int 	size 		= readLength(buffer);
+			int 	end 		= buffer.position() + size;
+			String 	name 		= readString(buffer);
+			String 	header 		= readString(buffer);
+			int 	length 		= readLength(buffer);
+			int 	flags 		= readVarint(buffer);
+			int 	topologyRaw = unzigzag(readVarint(buffer));
+			byte[] 	sequence 	= new byte[length];
+			
+			buffer.get(sequence);
+			
+			int 	segments 	= readLength(buffer);
+			int[] 	starts 		= new int[segments];
+			int[] 	ends 		= new int[segments];
+			byte[] 	types 		= new byte[segments];
+			byte[] 	confidence 	= new byte[segments];
+			int 	position 	= 0;
+			
+			for (int k = 0; k < segments; ++k)
+			{
+				types[k] 		= buffer.get();
+				starts[k] 		= position;
+				position 		+= readVarint(buffer);
+				ends[k] 		= position - 1;
+				confidence[k] 	= (byte)unzigzag(readVarint(buffer));
+			}
+			
+			short[][] raw = new short[COLUMNS][];
+			
+			for (int j = 0; j < COLUMNS; ++j)
+			{
+				if ((flags & (1 << j)) == 0) {continue;}
+				
+				int previous = 0;
+				
+				raw[j] = new short[length];
+				
+				for (int i = 0; i < length; ++i)
+				{
+					previous += unzigzag(readVarint(buffer));
+					
+					raw[j][i] = (short)previous;
+				}
+			}
+			
+			if (position != length || buffer.position() != end) {throw new IOException("Corrupt record of " + name);}
+			
+			return new Prediction(name, header, sequence, starts, ends, types, confidence, raw, topologyRaw, (flags & FLAG_TMP) != 0, (flags & FLAG_SIGP) != 0);
+		}
+		catch (BufferUnderflowException e)
+		{
+			throw new IOException("Truncated raw score record");
+		}
+	}
+	
+	
+	private static int zigzag(int value)
+	{
+		return (value << 1) ^ (value >> 31);
+	}
+	
+	
+	private static int unzigzag(int value)
+	{
+		return (value >>> 1) ^ -(value & 1);
+	}
+	
+	
+	private static void writeVarint(ByteArrayOutputStream output, int value)
+	{
+		while ((value & ~0x7f) != 0)
+		{
+			output.write((value & 0x7f) | 0x80);
+			
+			value >>>= 7;
+		}
+		
+		output.write(value);
+	}
+	
+	
+	private static int readVarint(ByteBuffer buffer) throws IOException
+	{
+		int value = 0;
+		
+		for (int shift = 0; shift < 35; shift += 7)
+		{
+			byte b = buffer.get();
+			
+			value |= (b & 0x7f) << shift;
+			
+			if (b >= 0) {return value;}
+		}
+		
+		throw new IOException("Malformed varint in raw score record");
+	}
+	
+	
+	/**
+	 * Reads a length or count, which cannot exceed the remaining bytes of a
+	 * valid record, so that a corrupt value does not cause a huge allocation.
+	 * 
+	 * @param buffer
+	 * @return
+	 * @throws IOException
+	 */
+	private static int readLength(ByteBuffer buffer) throws IOException
+	{
+		int value = readVarint(buffer);
+		
+		if (value < 0 || value > buffer.remaining()) {throw new IOException("Corrupt record in raw score file");}
+		
+		return value;
+	}
+	
+	
+	private static void writeString(ByteArrayOutputStream output, String value)
+	{
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		
+		writeVarint(output, bytes.length);
+		
+		output.write(bytes, 0, bytes.length);
+	}
+	
+	
+	private static String readString(ByteBuffer buffer) throws IOException
+	{
+		byte[] bytes = new byte[readLength(buffer)];
+		
+		buffer.get(bytes);
+		
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+}
@@ -0,0 +1,83 @@
+//    <TMSEG: Prediction of Transmembrane Helices in Proteins.>
+//    Copyright (C) 2014  Michael Bernhofer
+//
+//    This program is free software: you can redistribute it and/or modify
+//    it under the terms of the GNU General Public License as published by
+//    the Free Software Foundation, either version 3 of the License, or
+//    (at your option) any later version.
+//
+//    This program is distributed in the hope that it will be useful,
+//    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//    GNU General Public License for more details.
+//
+//    You should have received a copy of the GNU General Public License
+//    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package data;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+
+/**
+ * Reads the records of a binary raw score file (see RawFormat) one after
+ * another. The file is memory mapped, i.e. it is not read into the heap.
+ */
+public class RawReader implements Closeable {
+	
+	
+	private FileChannel channel = null;
+	private ByteBuffer 	buffer 	= null;
+	
+	
+	public RawReader(String filename) throws IOException
+	{
+		this.channel = FileChannel.open(new File(filename).toPath(), StandardOpenOption.READ);
+		
+		try
+		{
+			if (this.channel.size() > Integer.MAX_VALUE) {throw new IOException("Raw score file larger than 2 GB: " + filename);}
+			
+			this.buffer = this.channel.map(FileChannel.MapMode.READ_ONLY, 0, this.channel.size());
+			
+			RawFormat.readFileHeader(this.buffer);
+		}
+		catch (IOException e)
+		{
+			this.channel.close();
+			
+			throw e;
+		}
+	}
+	
+	
+	public boolean hasNext()
+	{
+		return this.buffer.hasRemaining();
+	}
+	
+	
+	/**
+	 * Returns the next protein with its segments and raw scores.
+	 * 
+	 * @return
+	 * @throws IOException
+	 */
+	public Prediction next() throws IOException
+	{
+		return RawFormat.decode(this.buffer);
+	}
+	
+	
+	@Override
+	public void close() throws IOException
+	{
+		this.channel.close();
+	}
+
+}
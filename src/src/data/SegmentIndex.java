@@ -0,0 +1,177 @@
+//    <TMSEG: Prediction of Transmembrane Helices in Proteins.>
+//    Copyright (C) 2014  Michael Bernhofer
+//
+//    This program is free software: you can redistribute it and/or modify
+//    it under the terms of the GNU General Public License as published by
+//    the Free Software Foundation, either version 3 of the License, or
+//    (at your option) any later version.
+//
+//    This program is distributed in the hope that it will be useful,
+//    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//    GNU General Public License for more details.
+//
+//    You should have received a copy of the GNU General Public License
+//    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package data;
+
+import java.util.Arrays;
+
+
+/**
+ * Run-length index of a state array (see Mappings): every segment is a maximal
+ * run of the same state code. The index is updated locally after a range of
+ * the array was changed, so the stages iterate over segments instead of residues.
+ */
+public class SegmentIndex {
+	
+	
+	private int[] 	starts 	= null;
+	private int[] 	ends 	= null; //inclusive
+	private byte[] 	types 	= null;
+	private int 	size 	= 0;
+	
+	
+	public SegmentIndex(byte[] states)
+	{
+		this.size 	= countRuns(states, 0, states.length - 1);
+		this.starts = new int[this.size];
+		this.ends 	= new int[this.size];
+		this.types 	= new byte[this.size];
+		
+		this.fillRuns(states, 0, states.length - 1, 0);
+	}
+	
+	
+	public int size()
+	{
+		return this.size;
+	}
+	
+	
+	public int getStart(int segment)
+	{
+		return this.starts[segment];
+	}
+	
+	
+	public int getEnd(int segment)
+	{
+		return this.ends[segment];
+	}
+	
+	
+	public byte getType(int segment)
+	{
+		return this.types[segment];
+	}
+	
+	
+	/**
+	 * Returns the segment containing the given position.
+	 * 
+	 * @param position
+	 * @return
+	 */
+	public int indexOf(int position)
+	{
+		int low 	= 0;
+		int high 	= this.size - 1;
+		
+		while (low < high)
+		{
+			int middle = (low + high + 1) >>> 1;
+			
+			if (this.starts[middle] <= position) 	{low = middle;}
+			else 									{high = middle - 1;}
+		}
+		
+		return low;
+	}
+	
+	
+	/**
+	 * Updates the segments after the states from start to end (inclusive)
+	 * were changed. Only the segments around the range are rebuilt.
+	 * 
+	 * @param states
+	 * @param start
+	 * @param end
+	 */
+	public void update(byte[] states, int start, int end)
+	{
+		if (this.size == 0) {return;}
+		
+		//the neighbouring segments may merge with the changed range
+		int first 	= this.indexOf(Math.max(start - 1, 0));
+		int last 	= this.indexOf(Math.min(end + 1, states.length - 1));
+		int from 	= this.starts[first];
+		int to 		= this.ends[last];
+		
+		int count 	= countRuns(states, from, to);
+		int tail 	= this.size - last - 1;
+		int newSize = first + count + tail;
+		
+		this.ensureCapacity(newSize);
+		
+		System.arraycopy(this.starts, last + 1, this.starts, first + count, tail);
+		System.arraycopy(this.ends, last + 1, this.ends, first + count, tail);
+		System.arraycopy(this.types, last + 1, this.types, first + count, tail);
+		
+		this.fillRuns(states, from, to, first);
+		
+		this.size = newSize;
+	}
+	
+	
+	private static int countRuns(byte[] states, int start, int end)
+	{
+		int count = 0;
+		
+		for (int i = start; i <= end; ++i)
+		{
+			if (i == start || states[i] != states[i-1]) {++count;}
+		}
+		
+		return count;
+	}
+	
+	
+	/**
+	 * Stores the runs from start to end (inclusive) from the given segment on.
+	 * 
+	 * @param states
+	 * @param start
+	 * @param end
+	 * @param segment
+	 */
+	private void fillRuns(byte[] states, int start, int end, int segment)
+	{
+		for (int i = start; i <= end; ++i)
+		{
+			int runStart = i;
+			
+			while (i < end && states[i+1] == states[runStart]) {++i;}
+			
+			this.starts[segment] 	= runStart;
+			this.ends[segment] 		= i;
+			this.types[segment] 	= states[runStart];
+			
+			++segment;
+		}
+	}
+	
+	
+	private void ensureCapacity(int capacity)
+	{
+		if (capacity <= this.starts.length) {return;}
+		
+		int newCapacity = Math.max(capacity, 2 * this.starts.length);
+		
+		this.starts = Arrays.copyOf(this.starts, newCapacity);
+		this.ends 	= Arrays.copyOf(this.ends, newCapacity);
+		this.types 	= Arrays.copyOf(this.types, newCapacity);
+	}
+
+}
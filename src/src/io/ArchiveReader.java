@@ -0,0 +1,178 @@
+//    <TMSEG: Prediction of Transmembrane Helices in Proteins.>
+//    Copyright (C) 2014  Michael Bernhofer
+//
+//    This program is free software: you can redistribute it and/or modify
+//    it under the terms of the GNU General Public License as published by
+//    the Free Software Foundation, either version 3 of the License, or
+//    (at your option) any later version.
+//
+//    This program is distributed in the hope that it will be useful,
+//    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//    GNU General Public License for more details.
+//
+//    You should have received a copy of the GNU General Public License
+//    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package io;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import util.ErrorUtils;
+
+
+/**
+ * Reads FASTA/PSSM pairs from a (gzipped) tar archive while it is streamed.
+ * Members are paired by file name without folder and extension (.fasta/.fa
+ * and .pssm). Members still waiting for their partner are kept in a buffer
+ * of bounded size; if it is full, the oldest member is dropped and reported.
+ */
+public class ArchiveReader {
+	
+	
+	private static final int 	FASTA 	= 0;
+	private static final int 	PSSM 	= 1;
+	
+	private TarArchive 						archive 	= null;
+	private String 							name 		= null;
+	private int 							capacity 	= 0;
+	private LinkedHashMap<String, String[]> pending 	= new LinkedHashMap<String, String[]>();
+	private String 							key 		= null;
+	private String[] 						pair 		= null; //member names and contents (FASTA, PSSM)
+	private long 							dropped 	= 0;
+	
+	
+	public ArchiveReader(String archive, int capacity) throws IOException
+	{
+		this.archive 	= new TarArchive(archive);
+		this.name 		= archive;
+		this.capacity 	= capacity;
+	}
+	
+	
+	/**
+	 * Reads up to the next complete pair, returns false at the end of the archive.
+	 * 
+	 * @return
+	 * @throws IOException
+	 */
+	public boolean next() throws IOException
+	{
+		String entry = null;
+		
+		while ((entry = this.archive.nextEntry()) != null)
+		{
+			String 	file 	= entry.substring(entry.lastIndexOf('/') + 1);
+			String 	lower 	= file.toLowerCase();
+			int 	type 	= -1;
+			
+			if (lower.endsWith(".fasta") || lower.endsWith(".fa")) 	{type = FASTA;}
+			else if (lower.endsWith(".pssm")) 						{type = PSSM;}
+			else 													{continue;}
+			
+			String 		key 	= file.substring(0, file.lastIndexOf('.'));
+			String[] 	pair 	= this.pending.get(key);
+			
+			if (pair == null)
+			{
+				pair = new String[4];
+				
+				this.pending.put(key, pair);
+			}
+			else if (pair[2*type] != null)
+			{
+				ErrorUtils.printWarning(ArchiveReader.class, "Duplicate member " + entry + " in " + this.name + ", replacing " + pair[2*type], null);
+			}
+			
+			pair[2*type] 	= entry;
+			pair[2*type+1] 	= new String(this.archive.readEntry(), StandardCharsets.UTF_8);
+			
+			if (pair[1] != null && pair[3] != null)
+			{
+				this.pending.remove(key);
+				
+				this.key 	= key;
+				this.pair 	= pair;
+				
+				return true;
+			}
+			
+			if (this.pending.size() > this.capacity) {this.drop(this.pending.entrySet().iterator());}
+		}
+		
+		//members without partner at the end of the archive
+		for (Iterator<Map.Entry<String, String[]>> iterator = this.pending.entrySet().iterator(); iterator.hasNext(); ) {this.drop(iterator);}
+		
+		return false;
+	}
+	
+	
+	/**
+	 * Returns the name of the current pair (file name without extension).
+	 * 
+	 * @return
+	 */
+	public String getKey()
+	{
+		return this.key;
+	}
+	
+	
+	public String getFastaEntry()
+	{
+		return this.pair[0];
+	}
+	
+	
+	public String getFasta()
+	{
+		return this.pair[1];
+	}
+	
+	
+	public String getPssmEntry()
+	{
+		return this.pair[2];
+	}
+	
+	
+	public String getPssm()
+	{
+		return this.pair[3];
+	}
+	
+	
+	/**
+	 * Returns the number of members dropped without partner.
+	 * 
+	 * @return
+	 */
+	public long getDropped()
+	{
+		return this.dropped;
+	}
+	
+	
+	public void close()
+	{
+		this.archive.close();
+	}
+	
+	
+	private void drop(Iterator<Map.Entry<String, String[]>> iterator)
+	{
+		String[] pair = iterator.next().getValue();
+		
+		iterator.remove();
+		
+		++this.dropped;
+		
+		ErrorUtils.printError(ArchiveReader.class, "No " + (pair[0] == null ? "FASTA" : "PSSM") + " member for " + (pair[0] == null ? pair[2] : pair[0]) + " in " + this.name, null);
+	}
+
+}
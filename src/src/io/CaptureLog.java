@@ -0,0 +1,126 @@
+//    <TMSEG: Prediction of Transmembrane Helices in Proteins.>
+//    Copyright (C) 2014  Michael Bernhofer
+//
+//    This program is free software: you can redistribute it and/or modify
+//    it under the terms of the GNU General Public License as published by
+//    the Free Software Foundation, either version 3 of the License, or
+//    (at your option) any later version.
+//
+//    This program is distributed in the hope that it will be useful,
+//    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//    GNU General Public License for more details.
+//
+//    You should have received a copy of the GNU General Public License
+//    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package io;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+import util.ErrorUtils;
+
+
+/**
+ * Records the workload of a run for "tmseg replay": manifest.tsv lists the input
+ * files of every protein in arrival order with the arrival offset and latency,
+ * and outputs/ keeps a copy of every .tmseg file as the reference result.
+ */
+public class CaptureLog {
+	
+	
+	public static final String 	MANIFEST 		= "manifest.tsv";
+	public static final String 	OUTPUTS 		= "outputs";
+	public static final String 	HEADER 			= "index\tprotein\tfasta\tpssm\toffset_ms\tlatency_ms\toutput";
+	
+	private BufferedWriter 		writer 			= null;
+	private File 				outputFolder 	= null;
+	private long 				startTime 		= 0;
+	private int 				index 			= 0;
+	
+	
+	/**
+	 * Creates the capture folder. The options of the captured run are written
+	 * into the manifest header for reference.
+	 * 
+	 * @param folder
+	 * @param options
+	 * @throws IOException
+	 */
+	public CaptureLog(String folder, String options) throws IOException
+	{
+		this.outputFolder 	= new File(folder, OUTPUTS);
+		this.startTime 		= System.nanoTime();
+		
+		this.outputFolder.mkdirs();
+		
+		this.writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(new File(folder, MANIFEST)), StandardCharsets.UTF_8));
+		
+		this.writer.write("#options\t" + options + "\n");
+		this.writer.write(HEADER + "\n");
+	}
+	
+	
+	/**
+	 * Adds a protein with its arrival time and latency (System.nanoTime) and
+	 * keeps a copy of its output, if any. The copy is written from the content,
+	 * since the output file itself may still be queued for the writer thread.
+	 * 
+	 * @param name
+	 * @param fastaFile
+	 * @param pssmFile
+	 * @param arrival
+	 * @param latency
+	 * @param outFile
+	 * @param content
+	 */
+	public synchronized void add(String name, String fastaFile, String pssmFile, long arrival, long latency, String outFile, byte[] content)
+	{
+		try
+		{
+			String output = "-";
+			
+			if (outFile != null && content != null)
+			{
+				output = this.index + "_" + new File(outFile).getName();
+				
+				if (!OutputWriter.writeFile(new File(this.outputFolder, output).getPath(), content)) {output = "-";}
+			}
+			
+			this.writer.write(this.index + "\t" + name + "\t" + new File(fastaFile).getAbsolutePath() + "\t" + new File(pssmFile).getAbsolutePath());
+			this.writer.write("\t" + toMillis(arrival - this.startTime) + "\t" + toMillis(latency) + "\t" + output + "\n");
+			
+			++this.index;
+		}
+		catch (IOException e)
+		{
+			ErrorUtils.printError(CaptureLog.class, "Failed to capture " + name, e);
+		}
+	}
+	
+	
+	public synchronized void close()
+	{
+		try
+		{
+			this.writer.close();
+		}
+		catch (IOException e)
+		{
+			ErrorUtils.printError(CaptureLog.class, "Failed to close capture manifest", e);
+		}
+	}
+	
+	
+	private static String toMillis(long nanos)
+	{
+		return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+	}
+
+}
@@ -18,42 +18,72 @@ package io;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 
+/**
+ * Line reader for the input files, one open file per thread. Errors are
+ * thrown as UncheckedIOException, so a bad input fails only the protein
+ * that is read (see TMSEG.doPrediction) instead of the whole run.
+ */
 public class FReader {
 	
 	
-	private static File 			file 	= null;
-	private static BufferedReader 	reader 	= null;
+	//one open file per thread
+	private static final ThreadLocal<File> 				file 	= new ThreadLocal<File>();
+	private static final ThreadLocal<BufferedReader> 	reader 	= new ThreadLocal<BufferedReader>();
 	
 	
 	public static void openFile(String filename)
 	{
+		release();
+		
 		try
 		{
-			file 	= new File(filename);
-			reader 	= new BufferedReader(new FileReader(file));
+			file.set(new File(filename));
+			reader.set(new BufferedReader(new InputStreamReader(new FileInputStream(file.get()), StandardCharsets.UTF_8)));
 		}
-		catch (Exception e)
+		catch (IOException e)
 		{
-			e.printStackTrace();
-			System.exit(1);
+			throw new UncheckedIOException("Could not open " + filename, e);
 		}
 	}
 	
 	
+	/**
+	 * Reads the given text instead of a file, the name is used in messages only.
+	 * 
+	 * @param name
+	 * @param text
+	 */
+	public static void openText(String name, String text)
+	{
+		release();
+		
+		file.set(new File(name));
+		reader.set(new BufferedReader(new StringReader(text)));
+	}
+	
+	
 	public static void closeFile()
 	{
 		isInitialized();
 		
 		try
 		{
-			reader.close();
+			reader.get().close();
+		}
+		catch (IOException e)
+		{
+			throw new UncheckedIOException("Could not close " + file.get(), e);
 		}
-		catch (Exception e)
+		finally
 		{
-			e.printStackTrace();
-			System.exit(1);
+			reader.remove();
 		}
 	}
 	
@@ -64,33 +94,49 @@ public class FReader {
 		
 		try
 		{
-			if (reader.ready())
+			if (reader.get().ready())
 			{
-				return reader.readLine();
+				return reader.get().readLine();
 			}
 		}
-		catch (Exception e)
+		catch (IOException e)
 		{
-			e.printStackTrace();
-			System.exit(1);
+			throw new UncheckedIOException("Could not read " + file.get(), e);
 		}
 		
 		return null;
 	}
 	
 	
+	/**
+	 * Closes a file left open by a reader that failed, so failed inputs do not leak file handles.
+	 */
+	private static void release()
+	{
+		if (reader.get() == null) {return;}
+		
+		try
+		{
+			reader.get().close();
+		}
+		catch (IOException e)
+		{
+			//do nothing
+		}
+		
+		reader.remove();
+	}
+	
+	
 	private static boolean isInitialized()
 	{
-		if (file != null && reader != null)
+		if (file.get() != null && reader.get() != null)
 		{
 			return true;
 		}
 		else
 		{
-			System.err.println("Error: FileReader not yet initialized!");
-			System.exit(1);
+			throw new IllegalStateException("FileReader not yet initialized!");
 		}
-		
-		return false;
 	}
 }
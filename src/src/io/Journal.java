@@ -0,0 +1,307 @@
+//    <TMSEG: Prediction of Transmembrane Helices in Proteins.>
+//    Copyright (C) 2014  Michael Bernhofer
+//
+//    This program is free software: you can redistribute it and/or modify
+//    it under the terms of the GNU General Public License as published by
+//    the Free Software Foundation, either version 3 of the License, or
+//    (at your option) any later version.
+//
+//    This program is distributed in the hope that it will be useful,
+//    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//    GNU General Public License for more details.
+//
+//    You should have received a copy of the GNU General Public License
+//    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package io;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+import util.ErrorUtils;
+
+
+/**
+ * Append-only journal of completed proteins for resumable runs. Every line
+ * holds the input (FASTA file), the protein name, a CRC32 of the input texts and
+ * the lengths of the output files (-1: not written). An entry is appended only
+ * after all output files of the protein were written, with one write per line,
+ * so the journal stays consistent with parallel workers and abrupt termination:
+ * a protein is skipped on resume only if its checksum matches and its output
+ * files exist with the journaled lengths, i.e. torn or stale lines just cause
+ * the protein to be predicted again.
+ * Neither the journal nor the output files are synced to the disk, so this
+ * covers the end of the process (kill, crash, out of memory), but not a power
+ * loss or an operating system crash, after which the journal may list files
+ * that were not stored completely.
+ */
+public class Journal {
+	
+	
+	private FileOutputStream 		output 		= null;
+	private String 					name 		= null;
+	private Map<String, String[]> 	completed 	= new HashMap<String, String[]>(); //input -> checksum, output lengths
+	private AtomicLong 				skipped 	= new AtomicLong();
+	
+	
+	/**
+	 * Collects the output files of a protein and appends its entry once all of them were written.
+	 */
+	public static class Completion
+	{
+		private Journal journal 	= null;
+		private String 	line 		= null;
+		private String 	outFile 	= null;
+		private long 	outLength 	= -1;
+		private long 	rawLength 	= -1;
+		private int 	remaining 	= 0;
+		
+		
+		private Completion(Journal journal, String input, String name, long checksum, String outFile, String rawFile)
+		{
+			this.journal 	= journal;
+			this.line 		= input + "\t" + name + "\t" + Long.toHexString(checksum);
+			this.outFile 	= outFile;
+			this.remaining 	= (outFile != null ? 1 : 0) + (rawFile != null ? 1 : 0);
+		}
+		
+		
+		/**
+		 * Records a written output file.
+		 * 
+		 * @param filename
+		 * @param length
+		 */
+		public synchronized void written(String filename, long length)
+		{
+			if (filename.equals(this.outFile)) 	{this.outLength = length;}
+			else 								{this.rawLength = length;}
+			
+			if (--this.remaining == 0) {this.journal.append(this.line + "\t" + this.outLength + "\t" + this.rawLength + "\n");}
+		}
+	}
+	
+	
+	/**
+	 * Opens the journal for appending. If resume is set, the entries of
+	 * previous runs are read first.
+	 * 
+	 * @param filename
+	 * @param resume
+	 * @throws IOException
+	 */
+	public Journal(String filename, boolean resume) throws IOException
+	{
+		this.name = filename;
+		
+		if (resume && new File(filename).isFile()) {this.load(filename);}
+		
+		this.output = new FileOutputStream(filename, true);
+		
+		//terminate a line torn by an abrupt end of the previous run
+		if (endsTorn(filename)) {this.append("\n");}
+	}
+	
+	
+	/**
+	 * Returns true if the protein was completed before with the same inputs
+	 * and its output files still have the journaled lengths.
+	 * 
+	 * @param input
+	 * @param checksum
+	 * @param outFile
+	 * @param rawFile
+	 * @return
+	 */
+	public boolean isCompleted(String input, long checksum, String outFile, String rawFile)
+	{
+		String[] entry = this.completed.get(input);
+		
+		if (entry == null || !entry[0].equals(Long.toHexString(checksum))) {return false;}
+		
+		if (!hasLength(outFile, entry[1]) || !hasLength(rawFile, entry[2])) {return false;}
+		
+		this.skipped.incrementAndGet();
+		
+		return true;
+	}
+	
+	
+	/**
+	 * Starts the entry of a predicted protein. It is appended as soon as
+	 * all given output files were reported as written.
+	 * 
+	 * @param input
+	 * @param name
+	 * @param checksum
+	 * @param outFile
+	 * @param rawFile
+	 * @return
+	 */
+	public Completion start(String input, String name, long checksum, String outFile, String rawFile)
+	{
+		Completion completion = new Completion(this, input, name, checksum, outFile, rawFile);
+		
+		if (completion.remaining == 0) {this.append(completion.line + "\t-1\t-1\n");}
+		
+		return completion;
+	}
+	
+	
+	/**
+	 * Returns the number of proteins skipped as completed.
+	 * 
+	 * @return
+	 */
+	public long getSkipped()
+	{
+		return this.skipped.get();
+	}
+	
+	
+	public synchronized void close()
+	{
+		try
+		{
+			this.output.close();
+		}
+		catch (IOException e)
+		{
+			ErrorUtils.printError(Journal.class, "Failed to close " + this.name, e);
+		}
+	}
+	
+	
+	/**
+	 * Returns a CRC32 over the FASTA and PSSM text (null: unreadable input).
+	 * 
+	 * @param fastaText
+	 * @param pssmText
+	 * @return
+	 */
+	public static long checksum(String fastaText, String pssmText)
+	{
+		CRC32 crc = new CRC32();
+		
+		update(crc, fastaText);
+		update(crc, pssmText);
+		
+		return crc.getValue();
+	}
+	
+	
+	/**
+	 * Reads an input file as UTF-8 text, so it can be checksummed and then parsed
+	 * from memory without reading it a second time. Returns null if the file
+	 * cannot be read, its parser reports the error.
+	 * 
+	 * @param filename
+	 * @return
+	 */
+	public static String readText(String filename)
+	{
+		try
+		{
+			return new String(Files.readAllBytes(Paths.get(filename)), StandardCharsets.UTF_8);
+		}
+		catch (IOException e)
+		{
+			return null;
+		}
+	}
+	
+	
+	private static void update(CRC32 crc, String text)
+	{
+		if (text != null) 	{crc.update(text.getBytes(StandardCharsets.UTF_8));}
+		else 				{crc.update(0xFF);}
+	}
+	
+	
+	private synchronized void append(String line)
+	{
+		try
+		{
+			this.output.write(line.getBytes(StandardCharsets.UTF_8));
+			this.output.flush();
+		}
+		catch (IOException e)
+		{
+			ErrorUtils.printError(Journal.class, "Failed to write to " + this.name, e);
+		}
+	}
+	
+	
+	private void load(String filename) throws IOException
+	{
+		BufferedReader 	reader 	= new BufferedReader(new InputStreamReader(new FileInputStream(filename), StandardCharsets.UTF_8));
+		String 			line 	= null;
+		
+		try
+		{
+			while ((line = reader.readLine()) != null)
+			{
+				String[] columns = line.split("\t");
+				
+				if (columns.length != 5) {continue;}
+				
+				this.completed.put(columns[0], new String[] {columns[2], columns[3], columns[4]});
+			}
+		}
+		finally
+		{
+			reader.close();
+		}
+	}
+	
+	
+	private static boolean endsTorn(String filename) throws IOException
+	{
+		RandomAccessFile file = new RandomAccessFile(filename, "r");
+		
+		try
+		{
+			if (file.length() == 0) {return false;}
+			
+			file.seek(file.length() - 1);
+			
+			return file.read() != '\n';
+		}
+		finally
+		{
+			file.close();
+		}
+	}
+	
+	
+	private static boolean hasLength(String filename, String length)
+	{
+		if (filename == null) {return true;}
+		
+		try
+		{
+			long expected = Long.parseLong(length);
+			
+			return expected >= 0 && new File(filename).length() == expected;
+		}
+		catch (NumberFormatException e)
+		{
+			return false;
+		}
+	}
+
+}
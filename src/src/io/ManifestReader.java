@@ -0,0 +1,158 @@
+//    <TMSEG: Prediction of Transmembrane Helices in Proteins.>
+//    Copyright (C) 2014  Michael Bernhofer
+//
+//    This program is free software: you can redistribute it and/or modify
+//    it under the terms of the GNU General Public License as published by
+//    the Free Software Foundation, either version 3 of the License, or
+//    (at your option) any later version.
+//
+//    This program is distributed in the hope that it will be useful,
+//    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//    GNU General Public License for more details.
+//
+//    You should have received a copy of the GNU General Public License
+//    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package io;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+import util.ErrorUtils;
+
+
+/**
+ * Reads a manifest of input files lazily, one line at a time, so that the
+ * predictions start before the whole manifest is read. Every line has the
+ * tab-separated columns FASTA file, PSSM file and output key (optional,
+ * default: FASTA file name without extension). If the PSSM column is empty
+ * or '-', the first column is a bundle file with the FASTA and the PSSM of
+ * the protein (see RecordStream). Relative paths are resolved against the
+ * folder of the manifest, empty lines and lines starting with '#' are skipped.
+ */
+public class ManifestReader {
+	
+	
+	private BufferedReader 	reader 	= null;
+	private File 			folder 	= null;
+	private String 			name 	= null;
+	private String 			fasta 	= null;
+	private String 			pssm 	= null;
+	private String 			key 	= null;
+	private long 			line 	= 0;
+	
+	
+	public ManifestReader(String filename) throws IOException
+	{
+		this.name 	= filename;
+		this.folder = new File(filename).getAbsoluteFile().getParentFile();
+		this.reader = new BufferedReader(new InputStreamReader(new FileInputStream(filename), StandardCharsets.UTF_8));
+	}
+	
+	
+	/**
+	 * Reads the next entry, returns false at the end of the manifest.
+	 * Malformed lines are reported and skipped.
+	 * 
+	 * @return
+	 * @throws IOException
+	 */
+	public boolean next() throws IOException
+	{
+		String line = null;
+		
+		while ((line = this.reader.readLine()) != null)
+		{
+			++this.line;
+			
+			if (line.trim().isEmpty() || line.startsWith("#")) {continue;}
+			
+			String[] columns = line.split("\t", -1);
+			
+			if (columns.length > 3 || columns[0].trim().isEmpty())
+			{
+				ErrorUtils.printError(ManifestReader.class, "Malformed line " + this.line + " in " + this.name, null);
+				
+				continue;
+			}
+			
+			String pssm = columns.length > 1 ? columns[1].trim() : "";
+			String key 	= columns.length > 2 ? columns[2].trim() : "";
+			
+			this.fasta 	= this.resolve(columns[0].trim());
+			this.pssm 	= pssm.isEmpty() || pssm.equals("-") ? null : this.resolve(pssm);
+			this.key 	= key.isEmpty() ? stripExtension(new File(this.fasta).getName()) : key;
+			
+			return true;
+		}
+		
+		return false;
+	}
+	
+	
+	/**
+	 * Returns the FASTA file, or the bundle file if isBundle() is true.
+	 * 
+	 * @return
+	 */
+	public String getFasta()
+	{
+		return this.fasta;
+	}
+	
+	
+	public String getPssm()
+	{
+		return this.pssm;
+	}
+	
+	
+	public String getKey()
+	{
+		return this.key;
+	}
+	
+	
+	public boolean isBundle()
+	{
+		return this.pssm == null;
+	}
+	
+	
+	public void close()
+	{
+		try
+		{
+			this.reader.close();
+		}
+		catch (IOException e)
+		{
+			ErrorUtils.printError(ManifestReader.class, "Failed to close " + this.name, e);
+		}
+	}
+	
+	
+	private String resolve(String path)
+	{
+		File file = new File(path);
+		
+		if (!file.isAbsolute()) {file = new File(this.folder, path);}
+		
+		return file.getAbsolutePath();
+	}
+	
+	
+	private static String stripExtension(String filename)
+	{
+		int dot = filename.lastIndexOf('.');
+		
+		return dot > 0 ? filename.substring(0, dot) : filename;
+	}
+
+}
@@ -0,0 +1,184 @@
+//    <TMSEG: Prediction of Transmembrane Helices in Proteins.>
+//    Copyright (C) 2014  Michael Bernhofer
+//
+//    This program is free software: you can redistribute it and/or modify
+//    it under the terms of the GNU General Public License as published by
+//    the Free Software Foundation, either version 3 of the License, or
+//    (at your option) any later version.
+//
+//    This program is distributed in the hope that it will be useful,
+//    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//    GNU General Public License for more details.
+//
+//    You should have received a copy of the GNU General Public License
+//    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package io;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+
+/**
+ * Growable byte buffer for the text of the output files. Integers and permille
+ * scores are written as digits directly, without intermediate strings, so a
+ * buffer can be reused for the files of a whole run.
+ * The permille scores are formatted exactly like Double.toString(value/1000.0).
+ */
+public class OutputBuffer {
+	
+	
+	private byte[] 	bytes 	= null;
+	private int 	size 	= 0;
+	
+	
+	public OutputBuffer(int capacity)
+	{
+		this.bytes = new byte[Math.max(capacity, 16)];
+	}
+	
+	
+	public void clear()
+	{
+		this.size = 0;
+	}
+	
+	
+	public int size()
+	{
+		return this.size;
+	}
+	
+	
+	/**
+	 * Returns a copy of the content.
+	 * 
+	 * @return
+	 */
+	public byte[] toByteArray()
+	{
+		return Arrays.copyOf(this.bytes, this.size);
+	}
+	
+	
+	public OutputBuffer append(char c)
+	{
+		if (c >= 128) {return this.append(String.valueOf(c));}
+		
+		this.ensureCapacity(this.size + 1);
+		
+		this.bytes[this.size++] = (byte)c;
+		
+		return this;
+	}
+	
+	
+	/**
+	 * Appends a string, non-ASCII characters in UTF-8 (as the stream output).
+	 * 
+	 * @param value
+	 * @return
+	 */
+	public OutputBuffer append(String value)
+	{
+		if (value == null) {value = "null";}
+		
+		int length = value.length();
+		
+		this.ensureCapacity(this.size + length);
+		
+		for (int i = 0; i < length; ++i)
+		{
+			char c = value.charAt(i);
+			
+			if (c >= 128)
+			{
+				byte[] encoded = value.substring(i).getBytes(StandardCharsets.UTF_8);
+				
+				this.ensureCapacity(this.size + encoded.length);
+				
+				System.arraycopy(encoded, 0, this.bytes, this.size, encoded.length);
+				
+				this.size += encoded.length;
+				
+				return this;
+			}
+			
+			this.bytes[this.size++] = (byte)c;
+		}
+		
+		return this;
+	}
+	
+	
+	public OutputBuffer append(int value)
+	{
+		long number = value;
+		
+		if (number < 0)
+		{
+			this.append('-');
+			
+			number = -number;
+		}
+		
+		int digits = 1;
+		
+		for (long limit = 10; limit <= number; limit *= 10) {++digits;}
+		
+		this.ensureCapacity(this.size + digits);
+		
+		for (int i = this.size + digits - 1; i >= this.size; --i)
+		{
+			this.bytes[i] = (byte)('0' + number % 10);
+			
+			number /= 10;
+		}
+		
+		this.size += digits;
+		
+		return this;
+	}
+	
+	
+	/**
+	 * Appends a permille value as decimal with up to three fraction digits and
+	 * without trailing zeros, e.g. 1000 as 1.0, 120 as 0.12 and 5 as 0.005.
+	 * 
+	 * @param value
+	 * @return
+	 */
+	public OutputBuffer appendPermille(int value)
+	{
+		if (value < 0)
+		{
+			this.append('-');
+			
+			value = -value;
+		}
+		
+		int fraction = value % 1000;
+		
+		this.append(value / 1000);
+		this.append('.');
+		
+		if (fraction == 0) {return this.append('0');}
+		
+		this.append((char)('0' + fraction / 100));
+		
+		if (fraction % 100 != 0) {this.append((char)('0' + fraction / 10 % 10));}
+		if (fraction % 10 != 0) {this.append((char)('0' + fraction % 10));}
+		
+		return this;
+	}
+	
+	
+	private void ensureCapacity(int capacity)
+	{
+		if (capacity <= this.bytes.length) {return;}
+		
+		this.bytes = Arrays.copyOf(this.bytes, Math.max(capacity, 2 * this.bytes.length));
+	}
+
+}
@@ -0,0 +1,243 @@
+//    <TMSEG: Prediction of Transmembrane Helices in Proteins.>
+//    Copyright (C) 2014  Michael Bernhofer
+//
+//    This program is free software: you can redistribute it and/or modify
+//    it under the terms of the GNU General Public License as published by
+//    the Free Software Foundation, either version 3 of the License, or
+//    (at your option) any later version.
+//
+//    This program is distributed in the hope that it will be useful,
+//    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//    GNU General Public License for more details.
+//
+//    You should have received a copy of the GNU General Public License
+//    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package io;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import util.ErrorUtils;
+
+
+/**
+ * Writes output files on a background thread fed by a bounded queue, so the
+ * output I/O overlaps with the predictions. Every file is written completely
+ * into a temporary file next to it and then renamed, i.e. readers never see a
+ * partial file. Files are written in the order they were queued. If the queue
+ * is full, the submitting thread waits until the writer thread took a file
+ * from the queue (backpressure), which bounds the memory held by pending files.
+ * Text is written as UTF-8, like the stream output.
+ * Failed files are reported and counted, they do not end the program.
+ */
+public class OutputWriter {
+	
+	
+	private ThreadPoolExecutor 	executor 	= null;
+	private AtomicInteger 		failures 	= new AtomicInteger(0);
+	
+	
+	/**
+	 * Starts the writer thread with room for the given number of pending files.
+	 * 
+	 * @param queueSize
+	 */
+	public OutputWriter(int queueSize)
+	{
+		this.executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(queueSize), new ThreadFactory()
+		{
+			@Override
+			public Thread newThread(Runnable runnable)
+			{
+				Thread thread = new Thread(runnable, "tmseg-writer");
+				
+				thread.setDaemon(true);
+				
+				return thread;
+			}
+		}, new RejectedExecutionHandler()
+		{
+			@Override
+			public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor)
+			{
+				if (executor.isShutdown()) {throw new RejectedExecutionException("Output writer is closed");}
+				
+				//wait for room in the queue instead of writing in the submitting thread
+				try
+				{
+					executor.getQueue().put(runnable);
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+					
+					throw new RejectedExecutionException("Interrupted while waiting for the output writer", e);
+				}
+			}
+		});
+	}
+	
+	
+	/**
+	 * Queues a file with the given content, an existing file is replaced.
+	 * 
+	 * @param filename
+	 * @param content
+	 */
+	public void write(final String filename, final String content)
+	{
+		this.executor.execute(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				if (!writeFile(filename, content)) {failures.incrementAndGet();}
+			}
+		});
+	}
+	
+	
+	/**
+	 * Queues a binary file with the given content, an existing file is replaced.
+	 * 
+	 * @param filename
+	 * @param content
+	 */
+	public void write(final String filename, final byte[] content)
+	{
+		this.write(filename, content, null);
+	}
+	
+	
+	/**
+	 * Queues a binary file with the given content, the completion (if set) is
+	 * notified once the file was written.
+	 * 
+	 * @param filename
+	 * @param content
+	 * @param completion
+	 */
+	public void write(final String filename, final byte[] content, final Journal.Completion completion)
+	{
+		this.executor.execute(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				if (!writeFile(filename, content)) 	{failures.incrementAndGet();}
+				else if (completion != null) 		{completion.written(filename, content.length);}
+			}
+		});
+	}
+	
+	
+	/**
+	 * Waits until all queued files are written and stops the writer thread.
+	 */
+	public void close()
+	{
+		this.executor.shutdown();
+		
+		try
+		{
+			this.executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	
+	/**
+	 * Returns the number of files that could not be written.
+	 * 
+	 * @return
+	 */
+	public int getFailures()
+	{
+		return this.failures.get();
+	}
+	
+	
+	/**
+	 * Writes a text file (UTF-8) with the given content in the current thread,
+	 * atomically replacing an existing file. Missing parent folders are created.
+	 * 
+	 * @param filename
+	 * @param content
+	 * @return
+	 */
+	public static boolean writeFile(String filename, String content)
+	{
+		return writeFile(filename, content.getBytes(StandardCharsets.UTF_8));
+	}
+	
+	
+	/**
+	 * Writes a binary file with the given content in the current thread (see above).
+	 * 
+	 * @param filename
+	 * @param bytes
+	 * @return
+	 */
+	public static boolean writeFile(String filename, byte[] bytes)
+	{
+		File 	target 		= new File(filename).getAbsoluteFile();
+		File 	parent 		= target.getParentFile();
+		File 	temporary 	= null;
+		
+		try
+		{
+			if (!parent.exists()) {parent.mkdirs();}
+			
+			//one temporary file per thread, the same file may be written by two threads
+			temporary = new File(parent, "." + target.getName() + "." + Thread.currentThread().getId() + ".tmp");
+			
+			FileOutputStream stream = new FileOutputStream(temporary);
+			
+			try
+			{
+				stream.write(bytes);
+			}
+			finally
+			{
+				stream.close();
+			}
+			
+			try
+			{
+				Files.move(temporary.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			}
+			catch (AtomicMoveNotSupportedException e)
+			{
+				Files.move(temporary.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+			
+			return true;
+		}
+		catch (IOException e)
+		{
+			ErrorUtils.printError(OutputWriter.class, "Failed to write " + filename, e);
+			
+			if (temporary != null) {temporary.delete();}
+			
+			return false;
+		}
+	}
+
+}
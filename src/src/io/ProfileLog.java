@@ -0,0 +1,184 @@
+//    <TMSEG: Prediction of Transmembrane Helices in Proteins.>
+//    Copyright (C) 2014  Michael Bernhofer
+//
+//    This program is free software: you can redistribute it and/or modify
+//    it under the terms of the GNU General Public License as published by
+//    the Free Software Foundation, either version 3 of the License, or
+//    (at your option) any later version.
+//
+//    This program is distributed in the hope that it will be useful,
+//    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//    GNU General Public License for more details.
+//
+//    You should have received a copy of the GNU General Public License
+//    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package io;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import util.ErrorUtils;
+import util.Profile;
+
+
+/**
+ * Writes the cost profiles of all proteins (optional) and captures slow proteins:
+ * every protein above the latency threshold is added to slow.tsv in the slow-log
+ * folder, together with copies of its FASTA and PSSM file for offline replay.
+ * Inputs read from memory (pipe, archive, bundle) are written from their text.
+ */
+public class ProfileLog {
+	
+	
+	private BufferedWriter 	profileWriter 	= null;
+	private BufferedWriter 	slowWriter 		= null;
+	private File 			slowFolder 		= null;
+	private long 			thresholdNanos 	= 0;
+	private int 			slowProteins 	= 0;
+	
+	
+	/**
+	 * Opens the profile file and/or the slow-log folder (either may be null).
+	 * 
+	 * @param profileFile
+	 * @param slowFolder
+	 * @param thresholdMillis
+	 * @throws IOException
+	 */
+	public ProfileLog(String profileFile, String slowFolder, double thresholdMillis) throws IOException
+	{
+		if (profileFile != null)
+		{
+			File parent = new File(profileFile).getParentFile();
+			
+			if (parent != null) {parent.mkdirs();}
+			
+			this.profileWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(profileFile), StandardCharsets.UTF_8));
+			
+			this.profileWriter.write(Profile.getHeader() + "\n");
+		}
+		
+		if (slowFolder != null)
+		{
+			this.slowFolder 	= new File(slowFolder);
+			this.thresholdNanos = (long)(thresholdMillis * 1e6);
+			
+			this.slowFolder.mkdirs();
+			
+			this.slowWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(new File(this.slowFolder, "slow.tsv")), StandardCharsets.UTF_8));
+			
+			this.slowWriter.write(Profile.getHeader() + "\tfasta\tpssm\n");
+		}
+	}
+	
+	
+	/**
+	 * Adds the profile of a predicted protein and captures its input files if it was slow.
+	 * The texts are null if the inputs were read from their files.
+	 * 
+	 * @param profile
+	 * @param fastaFile
+	 * @param pssmFile
+	 * @param fastaText
+	 * @param pssmText
+	 */
+	public synchronized void add(Profile profile, String fastaFile, String pssmFile, String fastaText, String pssmText)
+	{
+		try
+		{
+			if (this.profileWriter != null) {this.profileWriter.write(profile.toString() + "\n");}
+			
+			if (this.slowWriter != null && profile.getTotalNanos() >= this.thresholdNanos)
+			{
+				String fastaCopy 	= fastaText != null ? this.write(fastaFile, ".fasta", fastaText) : this.copy(fastaFile);
+				String pssmCopy 	= pssmText != null ? this.write(pssmFile, ".pssm", pssmText) : this.copy(pssmFile);
+				
+				this.slowWriter.write(profile.toString() + "\t" + fastaCopy + "\t" + pssmCopy + "\n");
+				this.slowWriter.flush();
+				
+				++this.slowProteins;
+			}
+		}
+		catch (IOException e)
+		{
+			ErrorUtils.printError(ProfileLog.class, "Failed to write profile of " + profile.getName(), e);
+		}
+	}
+	
+	
+	/**
+	 * Returns the number of proteins above the latency threshold.
+	 * 
+	 * @return
+	 */
+	public synchronized int getSlowProteins()
+	{
+		return this.slowProteins;
+	}
+	
+	
+	public synchronized void close()
+	{
+		try
+		{
+			if (this.profileWriter != null) {this.profileWriter.close();}
+			if (this.slowWriter != null) 	{this.slowWriter.close();}
+		}
+		catch (IOException e)
+		{
+			ErrorUtils.printError(ProfileLog.class, "Failed to close profile files", e);
+		}
+	}
+	
+	
+	/**
+	 * Copies an input file into the slow-log folder (keeping its name) and returns the copy's name.
+	 * 
+	 * @param filename
+	 * @return
+	 * @throws IOException
+	 */
+	private String copy(String filename) throws IOException
+	{
+		File source = new File(filename);
+		File target = new File(this.slowFolder, source.getName());
+		
+		Files.copy(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		
+		return target.getName();
+	}
+	
+	
+	/**
+	 * Writes an input read from memory into the slow-log folder, named after its
+	 * source (archive member, bundle or record) with the given extension, and
+	 * returns the file's name.
+	 * 
+	 * @param source
+	 * @param extension
+	 * @param text
+	 * @return
+	 * @throws IOException
+	 */
+	private String write(String source, String extension, String text) throws IOException
+	{
+		String name = new File(source).getName();
+		
+		if (name.lastIndexOf('.') > 0) {name = name.substring(0, name.lastIndexOf('.'));}
+		
+		File target = new File(this.slowFolder, name + extension);
+		
+		Files.write(target.toPath(), text.getBytes(StandardCharsets.UTF_8));
+		
+		return target.getName();
+	}
+
+}
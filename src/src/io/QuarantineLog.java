@@ -0,0 +1,160 @@
+//    <TMSEG: Prediction of Transmembrane Helices in Proteins.>
+//    Copyright (C) 2014  Michael Bernhofer
+//
+//    This program is free software: you can redistribute it and/or modify
+//    it under the terms of the GNU General Public License as published by
+//    the Free Software Foundation, either version 3 of the License, or
+//    (at your option) any later version.
+//
+//    This program is distributed in the hope that it will be useful,
+//    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//    GNU General Public License for more details.
+//
+//    You should have received a copy of the GNU General Public License
+//    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package io;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+
+import util.ErrorUtils;
+import util.Globals;
+
+
+/**
+ * Counts the predicted and the failed proteins and writes the failed ones
+ * into an optional tab-separated quarantine report (protein, input, stage,
+ * message) as they occur. If a maximum failure rate is set, the run is
+ * marked as aborted once the rate is exceeded, after at least
+ * Globals.QUARANTINE_MIN_PROTEINS proteins.
+ */
+public class QuarantineLog {
+	
+	
+	private BufferedWriter 	writer 		= null;
+	private String 			name 		= null;
+	private double 			maxRate 	= Double.NaN;
+	private AtomicLong 		proteins 	= new AtomicLong();
+	private long 			failures 	= 0;
+	private volatile boolean aborted 	= false;
+	
+	
+	/**
+	 * Opens the quarantine report, no report is written if filename is null.
+	 * 
+	 * @param filename
+	 * @param maxRate
+	 * @throws IOException
+	 */
+	public QuarantineLog(String filename, double maxRate) throws IOException
+	{
+		this.name 		= filename;
+		this.maxRate 	= maxRate;
+		
+		if (filename != null)
+		{
+			this.writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(filename), StandardCharsets.UTF_8));
+			
+			this.writer.write("protein\tinput\tstage\tmessage\n");
+			this.writer.flush();
+		}
+	}
+	
+	
+	/**
+	 * Counts a protein that is about to be predicted.
+	 */
+	public void addProtein()
+	{
+		long proteins = this.proteins.incrementAndGet();
+		
+		//failures before the minimum was reached are evaluated once it is reached
+		if (proteins == Globals.QUARANTINE_MIN_PROTEINS) {this.check();}
+	}
+	
+	
+	/**
+	 * Adds a failed protein, the protein name is null if it is not known yet.
+	 * 
+	 * @param protein
+	 * @param input
+	 * @param stage
+	 * @param message
+	 */
+	public synchronized void add(String protein, String input, String stage, String message)
+	{
+		++this.failures;
+		
+		if (this.writer != null)
+		{
+			try
+			{
+				this.writer.write((protein != null ? protein : "-") + "\t" + input + "\t" + stage + "\t" + message.replaceAll("\\s+", " ") + "\n");
+				this.writer.flush();
+			}
+			catch (IOException e)
+			{
+				ErrorUtils.printError(QuarantineLog.class, "Failed to write to " + this.name, e);
+			}
+		}
+		
+		this.check();
+	}
+	
+	
+	public long getProteins()
+	{
+		return this.proteins.get();
+	}
+	
+	
+	public synchronized long getFailures()
+	{
+		return this.failures;
+	}
+	
+	
+	/**
+	 * Returns true if the failure rate exceeded the maximum.
+	 * 
+	 * @return
+	 */
+	public boolean isAborted()
+	{
+		return this.aborted;
+	}
+	
+	
+	/**
+	 * Marks the run as aborted if the failure rate exceeds the maximum.
+	 */
+	private synchronized void check()
+	{
+		long proteins = this.proteins.get();
+		
+		if (!Double.isNaN(this.maxRate) && proteins >= Globals.QUARANTINE_MIN_PROTEINS && this.failures > this.maxRate * proteins) {this.aborted = true;}
+	}
+	
+	
+	public synchronized void close()
+	{
+		if (this.writer == null) {return;}
+		
+		try
+		{
+			this.writer.close();
+		}
+		catch (IOException e)
+		{
+			ErrorUtils.printError(QuarantineLog.class, "Failed to close " + this.name, e);
+		}
+	}
+
+}
@@ -0,0 +1,164 @@
+//    <TMSEG: Prediction of Transmembrane Helices in Proteins.>
+//    Copyright (C) 2014  Michael Bernhofer
+//
+//    This program is free software: you can redistribute it and/or modify
+//    it under the terms of the GNU General Public License as published by
+//    the Free Software Foundation, either version 3 of the License, or
+//    (at your option) any later version.
+//
+//    This program is distributed in the hope that it will be useful,
+//    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//    GNU General Public License for more details.
+//
+//    You should have received a copy of the GNU General Public License
+//    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package io;
+
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+
+/**
+ * Splits a stream (e.g. stdin) into FASTA/PSSM records, one record at a time.
+ * 
+ * Text streams are concatenated records: a FASTA header with the sequence
+ * (and structure) lines, followed by the PSSM. The FASTA part ends at the
+ * first empty line or PSSM title line, the PSSM at the next header or at a
+ * line "//". Framed streams are binary: every record consists of the FASTA
+ * and the PSSM text, each preceded by its length (4 bytes, big-endian).
+ */
+public class RecordStream {
+	
+	
+	private static final String 	PSSM_TITLE 	= "Last position-specific";
+	private static final String 	SEPARATOR 	= "//";
+	private static final int 		MAX_FRAME 	= 1 << 28;
+	
+	private BufferedReader 	reader 	= null;
+	private DataInputStream data 	= null;
+	private String 			pending = null; //header line of the next text record
+	private String 			fasta 	= null;
+	private String 			pssm 	= null;
+	private long 			count 	= 0;
+	
+	
+	public RecordStream(InputStream input, boolean framed)
+	{
+		if (framed) {this.data = new DataInputStream(input);}
+		else 		{this.reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));}
+	}
+	
+	
+	/**
+	 * Reads the next record, returns false at the end of the stream.
+	 * 
+	 * @return
+	 * @throws IOException
+	 */
+	public boolean next() throws IOException
+	{
+		boolean found = this.data != null ? this.nextFrame() : this.nextText();
+		
+		if (found) {++this.count;}
+		
+		return found;
+	}
+	
+	
+	public String getFasta()
+	{
+		return this.fasta;
+	}
+	
+	
+	public String getPssm()
+	{
+		return this.pssm;
+	}
+	
+	
+	/**
+	 * Returns a name of the current record for messages.
+	 * 
+	 * @return
+	 */
+	public String getName()
+	{
+		return "stdin record " + this.count;
+	}
+	
+	
+	private boolean nextText() throws IOException
+	{
+		StringBuilder 	fasta 	= new StringBuilder();
+		StringBuilder 	pssm 	= new StringBuilder();
+		String 			line 	= this.pending != null ? this.pending : this.reader.readLine();
+		
+		//skip everything up to the next header
+		while (line != null && !line.startsWith(">")) {line = this.reader.readLine();}
+		
+		if (line == null) {return false;}
+		
+		do
+		{
+			fasta.append(line).append('\n');
+			
+			line = this.reader.readLine();
+		}
+		while (line != null && !line.startsWith(">") && !line.trim().isEmpty() && !line.startsWith(PSSM_TITLE) && !line.trim().equals(SEPARATOR));
+		
+		while (line != null && !line.startsWith(">") && !line.trim().equals(SEPARATOR))
+		{
+			pssm.append(line).append('\n');
+			
+			line = this.reader.readLine();
+		}
+		
+		this.pending 	= line != null && line.startsWith(">") ? line : null;
+		this.fasta 		= fasta.toString();
+		this.pssm 		= pssm.toString();
+		
+		return true;
+	}
+	
+	
+	private boolean nextFrame() throws IOException
+	{
+		int length = 0;
+		
+		try
+		{
+			length = this.data.readInt();
+		}
+		catch (EOFException e)
+		{
+			return false;
+		}
+		
+		this.fasta 	= this.readFrame(length);
+		this.pssm 	= this.readFrame(this.data.readInt());
+		
+		return true;
+	}
+	
+	
+	private String readFrame(int length) throws IOException
+	{
+		if (length < 0 || length > MAX_FRAME) {throw new IOException("Invalid frame length " + length + " in " + this.getName());}
+		
+		byte[] frame = new byte[length];
+		
+		this.data.readFully(frame);
+		
+		return new String(frame, StandardCharsets.UTF_8);
+	}
+
+}
@@ -0,0 +1,384 @@
+//    <TMSEG: Prediction of Transmembrane Helices in Proteins.>
+//    Copyright (C) 2014  Michael Bernhofer
+//
+//    This program is free software: you can redistribute it and/or modify
+//    it under the terms of the GNU General Public License as published by
+//    the Free Software Foundation, either version 3 of the License, or
+//    (at your option) any later version.
+//
+//    This program is distributed in the hope that it will be useful,
+//    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//    GNU General Public License for more details.
+//
+//    You should have received a copy of the GNU General Public License
+//    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package io;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+import util.ErrorUtils;
+import util.Globals;
+import util.Mappings;
+import data.Prediction;
+
+
+/**
+ * Appends the results of all proteins to one stream (or a new stream every
+ * n proteins) instead of one file per protein. Records are written as TSV
+ * (one line per segment, sequence, prediction and raw score row) or as JSONL
+ * (one object per protein), depending on the file extension. With a .gz
+ * extension, every protein is compressed as a gzip member of its own.
+ * The offset index (stream path + .idx) lists the file, byte offset and byte
+ * length of every protein, so a single protein can be read (and decompressed)
+ * without reading the stream from the start.
+ */
+public class StreamSink {
+	
+	
+	private static final String 	TSV_HEADER 	= "#protein\trecord\tvalues\n";
+	
+	private File 			path 		= null;
+	private boolean 		isJson 		= false;
+	private boolean 		isGzip 		= false;
+	private boolean 		withRaw 	= false;
+	private boolean 		tmpOnly 	= false;
+	private int 			rotate 		= 0;
+	
+	private OutputStream 	stream 		= null;
+	private BufferedWriter 	index 		= null;
+	private String 			fileName 	= null;
+	private long 			offset 		= 0;
+	private int 			files 		= 0;
+	private int 			proteins 	= 0;
+	private int 			inFile 		= 0;
+	
+	
+	/**
+	 * Opens the stream and its offset index. The format is chosen by the extension
+	 * of the path (.tsv or .jsonl, optionally followed by .gz).
+	 * 
+	 * @param path
+	 * @param withRaw
+	 * @param tmpOnly
+	 * @param rotate
+	 * @throws IOException
+	 */
+	public StreamSink(String path, boolean withRaw, boolean tmpOnly, int rotate) throws IOException
+	{
+		String name = path.toLowerCase(Locale.ROOT);
+		
+		this.path 		= new File(path).getAbsoluteFile();
+		this.isGzip 	= name.endsWith(".gz");
+		this.isJson 	= name.endsWith(".jsonl") || name.endsWith(".jsonl.gz");
+		this.withRaw 	= withRaw;
+		this.tmpOnly 	= tmpOnly;
+		this.rotate 	= rotate;
+		
+		this.path.getParentFile().mkdirs();
+		
+		this.index = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(this.path.getPath() + ".idx"), StandardCharsets.UTF_8));
+		
+		this.index.write("protein\tfile\toffset\tlength\n");
+		
+		this.openStream();
+	}
+	
+	
+	/**
+	 * Returns true if the raw scores are part of the records.
+	 * 
+	 * @return
+	 */
+	public boolean hasRaw()
+	{
+		return this.withRaw;
+	}
+	
+	
+	/**
+	 * Returns true if the given file name is in a format supported by the sink.
+	 * 
+	 * @param path
+	 * @return
+	 */
+	public static boolean isSupported(String path)
+	{
+		String name = path.toLowerCase(Locale.ROOT);
+		
+		if (name.endsWith(".gz")) {name = name.substring(0, name.length() - 3);}
+		
+		return name.endsWith(".tsv") || name.endsWith(".jsonl");
+	}
+	
+	
+	/**
+	 * Appends the records of a protein (skipped if only TMPs are written and
+	 * the protein is none). The records are formatted and compressed by the
+	 * calling thread, only the append is serialised.
+	 * 
+	 * @param prediction
+	 */
+	public void add(Prediction prediction)
+	{
+		if (prediction == null || (this.tmpOnly && !prediction.isPredTmp())) {return;}
+		
+		String 	records = this.isJson ? this.toJson(prediction) : this.toTsv(prediction);
+		byte[] 	bytes 	= records.getBytes(StandardCharsets.UTF_8);
+		
+		try
+		{
+			if (this.isGzip) {bytes = compress(bytes);}
+			
+			this.append(prediction.getName(), bytes);
+		}
+		catch (IOException e)
+		{
+			ErrorUtils.printError(StreamSink.class, "Failed to write " + prediction.getName() + " to " + this.fileName, e);
+		}
+	}
+	
+	
+	public synchronized int getProteins()
+	{
+		return this.proteins;
+	}
+	
+	
+	public synchronized void close()
+	{
+		try
+		{
+			this.stream.close();
+			this.index.close();
+		}
+		catch (IOException e)
+		{
+			ErrorUtils.printError(StreamSink.class, "Failed to close " + this.fileName, e);
+		}
+	}
+	
+	
+	private synchronized void append(String name, byte[] bytes) throws IOException
+	{
+		if (this.rotate > 0 && this.inFile == this.rotate)
+		{
+			this.stream.close();
+			
+			this.openStream();
+		}
+		
+		this.stream.write(bytes);
+		this.index.write(name + "\t" + this.fileName + "\t" + this.offset + "\t" + bytes.length + "\n");
+		
+		this.offset += bytes.length;
+		
+		++this.inFile;
+		++this.proteins;
+	}
+	
+	
+	/**
+	 * Opens the next stream file, rotated streams get a part number before the extension.
+	 * 
+	 * @throws IOException
+	 */
+	private void openStream() throws IOException
+	{
+		String 	name 		= this.path.getName();
+		int 	extension 	= name.toLowerCase(Locale.ROOT).lastIndexOf(this.isJson ? ".jsonl" : ".tsv");
+		
+		if (this.rotate > 0) {name = name.substring(0, extension) + String.format(Locale.ROOT, ".%05d", this.files) + name.substring(extension);}
+		
+		this.fileName 	= name;
+		this.stream 	= new BufferedOutputStream(new FileOutputStream(new File(this.path.getParentFile(), name)), Globals.OUTPUT_BUFFER_SIZE);
+		this.offset 	= 0;
+		this.inFile 	= 0;
+		
+		++this.files;
+		
+		if (!this.isJson)
+		{
+			byte[] header = TSV_HEADER.getBytes(StandardCharsets.UTF_8);
+			
+			if (this.isGzip) {header = compress(header);}
+			
+			this.stream.write(header);
+			
+			this.offset += header.length;
+		}
+	}
+	
+	
+	/**
+	 * Formats the TSV records of a protein: PROTEIN (length, TMP, signal peptide, header),
+	 * one line per segment (start, end, RI), SEQUENCE, PREDICTION and, if requested,
+	 * one RAW line per residue with the columns of the raw output file.
+	 * 
+	 * @param prediction
+	 * @return
+	 */
+	private String toTsv(Prediction prediction)
+	{
+		StringBuilder 	output 	= new StringBuilder();
+		String 			name 	= prediction.getName();
+		byte[] 			states 	= prediction.getStates();
+		
+		output.append(name + "\tPROTEIN\t" + prediction.getLength() + "\t" + (prediction.isPredTmp() ? 1 : 0) + "\t" + (prediction.hasPredSigP() ? 1 : 0) + "\t" + prediction.getHeader().replace('\t', ' ') + "\n");
+		
+		for (int k = 0; k < prediction.size(); ++k)
+		{
+			byte 	type 	= prediction.getType(k);
+			String 	ri 		= Mappings.ssOf(type) == Mappings.indexTmh ? String.valueOf(prediction.getConfidence(k)) : ".";
+			
+			output.append(name + "\t" + Mappings.segmentName(type) + "\t" + (prediction.getStart(k)+1) + "\t" + (prediction.getEnd(k)+1) + "\t" + ri + "\n");
+		}
+		
+		output.append(name + "\tSEQUENCE\t" + Mappings.decodeResidues(prediction.getSequence()) + "\n");
+		output.append(name + "\tPREDICTION\t" + Mappings.decodeStates(states) + "\n");
+		
+		if (!this.withRaw) {return output.toString();}
+		
+		short[][] 	raw 	= {prediction.getSolRaw(), prediction.getTmhRaw(), prediction.getSigRaw(), prediction.getSegmentRaw()};
+		byte[] 		sequence = prediction.getSequence();
+		
+		for (int i = 0; i < sequence.length; ++i)
+		{
+			output.append(name + "\tRAW\t" + (i+1) + "\t" + Mappings.decodeResidue(sequence[i]));
+			
+			for (short[] scores : raw) {output.append("\t" + formatRaw(scores != null ? scores[i] : -1, "."));}
+			
+			output.append("\t" + formatRaw(i == 0 ? prediction.getTopologyRaw() : -1, "."));
+			output.append("\t" + Mappings.decodeState(states[i]) + "\n");
+		}
+		
+		return output.toString();
+	}
+	
+	
+	/**
+	 * Formats the JSON object of a protein (one line).
+	 * 
+	 * @param prediction
+	 * @return
+	 */
+	private String toJson(Prediction prediction)
+	{
+		StringBuilder output = new StringBuilder();
+		
+		output.append("{\"protein\": " + quote(prediction.getName()));
+		output.append(", \"header\": " + quote(prediction.getHeader()));
+		output.append(", \"length\": " + prediction.getLength());
+		output.append(", \"tmp\": " + prediction.isPredTmp());
+		output.append(", \"signal_peptide\": " + prediction.hasPredSigP());
+		output.append(", \"sequence\": " + quote(Mappings.decodeResidues(prediction.getSequence())));
+		output.append(", \"prediction\": " + quote(Mappings.decodeStates(prediction.getStates())));
+		output.append(", \"segments\": [");
+		
+		for (int k = 0; k < prediction.size(); ++k)
+		{
+			byte type = prediction.getType(k);
+			
+			output.append((k > 0 ? ", " : "") + "{\"type\": \"" + Mappings.segmentName(type) + "\", \"start\": " + (prediction.getStart(k)+1) + ", \"end\": " + (prediction.getEnd(k)+1));
+			
+			if (Mappings.ssOf(type) == Mappings.indexTmh) {output.append(", \"ri\": " + prediction.getConfidence(k));}
+			
+			output.append("}");
+		}
+		
+		output.append("]");
+		
+		if (this.withRaw)
+		{
+			String[] 	fields 	= {"sol", "tmh", "sig", "seg"};
+			short[][] 	raw 	= {prediction.getSolRaw(), prediction.getTmhRaw(), prediction.getSigRaw(), prediction.getSegmentRaw()};
+			
+			output.append(", \"raw\": {");
+			
+			for (int j = 0; j < fields.length; ++j)
+			{
+				output.append("\"" + fields[j] + "\": ");
+				
+				if (raw[j] == null)
+				{
+					output.append("null, ");
+					
+					continue;
+				}
+				
+				output.append("[");
+				
+				for (int i = 0; i < raw[j].length; ++i) {output.append((i > 0 ? ", " : "") + formatRaw(raw[j][i], "null"));}
+				
+				output.append("], ");
+			}
+			
+			output.append("\"top\": " + formatRaw(prediction.getTopologyRaw(), "null") + "}");
+		}
+		
+		output.append("}\n");
+		
+		return output.toString();
+	}
+	
+	
+	/**
+	 * Formats a raw score (permille) as in the raw output file.
+	 * 
+	 * @param value
+	 * @param missing
+	 * @return
+	 */
+	private static String formatRaw(int value, String missing)
+	{
+		return value >= 0 ? String.valueOf(value/1000.0) : missing;
+	}
+	
+	
+	private static String quote(String value)
+	{
+		StringBuilder output = new StringBuilder("\"");
+		
+		for (int i = 0; i < value.length(); ++i)
+		{
+			char c = value.charAt(i);
+			
+			if (c == '"' || c == '\\') 	{output.append('\\').append(c);}
+			else if (c < ' ') 			{output.append(String.format(Locale.ROOT, "\\u%04x", (int)c));}
+			else 						{output.append(c);}
+		}
+		
+		return output.append('"').toString();
+	}
+	
+	
+	/**
+	 * Compresses the bytes into a complete gzip member.
+	 * 
+	 * @param bytes
+	 * @return
+	 * @throws IOException
+	 */
+	private static byte[] compress(byte[] bytes) throws IOException
+	{
+		ByteArrayOutputStream 	buffer 	= new ByteArrayOutputStream(bytes.length / 4 + 64);
+		GZIPOutputStream 		gzip 	= new GZIPOutputStream(buffer);
+		
+		gzip.write(bytes);
+		gzip.close();
+		
+		return buffer.toByteArray();
+	}
+
+}
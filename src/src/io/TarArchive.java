@@ -0,0 +1,403 @@
+//    <TMSEG: Prediction of Transmembrane Helices in Proteins.>
+//    Copyright (C) 2014  Michael Bernhofer
+//
+//    This program is free software: you can redistribute it and/or modify
+//    it under the terms of the GNU General Public License as published by
+//    the Free Software Foundation, either version 3 of the License, or
+//    (at your option) any later version.
+//
+//    This program is distributed in the hope that it will be useful,
+//    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//    GNU General Public License for more details.
+//
+//    You should have received a copy of the GNU General Public License
+//    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+
+import util.ErrorUtils;
+
+
+/**
+ * Minimal reader for (gzipped) tar archives, e.g. the supplementary dataset.
+ * Only regular files are read; GNU long names and the path and size records
+ * of POSIX extended headers are supported. The entries are read one after
+ * another while the archive is streamed.
+ */
+public class TarArchive {
+	
+	
+	private static final int 	BLOCK_SIZE 	= 512;
+	private static final int 	MAX_ENTRY 	= 1 << 30;
+	
+	private String 			archive 	= null;
+	private DataInputStream data 		= null;
+	private long 			size 		= 0;
+	private long 			remaining 	= 0; //unread bytes of the current entry (incl. padding)
+	
+	
+	public TarArchive(String archive) throws IOException
+	{
+		InputStream input = new BufferedInputStream(new FileInputStream(archive), 1 << 16);
+		
+		if (isGzip(archive)) {input = new GZIPInputStream(input, 1 << 16);}
+		
+		this.archive 	= archive;
+		this.data 		= new DataInputStream(input);
+	}
+	
+	
+	/**
+	 * Moves to the next regular file and returns its name, or null at the end
+	 * of the archive. The unread rest of the current entry is skipped.
+	 * 
+	 * @return
+	 * @throws IOException
+	 */
+	public String nextEntry() throws IOException
+	{
+		byte[] 	header 		= new byte[BLOCK_SIZE];
+		String 	name 		= null;
+		long 	paxSize 	= -1;
+		
+		skip(this.data, this.remaining);
+		
+		this.remaining = 0;
+		
+		while (true)
+		{
+			try
+			{
+				this.data.readFully(header);
+			}
+			catch (EOFException e)
+			{
+				return null;
+			}
+			
+			if (header[0] == 0) {return null;} //end of archive
+			
+			long size 	= parseOctal(header, 124, 12);
+			char type 	= (char)header[156];
+			
+			if (type == 'x') //POSIX extended header of the next entry
+			{
+				if (size > MAX_ENTRY) {throw new IOException("Extended header of " + size + " bytes is too large in " + this.archive);}
+				
+				byte[] records = new byte[(int)size];
+				
+				this.data.readFully(records);
+				skip(this.data, padding(size));
+				
+				String path = paxRecord(records, "path");
+				String len 	= paxRecord(records, "size");
+				
+				if (path != null) {name = path;}
+				
+				if (len != null)
+				{
+					try
+					{
+						paxSize = Long.parseLong(len.trim());
+					}
+					catch (NumberFormatException e)
+					{
+						throw new IOException("Invalid size record " + len + " in " + this.archive);
+					}
+				}
+				
+				continue;
+			}
+			
+			if (type == 'L') //GNU long name of the next entry
+			{
+				byte[] longName = new byte[(int)size];
+				
+				this.data.readFully(longName);
+				skip(this.data, padding(size));
+				
+				name = new String(longName, "UTF-8").trim();
+				
+				continue;
+			}
+			
+			if (type == 'g') //POSIX global header, its records do not name an entry
+			{
+				skip(this.data, size + padding(size));
+				
+				continue;
+			}
+			
+			if (name == null) 	{name = entryName(header);}
+			if (paxSize >= 0) 	{size = paxSize;}
+			
+			if (type == '0' || type == 0)
+			{
+				this.size 		= size;
+				this.remaining 	= size + padding(size);
+				
+				return name;
+			}
+			
+			skip(this.data, size + padding(size));
+			
+			name 	= null;
+			paxSize = -1;
+		}
+	}
+	
+	
+	/**
+	 * Returns the size of the current entry in bytes.
+	 * 
+	 * @return
+	 */
+	public long getSize()
+	{
+		return this.size;
+	}
+	
+	
+	/**
+	 * Reads the content of the current entry.
+	 * 
+	 * @return
+	 * @throws IOException
+	 */
+	public byte[] readEntry() throws IOException
+	{
+		if (this.remaining == 0) 	{throw new IOException("No unread entry in " + this.archive);}
+		if (this.size > MAX_ENTRY) 	{throw new IOException("Entry of " + this.size + " bytes is too large in " + this.archive);}
+		
+		byte[] content = new byte[(int)this.size];
+		
+		this.data.readFully(content);
+		
+		skip(this.data, padding(this.size));
+		
+		this.remaining = 0;
+		
+		return content;
+	}
+	
+	
+	public void close()
+	{
+		try
+		{
+			this.data.close();
+		}
+		catch (IOException e)
+		{
+			//do nothing
+		}
+	}
+	
+	
+	/**
+	 * Extracts all regular files of a .tar or .tar.gz/.tgz archive into a folder.
+	 * 
+	 * @param archive
+	 * @param folder
+	 * @return
+	 */
+	public static boolean extract(String archive, String folder)
+	{
+		TarArchive input = null;
+		
+		try
+		{
+			File 	target 	= new File(folder).getCanonicalFile();
+			String 	name 	= null;
+			
+			input = new TarArchive(archive);
+			
+			while ((name = input.nextEntry()) != null)
+			{
+				File file = new File(target, name).getCanonicalFile();
+				
+				if (!file.getPath().startsWith(target.getPath() + File.separator))
+				{
+					ErrorUtils.printWarning(TarArchive.class, "Skipping entry outside of the target folder: " + name, null);
+				}
+				else
+				{
+					file.getParentFile().mkdirs();
+					
+					input.copyEntry(file);
+				}
+			}
+			
+			return true;
+		}
+		catch (IOException e)
+		{
+			ErrorUtils.printError(TarArchive.class, "Failed to extract " + archive, e);
+			
+			return false;
+		}
+		finally
+		{
+			if (input != null) {input.close();}
+		}
+	}
+	
+	
+	public static boolean isArchive(String filename)
+	{
+		String name = filename.toLowerCase();
+		
+		return name.endsWith(".tar") || isGzip(filename);
+	}
+	
+	
+	private static boolean isGzip(String filename)
+	{
+		String name = filename.toLowerCase();
+		
+		return name.endsWith(".tar.gz") || name.endsWith(".tgz");
+	}
+	
+	
+	private static String entryName(byte[] header) throws IOException
+	{
+		String name 	= cString(header, 0, 100);
+		String prefix 	= cString(header, 345, 155);
+		String magic 	= cString(header, 257, 6);
+		
+		if (magic.startsWith("ustar") && prefix.length() > 0) {name = prefix + "/" + name;}
+		
+		return name;
+	}
+	
+	
+	/**
+	 * Returns the value of a record ("length key=value\n") of a POSIX extended
+	 * header, or null if the header has no such record.
+	 * 
+	 * @param records
+	 * @param key
+	 * @return
+	 * @throws IOException
+	 */
+	private static String paxRecord(byte[] records, String key) throws IOException
+	{
+		String 	value 	= null;
+		int 	offset 	= 0;
+		
+		while (offset < records.length && records[offset] != 0)
+		{
+			int space 	= offset;
+			int length 	= 0;
+			
+			while (space < records.length && records[space] >= '0' && records[space] <= '9') {length = 10*length + (records[space++] - '0');}
+			
+			if (space >= records.length || records[space] != ' ' || length <= space - offset || offset + length > records.length)
+			{
+				throw new IOException("Corrupt extended header");
+			}
+			
+			String record = new String(records, space + 1, offset + length - space - 1, "UTF-8");
+			
+			if (record.endsWith("\n")) {record = record.substring(0, record.length() - 1);}
+			
+			if (record.startsWith(key + "=")) {value = record.substring(key.length() + 1);}
+			
+			offset += length;
+		}
+		
+		return value;
+	}
+	
+	
+	private static String cString(byte[] buffer, int offset, int length) throws IOException
+	{
+		int end = offset;
+		
+		while (end < offset + length && buffer[end] != 0) {++end;}
+		
+		return new String(buffer, offset, end - offset, "UTF-8").trim();
+	}
+	
+	
+	private static long parseOctal(byte[] buffer, int offset, int length)
+	{
+		long value = 0;
+		
+		for (int i = offset; i < offset + length; ++i)
+		{
+			if (buffer[i] >= '0' && buffer[i] <= '7') {value = (value << 3) + (buffer[i] - '0');}
+			else if (value > 0 || (buffer[i] != ' ' && buffer[i] != 0)) {break;}
+		}
+		
+		return value;
+	}
+	
+	
+	private static long padding(long size)
+	{
+		return (BLOCK_SIZE - (size % BLOCK_SIZE)) % BLOCK_SIZE;
+	}
+	
+	
+	private void copyEntry(File file) throws IOException
+	{
+		OutputStream 	output 	= new BufferedOutputStream(new FileOutputStream(file), 1 << 16);
+		byte[] 			buffer 	= new byte[1 << 16];
+		long 			size 	= this.size;
+		
+		try
+		{
+			while (size > 0)
+			{
+				int read = this.data.read(buffer, 0, (int)Math.min(buffer.length, size));
+				
+				if (read < 0) {throw new EOFException("Truncated archive entry " + file.getName());}
+				
+				output.write(buffer, 0, read);
+				
+				size -= read;
+			}
+		}
+		finally
+		{
+			output.close();
+		}
+		
+		skip(this.data, padding(this.size));
+		
+		this.remaining = 0;
+	}
+	
+	
+	private static void skip(DataInputStream input, long bytes) throws IOException
+	{
+		while (bytes > 0)
+		{
+			int skipped = input.skipBytes((int)Math.min(bytes, Integer.MAX_VALUE));
+			
+			if (skipped <= 0)
+			{
+				if (input.read() < 0) {throw new EOFException("Truncated archive");}
+				
+				skipped = 1;
+			}
+			
+			bytes -= skipped;
+		}
+	}
+
+}
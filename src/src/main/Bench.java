@@ -0,0 +1,476 @@
+//    <TMSEG: Prediction of Transmembrane Helices in Proteins.>
+//    Copyright (C) 2014  Michael Bernhofer
+//
+//    This program is free software: you can redistribute it and/or modify
+//    it under the terms of the GNU General Public License as published by
+//    the Free Software Foundation, either version 3 of the License, or
+//    (at your option) any later version.
+//
+//    This program is distributed in the hope that it will be useful,
+//    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//    GNU General Public License for more details.
+//
+//    You should have received a copy of the GNU General Public License
+//    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package main;
+
+import io.OutputWriter;
+import io.TarArchive;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import util.ErrorUtils;
+import util.Metrics;
+
+
+/**
+ * Runs the full prediction over a corpus at 1, 2, 4, ... N threads and reports
+ * throughput, stage shares, latency percentiles, peak heap and GC time as CSV.
+ * Called via "tmseg bench [options]".
+ */
+public class Bench {
+	
+	
+	private static String 	inPath 		= null;
+	private static String 	outPath 	= null;
+	private static int 		maxThreads 	= Runtime.getRuntime().availableProcessors();
+	private static int 		warmup 		= 1;
+	private static int 		rounds 		= 1;
+	private static boolean 	doRaw 		= false;
+	
+	
+	public static void main(String[] args)
+	{
+		if (!parseParams(args))
+		{
+			printHelp();
+			
+			return;
+		}
+		
+		if (!TMSEG.initRootDir(main.TMSEG.class))
+		{
+			ErrorUtils.printError(Bench.class, "Failed to initialize root directory", null);
+			
+			return;
+		}
+		
+		if (TMSEG.modelPath == null) {TMSEG.modelPath = TMSEG.rootDir + "/models";}
+		
+		if (!TMSEG.checkModels()) {return;}
+		
+		File tmpFolder = null;
+		
+		try
+		{
+			tmpFolder = Files.createTempDirectory("tmseg-bench").toFile();
+		}
+		catch (IOException e)
+		{
+			ErrorUtils.printError(Bench.class, "Failed to create temporary folder", e);
+			
+			return;
+		}
+		
+		String corpus = inPath;
+		
+		//unpack archives (e.g. the supplementary dataset) first
+		if (TarArchive.isArchive(inPath))
+		{
+			corpus = new File(tmpFolder, "corpus").getPath();
+			
+			if (!TarArchive.extract(inPath, corpus))
+			{
+				delete(tmpFolder);
+				
+				return;
+			}
+		}
+		
+		List<String[]> jobs = listJobs(corpus);
+		
+		if (jobs.isEmpty())
+		{
+			ErrorUtils.printError(Bench.class, "No pairs of .fasta and .pssm files found in " + inPath, null);
+			
+			delete(tmpFolder);
+			
+			return;
+		}
+		
+		TMSEG.loadPredictors();
+		
+		StringBuilder output = new StringBuilder();
+		
+		output.append("threads,proteins,residues,seconds,proteins_per_s,residues_per_s");
+		
+		for (int i = 0; i < Metrics.getStageCount(); ++i) {output.append("," + Metrics.getStageName(i) + "_share");}
+		
+		output.append(",p50_ms,p99_ms,peak_heap_mb,gc_ms\n");
+		
+		//warm-up (not reported)
+		if (warmup > 0)
+		{
+			TMSEG.metrics = new Metrics();
+			
+			run(jobs, maxThreads, warmup, tmpFolder.getPath());
+		}
+		
+		for (int threads : threadCounts())
+		{
+			System.gc();
+			
+			List<MemoryPoolMXBean> 	pools 		= ManagementFactory.getMemoryPoolMXBeans();
+			long 					gcStart 	= gcTime();
+			
+			for (MemoryPoolMXBean pool : pools)
+			{
+				if (pool.getType() == MemoryType.HEAP) {pool.resetPeakUsage();}
+			}
+			
+			TMSEG.metrics = new Metrics();
+			
+			long 	start 		= System.nanoTime();
+			long[] 	latencies 	= run(jobs, threads, rounds, tmpFolder.getPath());
+			double 	seconds 	= (System.nanoTime() - start) / 1e9;
+			long 	gc 			= gcTime() - gcStart;
+			long 	peakHeap 	= 0;
+			
+			for (MemoryPoolMXBean pool : pools)
+			{
+				if (pool.getType() == MemoryType.HEAP) {peakHeap += pool.getPeakUsage().getUsed();}
+			}
+			
+			Metrics metrics 	= TMSEG.metrics;
+			long 	stageTotal 	= 0;
+			
+			for (int i = 0; i < Metrics.getStageCount(); ++i) {stageTotal += metrics.getStageNanos(i);}
+			
+			output.append(threads + "," + metrics.getProteins() + "," + metrics.getResidues() + "," + format(seconds));
+			output.append("," + format(metrics.getProteins() / seconds) + "," + format(metrics.getResidues() / seconds));
+			
+			for (int i = 0; i < Metrics.getStageCount(); ++i)
+			{
+				output.append("," + format(stageTotal > 0 ? (double)metrics.getStageNanos(i) / stageTotal : 0.0));
+			}
+			
+			output.append("," + format(percentile(latencies, 0.50) / 1e6) + "," + format(percentile(latencies, 0.99) / 1e6));
+			output.append("," + format(peakHeap / (1024.0 * 1024.0)) + "," + gc + "\n");
+		}
+		
+		TMSEG.metrics = null;
+		
+		delete(tmpFolder);
+		
+		if (outPath != null)
+		{
+			OutputWriter.writeFile(outPath, output.toString());
+		}
+		else
+		{
+			System.out.print(output.toString());
+		}
+	}
+	
+	
+	/**
+	 * Predicts all jobs the given number of times with a pool of threads
+	 * and returns the latency of every single prediction.
+	 * 
+	 * @param jobs
+	 * @param threads
+	 * @param passes
+	 * @param outFolder
+	 * @return
+	 */
+	private static long[] run(final List<String[]> jobs, int threads, int passes, final String outFolder)
+	{
+		final long[] 			latencies 	= new long[jobs.size() * passes];
+		final AtomicInteger 	next 		= new AtomicInteger(0);
+		ExecutorService 		pool 		= Executors.newFixedThreadPool(threads);
+		List<Future<Object>> 	results 	= new ArrayList<Future<Object>>();
+		
+		TMSEG.openOutput();
+		
+		for (int i = 0; i < threads; ++i)
+		{
+			results.add(pool.submit(new Callable<Object>()
+			{
+				@Override
+				public Object call()
+				{
+					TMSEG.initWorker();
+					
+					for (int index = next.getAndIncrement(); index < latencies.length; index = next.getAndIncrement())
+					{
+						String[] 	job 		= jobs.get(index % jobs.size());
+						String 		name 		= job[0] + "_" + (index / jobs.size());
+						String 		outFile 	= new File(outFolder, name + ".tmseg").getPath();
+						String 		outFileRaw 	= doRaw ? new File(outFolder, name + ".tmseg-raw").getPath() : null;
+						long 		start 		= System.nanoTime();
+						
+						TMSEG.doPrediction(job[1], job[2], outFile, outFileRaw);
+						
+						latencies[index] = System.nanoTime() - start;
+					}
+					
+					return null;
+				}
+			}));
+		}
+		
+		try
+		{
+			for (Future<Object> result : results) {result.get();}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		catch (ExecutionException e)
+		{
+			ErrorUtils.printError(Bench.class, "Prediction failed", e);
+		}
+		finally
+		{
+			pool.shutdown();
+			
+			//the pass ends when its files are written
+			TMSEG.closeOutput();
+		}
+		
+		return latencies;
+	}
+	
+	
+	/**
+	 * Lists all pairs of FASTA (.fasta/.fa) and PSSM (.pssm) files with the same
+	 * name within a folder and its subfolders (except the model folder)
+	 * as {name, fasta, pssm}.
+	 * 
+	 * @param folder
+	 * @return
+	 */
+	static List<String[]> listJobs(String folder)
+	{
+		Map<String, String> 	fastaFiles 	= new TreeMap<String, String>();
+		Map<String, String> 	pssmFiles 	= new TreeMap<String, String>();
+		List<String[]> 			jobs 		= new ArrayList<String[]>();
+		
+		collect(new File(folder), fastaFiles, pssmFiles);
+		
+		for (Map.Entry<String, String> entry : fastaFiles.entrySet())
+		{
+			String pssmFile = pssmFiles.get(entry.getKey());
+			
+			if (pssmFile != null) {jobs.add(new String[] {entry.getKey(), entry.getValue(), pssmFile});}
+		}
+		
+		return jobs;
+	}
+	
+	
+	private static void collect(File file, Map<String, String> fastaFiles, Map<String, String> pssmFiles)
+	{
+		if (file.isDirectory())
+		{
+			//skip the training set written by "tmseg generate --models"
+			if (file.getAbsolutePath().equals(TMSEG.modelPath)) {return;}
+			
+			File[] files = file.listFiles();
+			
+			if (files == null) {return;}
+			
+			for (File child : files) {collect(child, fastaFiles, pssmFiles);}
+			
+			return;
+		}
+		
+		String name = file.getName();
+		String path = file.getAbsolutePath();
+		
+		if (name.toLowerCase().endsWith(".fasta")) 		{fastaFiles.put(name.substring(0, name.length()-6), path);}
+		else if (name.toLowerCase().endsWith(".fa")) 	{fastaFiles.put(name.substring(0, name.length()-3), path);}
+		else if (name.toLowerCase().endsWith(".pssm")) 	{pssmFiles.put(name.substring(0, name.length()-5), path);}
+	}
+	
+	
+	private static List<Integer> threadCounts()
+	{
+		List<Integer> counts = new ArrayList<Integer>();
+		
+		for (int threads = 1; threads < maxThreads; threads *= 2) {counts.add(threads);}
+		
+		counts.add(maxThreads);
+		
+		return counts;
+	}
+	
+	
+	private static long gcTime()
+	{
+		long time = 0;
+		
+		for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans())
+		{
+			time += Math.max(0, collector.getCollectionTime());
+		}
+		
+		return time;
+	}
+	
+	
+	static long percentile(long[] values, double fraction)
+	{
+		if (values.length == 0) {return 0;}
+		
+		long[] sorted = values.clone();
+		
+		Arrays.sort(sorted);
+		
+		return sorted[Math.min(sorted.length - 1, (int)Math.ceil(fraction * sorted.length) - 1)];
+	}
+	
+	
+	static String format(double value)
+	{
+		return String.format(Locale.ROOT, "%.4f", value);
+	}
+	
+	
+	static void delete(File file)
+	{
+		File[] files = file.listFiles();
+		
+		if (files != null)
+		{
+			for (File child : files) {delete(child);}
+		}
+		
+		file.delete();
+	}
+	
+	
+	private static boolean parseParams(String[] args)
+	{
+		if (args == null || args.length < 1) {return false;}
+		
+		int maxIndex = args.length - 1;
+		
+		for (int i = 0; i <= maxIndex; ++i)
+		{
+			String param = args[i].trim();
+			String value = null;
+			
+			if (param.equalsIgnoreCase("-i") || param.equalsIgnoreCase("-o") || param.equalsIgnoreCase("--models"))
+			{
+				if (i == maxIndex) {break;}
+				
+				value = args[i+1].trim();
+				
+				if (value.startsWith("-")) {continue;}
+				
+				if (param.equalsIgnoreCase("-i")) 		{inPath = new File(value).getAbsolutePath();}
+				else if (param.equalsIgnoreCase("-o")) 	{outPath = new File(value).getAbsolutePath();}
+				else 									{TMSEG.modelPath = new File(value).getAbsolutePath();}
+				
+				++i;
+			}
+			else if (param.equalsIgnoreCase("--threads") || param.equalsIgnoreCase("--warmup") || param.equalsIgnoreCase("--rounds"))
+			{
+				if (i == maxIndex) {break;}
+				
+				value = args[i+1].trim();
+				
+				try
+				{
+					if (param.equalsIgnoreCase("--threads")) 		{maxThreads = Integer.parseInt(value);}
+					else if (param.equalsIgnoreCase("--warmup")) 	{warmup = Integer.parseInt(value);}
+					else 											{rounds = Integer.parseInt(value);}
+				}
+				catch (NumberFormatException e)
+				{
+					ErrorUtils.printError(Bench.class, "Invalid value for " + param + ": " + value, null);
+					
+					return false;
+				}
+				
+				++i;
+			}
+			else if (param.equalsIgnoreCase("--raw"))
+			{
+				doRaw = true;
+			}
+			else
+			{
+				ErrorUtils.printError(Bench.class, "Unknown parameter: " + param, null);
+				
+				return false;
+			}
+		}
+		
+		return checkParams();
+	}
+	
+	
+	private static boolean checkParams()
+	{
+		boolean passed = true;
+		
+		if (inPath == null)
+		{
+			ErrorUtils.printError(Bench.class, "Missing corpus folder/archive", null);
+			
+			passed = false;
+		}
+		else if (!new File(inPath).exists())
+		{
+			ErrorUtils.printError(Bench.class, "Could not find corpus " + inPath, null);
+			
+			passed = false;
+		}
+		
+		if (maxThreads < 1 || rounds < 1 || warmup < 0)
+		{
+			ErrorUtils.printError(Bench.class, "Threads and rounds must be positive, warm-up must not be negative", null);
+			
+			passed = false;
+		}
+		
+		return passed;
+	}
+	
+	
+	private static void printHelp()
+	{
+		System.out.println(	"TMSEG bench help. Please use the following parameters:\n" +
+							"-i <path>            Corpus folder or .tar/.tar.gz archive (pairs of .fasta and .pssm files with the same name)\n" +
+							"-o <path>            Output CSV file (default: standard output)\n" +
+							"--threads <value>    Maximum number of threads; runs 1, 2, 4, ... up to this value (default: number of CPUs)\n" +
+							"--warmup <value>     Number of unreported passes over the corpus before measuring (default 1)\n" +
+							"--rounds <value>     Number of measured passes over the corpus per thread count (default 1)\n" +
+							"--raw FLAG           if set, raw prediction files are written as well\n" +
+							"--models <path>      Folder with the model files (default: models/ next to tmseg.jar)");
+	}
+
+}
@@ -0,0 +1,628 @@
+//    <TMSEG: Prediction of Transmembrane Helices in Proteins.>
+//    Copyright (C) 2014  Michael Bernhofer
+//
+//    This program is free software: you can redistribute it and/or modify
+//    it under the terms of the GNU General Public License as published by
+//    the Free Software Foundation, either version 3 of the License, or
+//    (at your option) any later version.
+//
+//    This program is distributed in the hope that it will be useful,
+//    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//    GNU General Public License for more details.
+//
+//    You should have received a copy of the GNU General Public License
+//    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package main;
+
+import io.OutputWriter;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Random;
+
+import predictors.HelixIndexer;
+import predictors.HelixPredictor;
+import predictors.TopologyPredictor;
+import util.ErrorUtils;
+import util.Mappings;
+import data.Protein;
+import data.Pssm;
+
+
+/**
+ * Generates synthetic FASTA and PSI-BLAST PSSM corpora and small stand-in models
+ * for load tests. Called via "tmseg generate [options]".
+ */
+public class Generator {
+	
+	
+	public static final int 		MIN_LENGTH 			= 30;
+	public static final int 		MAX_LENGTH 			= 35000;
+	public static final int 		MIN_LOOP_LENGTH 	= 5;
+	
+	private static final String 	pssmColumns 		= "ARNDCQEGHILKMFPSTWYV";
+	private static final String 	background 			= "AAAAAAAARRRRRNNNNDDDDDCQQQQEEEEEEGGGGGGGHHIIIIIILLLLLLLLLLKKKKKKMMFFFFPPPPPSSSSSSSTTTTTWYYYVVVVVVV";
+	private static final String 	helix 				= "LLLLLLIIIIIVVVVVFFFFAAAAGGMMWCSTY";
+	private static final String 	hydrophobic 		= "LLLIIIVVVFFAAMWC";
+	private static final String 	positive 			= "KKRRR";
+	private static final String 	small 				= "AAAGGSST";
+	
+	private static String 			outPath 			= null;
+	private static int 				count 				= 1000;
+	private static long 			seed 				= 1;
+	private static String 			lengthSpec 			= "lognormal:350:0.6";
+	private static int 				minTmh 				= 1;
+	private static int 				maxTmh 				= 14;
+	private static double 			tmpFraction 		= 0.25;
+	private static double 			signalFraction 		= 0.1;
+	private static double 			pathoFraction 		= 0.0;
+	private static boolean 			doAnnotated 		= false;
+	private static int 				modelProteins 		= 0;
+	
+	
+	public static void main(String[] args)
+	{
+		if (!parseParams(args))
+		{
+			printHelp();
+			
+			return;
+		}
+		
+		Random 	random 			= new Random(seed);
+		File 	fastaFolder 	= new File(outPath, "fasta");
+		File 	pssmFolder 		= new File(outPath, "pssm");
+		int 	tmps 			= 0;
+		int 	signalPeptides 	= 0;
+		int 	pathological 	= 0;
+		long 	residues 		= 0;
+		
+		fastaFolder.mkdirs();
+		pssmFolder.mkdirs();
+		
+		for (int i = 0; i < count; ++i)
+		{
+			String 	name 		= String.format("GEN%07d", i+1);
+			int 	length 		= drawLength(random);
+			int 	helices 	= random.nextDouble() < tmpFraction ? minTmh + random.nextInt(maxTmh - minTmh + 1) : 0;
+			boolean signal 		= random.nextDouble() < signalFraction;
+			int 	runLength 	= 0;
+			
+			//pathological cases: huge proteins or very long hydrophobic runs
+			if (random.nextDouble() < pathoFraction)
+			{
+				if (random.nextBoolean())
+				{
+					length = 30000 + random.nextInt(MAX_LENGTH - 30000 + 1);
+				}
+				else
+				{
+					runLength 	= 100 + random.nextInt(301);
+					length 		= Math.max(length, runLength + 2 * MIN_LOOP_LENGTH);
+					helices 	= 0;
+				}
+				
+				++pathological;
+			}
+			
+			Protein protein = newProtein(name, length, helices, signal, runLength, random);
+			
+			writeProtein(protein, fastaFolder.getPath(), pssmFolder.getPath(), doAnnotated, random);
+			
+			if (protein.isRealTmp()) 	{++tmps;}
+			if (protein.hasRealSigP()) 	{++signalPeptides;}
+			
+			residues += length;
+		}
+		
+		if (modelProteins > 0)
+		{
+			writeModels(new File(outPath, "models").getPath(), modelProteins, random);
+		}
+		
+		System.out.println("Proteins generated:   " + count);
+		System.out.println("Residues generated:   " + residues);
+		System.out.println("TMPs:                 " + tmps);
+		System.out.println("Signal peptides:      " + signalPeptides);
+		System.out.println("Pathological cases:   " + pathological);
+	}
+	
+	
+	/**
+	 * Creates an annotated synthetic protein. Helices of 18-25 residues are separated
+	 * by loops of random length with alternating topology. An optional signal peptide
+	 * precedes the first loop and an optional hydrophobic run (not annotated as TMH)
+	 * is placed into the longest loop.
+	 * 
+	 * @param name
+	 * @param length
+	 * @param helices
+	 * @param signal
+	 * @param runLength
+	 * @param random
+	 * @return
+	 */
+	public static Protein newProtein(String name, int length, int helices, boolean signal, int runLength, Random random)
+	{
+		char[] 	sequence 	= new char[length];
+		char[] 	structure 	= new char[length];
+		int 	pos 		= 0;
+		
+		//signal peptide: positive n-region, hydrophobic h-region, small c-region
+		if (signal && length >= 60)
+		{
+			int nRegion = 2 + random.nextInt(4);
+			int hRegion = 7 + random.nextInt(9);
+			int cRegion = 3 + random.nextInt(4);
+			
+			for (int i = 0; i < nRegion; ++i) {sequence[pos++] = pick(positive, random);}
+			for (int i = 0; i < hRegion; ++i) {sequence[pos++] = pick(hydrophobic, random);}
+			for (int i = 0; i < cRegion; ++i) {sequence[pos++] = pick(small, random);}
+			
+			sequence[pos-1] = 'A';
+			sequence[pos-3] = 'A';
+			
+			for (int i = 0; i < pos; ++i) {structure[i] = 'S';}
+		}
+		
+		//helix lengths (drop helices that do not fit)
+		ArrayList<Integer> 	helixLengths 	= new ArrayList<Integer>();
+		int 				helixResidues 	= 0;
+		
+		for (int i = 0; i < helices; ++i)
+		{
+			int helixLength = 18 + random.nextInt(8);
+			
+			if (helixResidues + helixLength + (i + 2) * MIN_LOOP_LENGTH > length - pos) {break;}
+			
+			helixLengths.add(helixLength);
+			
+			helixResidues += helixLength;
+		}
+		
+		//distribute the remaining residues randomly over the loops
+		int 		loops 		= helixLengths.size() + 1;
+		int 		free 		= length - pos - helixResidues - loops * MIN_LOOP_LENGTH;
+		double[] 	weights 	= new double[loops];
+		double 		sum 		= 0;
+		
+		for (int i = 0; i < loops; ++i)
+		{
+			weights[i] 	= -Math.log(1.0 - random.nextDouble());
+			sum 		+= weights[i];
+		}
+		
+		char 	topology 	= random.nextBoolean() ? '1' : '2';
+		int 	assigned 	= 0;
+		int 	runStart 	= -1;
+		int 	runLoop 	= 0;
+		
+		for (int i = 0; i < loops; ++i)
+		{
+			int loopLength = MIN_LOOP_LENGTH + (i == loops - 1 ? free - assigned : (int)(free * weights[i] / sum));
+			
+			assigned += loopLength - MIN_LOOP_LENGTH;
+			
+			if (runLength > 0 && loopLength > runLoop)
+			{
+				runLoop 	= loopLength;
+				runStart 	= pos;
+			}
+			
+			for (int j = 0; j < loopLength; ++j)
+			{
+				sequence[pos] 	= pick(background, random);
+				structure[pos] 	= topology;
+				
+				++pos;
+			}
+			
+			if (i < helixLengths.size())
+			{
+				for (int j = 0; j < helixLengths.get(i); ++j)
+				{
+					sequence[pos] 	= pick(helix, random);
+					structure[pos] 	= 'H';
+					
+					++pos;
+				}
+				
+				topology = topology == '1' ? '2' : '1';
+			}
+		}
+		
+		//long hydrophobic run within the longest loop
+		if (runStart >= 0)
+		{
+			int start 	= runStart + Math.max(0, (runLoop - runLength) / 2);
+			int end 	= Math.min(runStart + runLoop, start + runLength);
+			
+			for (int i = start; i < end; ++i) {sequence[i] = pick(hydrophobic, random);}
+		}
+		
+		sequence[0] = 'M';
+		
+		return Protein.newProtein(name, ">" + name + " synthetic length=" + length + " tmh=" + helixLengths.size(), new String(sequence), new String(structure));
+	}
+	
+	
+	/**
+	 * Writes the FASTA and PSSM file of a synthetic protein.
+	 * 
+	 * @param protein
+	 * @param fastaFolder
+	 * @param pssmFolder
+	 * @param annotated
+	 * @param random
+	 */
+	public static void writeProtein(Protein protein, String fastaFolder, String pssmFolder, boolean annotated, Random random)
+	{
+		StringBuilder output = new StringBuilder();
+		
+		output.append(protein.getHeader() + "\n");
+		output.append(Mappings.decodeResidues(protein.getSequence()) + "\n");
+		
+		if (annotated) {output.append(Mappings.decodeStates(protein.getStructure()) + "\n");}
+		
+		OutputWriter.writeFile(new File(fastaFolder, protein.getName() + ".fasta").getPath(), output.toString());
+		
+		writePssm(new File(pssmFolder, protein.getName() + ".pssm").getPath(), Mappings.decodeResidues(protein.getSequence()).toCharArray(), random);
+	}
+	
+	
+	/**
+	 * Writes a PSSM file in the PSI-BLAST ASCII format. Positions with a hydrophobic
+	 * residue get positive scores for hydrophobic amino acids, all others for polar ones.
+	 * 
+	 * @param pssmFile
+	 * @param sequence
+	 * @param random
+	 */
+	public static void writePssm(String pssmFile, char[] sequence, Random random)
+	{
+		StringBuilder output = new StringBuilder(180 * (sequence.length + 10));
+		
+		output.append("\nLast position-specific scoring matrix computed, weighted observed percentages rounded down, information per position, and relative weight of gapless real matches to pseudocounts\n");
+		output.append("          ");
+		
+		for (int i = 0; i < 2; ++i)
+		{
+			for (int j = 0; j < pssmColumns.length(); ++j) {output.append(i == 0 ? "  " : "   ").append(pssmColumns.charAt(j));}
+		}
+		
+		output.append("\n");
+		
+		for (int i = 0; i < sequence.length; ++i)
+		{
+			boolean isHydrophobic 	= Mappings.hydrophobicity(sequence[i]) > 1.5;
+			int 	conservation 	= 20 + random.nextInt(81);
+			
+			output.append(String.format("%5d %c  ", i+1, sequence[i]));
+			
+			for (int j = 0; j < pssmColumns.length(); ++j)
+			{
+				char 	aa 		= pssmColumns.charAt(j);
+				int 	score 	= random.nextInt(6) - 4;
+				
+				if (aa == sequence[i]) 										{score = 3 + random.nextInt(7);}
+				else if (isHydrophobic == (Mappings.hydrophobicity(aa) > 1.5)) 	{score += 2;}
+				
+				output.append(String.format("%3d", score));
+			}
+			
+			for (int j = 0; j < pssmColumns.length(); ++j)
+			{
+				output.append(String.format("%4d", pssmColumns.charAt(j) == sequence[i] ? conservation : 0));
+			}
+			
+			output.append(String.format("  %.2f %.2f\n", conservation / 50.0, random.nextDouble()));
+		}
+		
+		output.append("\n                      K         Lambda\n");
+		output.append("Standard Ungapped    0.1458     0.3308\n");
+		output.append("Standard Gapped      0.0410     0.2670\n");
+		output.append("PSI Ungapped         0.1404     0.3177\n");
+		output.append("PSI Gapped           0.0430     0.2670\n");
+		
+		OutputWriter.writeFile(pssmFile, output.toString());
+	}
+	
+	
+	/**
+	 * Trains stand-in models for the three predictors on a small annotated synthetic set
+	 * and saves them as hIndexer, hPredictor and tPredictor into the given folder.
+	 * The training set (annotated FASTA and PSSM files) is kept in a subfolder.
+	 * 
+	 * @param modelFolder
+	 * @param proteins
+	 * @param random
+	 */
+	public static void writeModels(String modelFolder, int proteins, Random random)
+	{
+		File fastaFolder 	= new File(modelFolder, "training/fasta");
+		File pssmFolder 	= new File(modelFolder, "training/pssm");
+		
+		fastaFolder.mkdirs();
+		pssmFolder.mkdirs();
+		
+		ArrayList<Protein> trainingSet = new ArrayList<Protein>();
+		
+		for (int i = 0; i < proteins; ++i)
+		{
+			String 	name 	= String.format("TRAIN%05d", i+1);
+			int 	length 	= 100 + random.nextInt(501);
+			Protein protein = newProtein(name, length, i % 3 == 0 ? 0 : 1 + random.nextInt(8), i % 5 == 0, 0, random);
+			
+			writeProtein(protein, fastaFolder.getPath(), pssmFolder.getPath(), true, random);
+			
+			Pssm pssm = Pssm.newPssm(new File(pssmFolder, name + ".pssm").getPath(), length);
+			
+			if (pssm == null) {continue;}
+			
+			protein.setPssm(pssm);
+			
+			trainingSet.add(protein);
+		}
+		
+		HelixIndexer 		helixIndexer 		= new HelixIndexer();
+		HelixPredictor 		helixPredictor 		= new HelixPredictor();
+		TopologyPredictor 	topologyPredictor 	= new TopologyPredictor();
+		
+		helixIndexer.initialize();
+		helixPredictor.initialize();
+		topologyPredictor.initialize();
+		
+		helixIndexer.input(trainingSet);
+		helixPredictor.input(trainingSet);
+		topologyPredictor.input(trainingSet);
+		
+		helixIndexer.dumpModelToFile(new File(modelFolder, "hIndexer").getPath());
+		helixPredictor.dumpModelToFile(new File(modelFolder, "hPredictor").getPath());
+		topologyPredictor.dumpModelToFile(new File(modelFolder, "tPredictor").getPath());
+	}
+	
+	
+	private static char pick(String alphabet, Random random)
+	{
+		return alphabet.charAt(random.nextInt(alphabet.length()));
+	}
+	
+	
+	/**
+	 * Draws a protein length from the configured distribution:
+	 * fixed:N, uniform:MIN:MAX or lognormal:MEDIAN:SIGMA.
+	 * 
+	 * @param random
+	 * @return
+	 */
+	private static int drawLength(Random random)
+	{
+		String[] 	spec 	= lengthSpec.split(":");
+		double 		length 	= 0;
+		
+		if (spec[0].equalsIgnoreCase("fixed"))
+		{
+			length = Double.parseDouble(spec[1]);
+		}
+		else if (spec[0].equalsIgnoreCase("uniform"))
+		{
+			int min = Integer.parseInt(spec[1]);
+			int max = Integer.parseInt(spec[2]);
+			
+			length = min + random.nextInt(max - min + 1);
+		}
+		else
+		{
+			length = Double.parseDouble(spec[1]) * Math.exp(Double.parseDouble(spec[2]) * random.nextGaussian());
+		}
+		
+		return (int)Math.max(MIN_LENGTH, Math.min(MAX_LENGTH, Math.round(length)));
+	}
+	
+	
+	private static boolean checkLengthSpec(String spec)
+	{
+		String[] content = spec.split(":");
+		
+		try
+		{
+			if (content[0].equalsIgnoreCase("fixed") && content.length == 2)
+			{
+				return Integer.parseInt(content[1]) > 0;
+			}
+			else if (content[0].equalsIgnoreCase("uniform") && content.length == 3)
+			{
+				return Integer.parseInt(content[1]) > 0 && Integer.parseInt(content[2]) >= Integer.parseInt(content[1]);
+			}
+			else if (content[0].equalsIgnoreCase("lognormal") && content.length == 3)
+			{
+				return Double.parseDouble(content[1]) > 0 && Double.parseDouble(content[2]) >= 0;
+			}
+		}
+		catch (NumberFormatException e)
+		{
+			//invalid numbers
+		}
+		
+		return false;
+	}
+	
+	
+	private static boolean parseParams(String[] args)
+	{
+		if (args == null || args.length < 1) {return false;}
+		
+		int maxIndex = args.length - 1;
+		
+		for (int i = 0; i <= maxIndex; ++i)
+		{
+			String param = args[i].trim();
+			String value = null;
+			
+			if (param.equalsIgnoreCase("-o"))
+			{
+				if (i == maxIndex) {break;}
+				
+				value = args[i+1].trim();
+				
+				if (value.startsWith("-")) {continue;}
+				
+				outPath = new File(value).getAbsolutePath();
+				
+				++i;
+			}
+			else if (param.equalsIgnoreCase("--annotated"))
+			{
+				doAnnotated = true;
+			}
+			else if (param.equalsIgnoreCase("--length"))
+			{
+				if (i == maxIndex) {break;}
+				
+				lengthSpec = args[i+1].trim();
+				
+				if (!checkLengthSpec(lengthSpec))
+				{
+					ErrorUtils.printError(Generator.class, "Invalid length distribution: " + lengthSpec, null);
+					
+					return false;
+				}
+				
+				++i;
+			}
+			else if (param.equalsIgnoreCase("--tmh"))
+			{
+				if (i == maxIndex) {break;}
+				
+				value = args[i+1].trim();
+				
+				try
+				{
+					String[] content = value.split(":");
+					
+					minTmh = Integer.parseInt(content[0]);
+					maxTmh = Integer.parseInt(content[content.length-1]);
+				}
+				catch (NumberFormatException e)
+				{
+					ErrorUtils.printError(Generator.class, "Invalid TMH range: " + value, null);
+					
+					return false;
+				}
+				
+				++i;
+			}
+			else if (param.equalsIgnoreCase("-n") || param.equalsIgnoreCase("--seed") || param.equalsIgnoreCase("--models"))
+			{
+				if (i == maxIndex) {break;}
+				
+				value = args[i+1].trim();
+				
+				try
+				{
+					if (param.equalsIgnoreCase("-n")) 			{count = Integer.parseInt(value);}
+					else if (param.equalsIgnoreCase("--seed")) 	{seed = Long.parseLong(value);}
+					else 										{modelProteins = Integer.parseInt(value);}
+				}
+				catch (NumberFormatException e)
+				{
+					ErrorUtils.printError(Generator.class, "Invalid value for " + param + ": " + value, null);
+					
+					return false;
+				}
+				
+				++i;
+			}
+			else if (param.equalsIgnoreCase("--tmp-fraction") || param.equalsIgnoreCase("--signal-fraction") || param.equalsIgnoreCase("--pathological"))
+			{
+				if (i == maxIndex) {break;}
+				
+				value = args[i+1].trim();
+				
+				try
+				{
+					if (param.equalsIgnoreCase("--tmp-fraction")) 			{tmpFraction = Double.parseDouble(value);}
+					else if (param.equalsIgnoreCase("--signal-fraction")) 	{signalFraction = Double.parseDouble(value);}
+					else 													{pathoFraction = Double.parseDouble(value);}
+				}
+				catch (NumberFormatException e)
+				{
+					ErrorUtils.printError(Generator.class, "Invalid fraction for " + param + ": " + value, null);
+					
+					return false;
+				}
+				
+				++i;
+			}
+			else
+			{
+				ErrorUtils.printError(Generator.class, "Unknown parameter: " + param, null);
+				
+				return false;
+			}
+		}
+		
+		return checkParams();
+	}
+	
+	
+	private static boolean checkParams()
+	{
+		boolean passed = true;
+		
+		if (outPath == null)
+		{
+			ErrorUtils.printError(Generator.class, "Missing output folder", null);
+			
+			passed = false;
+		}
+		else if (new File(outPath).isFile())
+		{
+			ErrorUtils.printError(Generator.class, "Output path is not a folder", null);
+			
+			passed = false;
+		}
+		
+		if (count < 0 || modelProteins < 0)
+		{
+			ErrorUtils.printError(Generator.class, "Number of proteins must not be negative", null);
+			
+			passed = false;
+		}
+		
+		if (minTmh < 1 || maxTmh < minTmh)
+		{
+			ErrorUtils.printError(Generator.class, "Invalid TMH range: " + minTmh + ":" + maxTmh, null);
+			
+			passed = false;
+		}
+		
+		if (tmpFraction < 0 || tmpFraction > 1 || signalFraction < 0 || signalFraction > 1 || pathoFraction < 0 || pathoFraction > 1)
+		{
+			ErrorUtils.printError(Generator.class, "Fractions must be within [0, 1]", null);
+			
+			passed = false;
+		}
+		
+		return passed;
+	}
+	
+	
+	private static void printHelp()
+	{
+		System.out.println(	"TMSEG generate help. Please use the following parameters:\n" +
+							"-o <path>                  Output folder (FASTA files in fasta/, PSSM files in pssm/)\n" +
+							"-n <value>                 Number of proteins (default 1000)\n" +
+							"--seed <value>             Random seed (default 1)\n" +
+							"--length <spec>            Length distribution: fixed:N, uniform:MIN:MAX or lognormal:MEDIAN:SIGMA (default lognormal:350:0.6)\n" +
+							"--tmh <min>:<max>          Number of TMHs per TMP (default 1:14)\n" +
+							"--tmp-fraction <value>     Fraction of TMPs (default 0.25)\n" +
+							"--signal-fraction <value>  Fraction of proteins with a signal peptide (default 0.1)\n" +
+							"--pathological <value>     Fraction of proteins with 30000+ residues or a long hydrophobic run (default 0)\n" +
+							"--annotated FLAG           if set, FASTA files contain the annotated structure (input format of -x)\n" +
+							"--models <value>           train stand-in models on this many synthetic proteins into models/ (use with --models of tmseg)");
+	}
+
+}
@@ -0,0 +1,189 @@
+//    <TMSEG: Prediction of Transmembrane Helices in Proteins.>
+//    Copyright (C) 2014  Michael Bernhofer
+//
+//    This program is free software: you can redistribute it and/or modify
+//    it under the terms of the GNU General Public License as published by
+//    the Free Software Foundation, either version 3 of the License, or
+//    (at your option) any later version.
+//
+//    This program is distributed in the hope that it will be useful,
+//    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//    GNU General Public License for more details.
+//
+//    You should have received a copy of the GNU General Public License
+//    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package main;
+
+import io.OutputBuffer;
+import io.OutputWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import util.ErrorUtils;
+import util.Globals;
+import data.RawFormat;
+import data.RawReader;
+
+
+/**
+ * Converts binary raw output files (see RawFormat) into the text format of the
+ * raw output. Called via "tmseg raw [options]".
+ */
+public class RawConverter {
+	
+	
+	private static String inPath 	= null;
+	private static String outPath 	= null;
+	
+	
+	public static void main(String[] args)
+	{
+		if (!parseParams(args))
+		{
+			printHelp();
+			
+			return;
+		}
+		
+		List<File> 	inFiles 	= new ArrayList<File>();
+		List<File> 	outFiles 	= new ArrayList<File>();
+		File 		input 		= new File(inPath);
+		
+		if (input.isDirectory())
+		{
+			File[] files = input.listFiles();
+			
+			if (files != null)
+			{
+				for (File file : files)
+				{
+					String name = file.getName();
+					
+					if (!file.isFile() || !name.endsWith(RawFormat.EXTENSION)) {continue;}
+					
+					inFiles.add(file);
+					outFiles.add(new File(outPath, name.substring(0, name.length() - RawFormat.EXTENSION.length()) + ".tmseg-raw"));
+				}
+			}
+		}
+		else
+		{
+			inFiles.add(input);
+			outFiles.add(new File(outPath));
+		}
+		
+		OutputBuffer 	output 		= new OutputBuffer(Globals.OUTPUT_BUFFER_SIZE);
+		int 			proteins 	= 0;
+		
+		for (int i = 0; i < inFiles.size(); ++i)
+		{
+			RawReader reader = null;
+			
+			output.clear();
+			
+			try
+			{
+				reader = new RawReader(inFiles.get(i).getPath());
+				
+				while (reader.hasNext())
+				{
+					TMSEG.formatRawPrediction(reader.next(), output);
+					
+					++proteins;
+				}
+			}
+			catch (IOException e)
+			{
+				ErrorUtils.printError(RawConverter.class, "Failed to read " + inFiles.get(i).getPath(), e);
+				
+				continue;
+			}
+			finally
+			{
+				ErrorUtils.closeQuietly(reader);
+			}
+			
+			OutputWriter.writeFile(outFiles.get(i).getPath(), output.toByteArray());
+		}
+		
+		System.out.println("Converted " + proteins + " proteins in " + inFiles.size() + " files");
+	}
+	
+	
+	private static boolean parseParams(String[] args)
+	{
+		if (args == null || args.length < 1) {return false;}
+		
+		int maxIndex = args.length - 1;
+		
+		for (int i = 0; i <= maxIndex; ++i)
+		{
+			String param = args[i].trim();
+			String value = null;
+			
+			if (param.equalsIgnoreCase("-i") || param.equalsIgnoreCase("-o"))
+			{
+				if (i == maxIndex) {break;}
+				
+				value = args[i+1].trim();
+				
+				if (value.startsWith("-")) {continue;}
+				
+				if (param.equalsIgnoreCase("-i")) 	{inPath = new File(value).getAbsolutePath();}
+				else 								{outPath = new File(value).getAbsolutePath();}
+				
+				++i;
+			}
+			else
+			{
+				ErrorUtils.printError(RawConverter.class, "Unknown parameter: " + param, null);
+				
+				return false;
+			}
+		}
+		
+		return checkParams();
+	}
+	
+	
+	private static boolean checkParams()
+	{
+		boolean passed = true;
+		
+		if (inPath == null || !new File(inPath).exists())
+		{
+			ErrorUtils.printError(RawConverter.class, "Missing input file/folder", null);
+			
+			passed = false;
+		}
+		
+		if (outPath == null)
+		{
+			ErrorUtils.printError(RawConverter.class, "Missing output file/folder", null);
+			
+			passed = false;
+		}
+		else if (inPath != null && new File(inPath).isDirectory() != new File(outPath).isDirectory() && new File(outPath).exists())
+		{
+			ErrorUtils.printError(RawConverter.class, "Input and output must both be files or both be folders", null);
+			
+			passed = false;
+		}
+		
+		return passed;
+	}
+	
+	
+	private static void printHelp()
+	{
+		System.out.println(	"TMSEG raw help. Please use the following parameters:\n" +
+							"-i <path>            Binary raw output file, or folder with " + RawFormat.EXTENSION + " files\n" +
+							"-o <path>            Text raw output file, or folder for the .tmseg-raw files");
+	}
+
+}
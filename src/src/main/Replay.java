@@ -0,0 +1,459 @@
+//    <TMSEG: Prediction of Transmembrane Helices in Proteins.>
+//    Copyright (C) 2014  Michael Bernhofer
+//
+//    This program is free software: you can redistribute it and/or modify
+//    it under the terms of the GNU General Public License as published by
+//    the Free Software Foundation, either version 3 of the License, or
+//    (at your option) any later version.
+//
+//    This program is distributed in the hope that it will be useful,
+//    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//    GNU General Public License for more details.
+//
+//    You should have received a copy of the GNU General Public License
+//    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package main;
+
+import io.CaptureLog;
+import io.FReader;
+import io.OutputWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import util.ErrorUtils;
+
+
+/**
+ * Re-drives a workload recorded with --capture against the current build at the
+ * original speed, N times faster or flat out, reports throughput and latencies
+ * next to the recorded baseline and compares the outputs with the recorded ones.
+ * Called via "tmseg replay [options]".
+ */
+public class Replay {
+	
+	
+	private static final int 	MAX_EXAMPLES 	= 10;
+	
+	private static String 		capturePath 	= null;
+	private static String 		outPath 		= null;
+	private static String 		reportPath 		= null;
+	private static double 		speed 			= 1.0;
+	private static int 			threads 		= 1;
+	
+	
+	/**
+	 * A recorded protein: input files, arrival offset and latency (ms) and the recorded output.
+	 */
+	private static class Job
+	{
+		int 	index;
+		String 	name;
+		String 	fastaFile;
+		String 	pssmFile;
+		double 	offset;
+		double 	latency;
+		String 	output;
+		
+		long 	replayLatency 	= -1;
+	}
+	
+	
+	public static void main(String[] args)
+	{
+		if (!parseParams(args))
+		{
+			printHelp();
+			
+			return;
+		}
+		
+		if (!TMSEG.initRootDir(main.TMSEG.class))
+		{
+			ErrorUtils.printError(Replay.class, "Failed to initialize root directory", null);
+			
+			return;
+		}
+		
+		if (TMSEG.modelPath == null) {TMSEG.modelPath = TMSEG.rootDir + "/models";}
+		
+		if (!TMSEG.checkModels()) {return;}
+		
+		List<Job> jobs = readManifest(new File(capturePath, CaptureLog.MANIFEST).getPath());
+		
+		if (jobs.isEmpty())
+		{
+			ErrorUtils.printError(Replay.class, "No proteins found in capture " + capturePath, null);
+			
+			return;
+		}
+		
+		File outFolder = null;
+		
+		try
+		{
+			outFolder = outPath != null ? new File(outPath) : Files.createTempDirectory("tmseg-replay").toFile();
+			
+			outFolder.mkdirs();
+		}
+		catch (IOException e)
+		{
+			ErrorUtils.printError(Replay.class, "Failed to create output folder", e);
+			
+			return;
+		}
+		
+		TMSEG.loadPredictors();
+		
+		double seconds = run(jobs, outFolder.getPath());
+		
+		String report = report(jobs, seconds, outFolder.getPath());
+		
+		if (outPath == null) {Bench.delete(outFolder);}
+		
+		if (reportPath != null)
+		{
+			OutputWriter.writeFile(reportPath, report);
+		}
+		else
+		{
+			System.out.print(report);
+		}
+	}
+	
+	
+	/**
+	 * Submits the jobs in their recorded order at their recorded offsets (scaled by the speed)
+	 * and returns the wall-clock time until the last prediction finished.
+	 * 
+	 * @param jobs
+	 * @param outFolder
+	 * @return
+	 */
+	private static double run(List<Job> jobs, final String outFolder)
+	{
+		ExecutorService pool 	= Executors.newFixedThreadPool(threads);
+		long 			start 	= System.nanoTime();
+		double 			first 	= jobs.get(0).offset;
+		
+		TMSEG.openOutput();
+		
+		for (final Job job : jobs)
+		{
+			if (speed > 0)
+			{
+				long delay = start + (long)((job.offset - first) / speed * 1e6) - System.nanoTime();
+				
+				if (delay > 0)
+				{
+					try
+					{
+						TimeUnit.NANOSECONDS.sleep(delay);
+					}
+					catch (InterruptedException e)
+					{
+						Thread.currentThread().interrupt();
+						
+						break;
+					}
+				}
+			}
+			
+			pool.execute(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					TMSEG.initWorker();
+					
+					long 	time 	= System.nanoTime();
+					String 	outFile = new File(outFolder, job.index + "_" + job.name + ".tmseg").getPath();
+					
+					TMSEG.doPrediction(job.fastaFile, job.pssmFile, outFile, null);
+					
+					job.replayLatency = System.nanoTime() - time;
+				}
+			});
+		}
+		
+		pool.shutdown();
+		
+		try
+		{
+			pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		
+		//the outputs are compared with the captured ones afterwards
+		TMSEG.closeOutput();
+		
+		return (System.nanoTime() - start) / 1e9;
+	}
+	
+	
+	/**
+	 * Compares throughput, latencies and outputs of the replay with the recorded baseline.
+	 * 
+	 * @param jobs
+	 * @param seconds
+	 * @param outFolder
+	 * @return
+	 */
+	private static String report(List<Job> jobs, double seconds, String outFolder)
+	{
+		long[] 			baseline 	= new long[jobs.size()];
+		long[] 			replay 		= new long[jobs.size()];
+		double 			first 		= Double.MAX_VALUE;
+		double 			last 		= 0;
+		int 			identical 	= 0;
+		int 			differing 	= 0;
+		int 			missing 	= 0;
+		StringBuilder 	examples 	= new StringBuilder();
+		
+		for (int i = 0; i < jobs.size(); ++i)
+		{
+			Job job = jobs.get(i);
+			
+			baseline[i] = (long)(job.latency * 1e6);
+			replay[i] 	= job.replayLatency;
+			first 		= Math.min(first, job.offset);
+			last 		= Math.max(last, job.offset + job.latency);
+			
+			if (job.output.equals("-")) {continue;}
+			
+			File 	recorded 	= new File(new File(capturePath, CaptureLog.OUTPUTS), job.output);
+			File 	current 	= new File(outFolder, job.index + "_" + job.name + ".tmseg");
+			String 	difference 	= compare(recorded, current);
+			
+			if (difference == null)
+			{
+				++identical;
+			}
+			else if (!current.exists())
+			{
+				++missing;
+			}
+			else
+			{
+				++differing;
+				
+				if (differing <= MAX_EXAMPLES) {examples.append(job.name + ": " + difference + "\n");}
+			}
+		}
+		
+		double 			baseSeconds = (last - first) / 1000.0;
+		StringBuilder 	output 		= new StringBuilder();
+		
+		output.append("metric\tbaseline\treplay\n");
+		output.append("proteins\t" + jobs.size() + "\t" + jobs.size() + "\n");
+		output.append("seconds\t" + Bench.format(baseSeconds) + "\t" + Bench.format(seconds) + "\n");
+		output.append("proteins_per_s\t" + Bench.format(jobs.size() / baseSeconds) + "\t" + Bench.format(jobs.size() / seconds) + "\n");
+		
+		for (double fraction : new double[] {0.50, 0.90, 0.99, 1.0})
+		{
+			String label = fraction < 1.0 ? "p" + Math.round(fraction * 100) + "_ms" : "max_ms";
+			
+			output.append(label + "\t" + Bench.format(Bench.percentile(baseline, fraction) / 1e6) + "\t" + Bench.format(Bench.percentile(replay, fraction) / 1e6) + "\n");
+		}
+		
+		output.append("\n");
+		output.append("Outputs identical:    " + identical + "\n");
+		output.append("Outputs differing:    " + differing + "\n");
+		output.append("Outputs missing:      " + missing + "\n");
+		output.append(examples.toString());
+		
+		return output.toString();
+	}
+	
+	
+	/**
+	 * Returns null if both files have the same lines, otherwise the first difference.
+	 * 
+	 * @param recorded
+	 * @param current
+	 * @return
+	 */
+	private static String compare(File recorded, File current)
+	{
+		if (!current.exists()) {return "missing output";}
+		
+		List<String> 	expected 	= readLines(recorded.getPath());
+		List<String> 	actual 		= readLines(current.getPath());
+		int 			lines 		= Math.max(expected.size(), actual.size());
+		
+		for (int i = 0; i < lines; ++i)
+		{
+			String a = i < expected.size() ? expected.get(i) : "<end of file>";
+			String b = i < actual.size() ? actual.get(i) : "<end of file>";
+			
+			if (!a.equals(b)) {return "line " + (i+1) + ": expected '" + a + "', got '" + b + "'";}
+		}
+		
+		return null;
+	}
+	
+	
+	private static List<String> readLines(String filename)
+	{
+		List<String> 	lines 	= new ArrayList<String>();
+		String 			line 	= null;
+		
+		FReader.openFile(filename);
+		
+		while ((line = FReader.readLine()) != null) {lines.add(line);}
+		
+		FReader.closeFile();
+		
+		return lines;
+	}
+	
+	
+	private static List<Job> readManifest(String filename)
+	{
+		List<Job> 	jobs 	= new ArrayList<Job>();
+		String 		line 	= null;
+		
+		FReader.openFile(filename);
+		
+		while ((line = FReader.readLine()) != null)
+		{
+			if (line.startsWith("#") || line.startsWith("index\t") || line.trim().isEmpty()) {continue;}
+			
+			String[] fields = line.split("\t");
+			
+			try
+			{
+				Job job = new Job();
+				
+				job.index 		= Integer.parseInt(fields[0]);
+				job.name 		= fields[1];
+				job.fastaFile 	= fields[2];
+				job.pssmFile 	= fields[3];
+				job.offset 		= Double.parseDouble(fields[4]);
+				job.latency 	= Double.parseDouble(fields[5]);
+				job.output 		= fields[6];
+				
+				jobs.add(job);
+			}
+			catch (RuntimeException e)
+			{
+				ErrorUtils.printWarning(Replay.class, "Skipping invalid manifest line: " + line, null);
+			}
+		}
+		
+		FReader.closeFile();
+		
+		return jobs;
+	}
+	
+	
+	private static boolean parseParams(String[] args)
+	{
+		if (args == null || args.length < 1) {return false;}
+		
+		int maxIndex = args.length - 1;
+		
+		for (int i = 0; i <= maxIndex; ++i)
+		{
+			String param = args[i].trim();
+			String value = null;
+			
+			if (param.equalsIgnoreCase("-c") || param.equalsIgnoreCase("-o") || param.equalsIgnoreCase("--report") || param.equalsIgnoreCase("--models"))
+			{
+				if (i == maxIndex) {break;}
+				
+				value = args[i+1].trim();
+				
+				if (value.startsWith("-")) {continue;}
+				
+				if (param.equalsIgnoreCase("-c")) 			{capturePath = new File(value).getAbsolutePath();}
+				else if (param.equalsIgnoreCase("-o")) 		{outPath = new File(value).getAbsolutePath();}
+				else if (param.equalsIgnoreCase("--report")) {reportPath = new File(value).getAbsolutePath();}
+				else 										{TMSEG.modelPath = new File(value).getAbsolutePath();}
+				
+				++i;
+			}
+			else if (param.equalsIgnoreCase("--speed") || param.equalsIgnoreCase("--threads"))
+			{
+				if (i == maxIndex) {break;}
+				
+				value = args[i+1].trim();
+				
+				try
+				{
+					if (param.equalsIgnoreCase("--threads")) 	{threads = Integer.parseInt(value);}
+					else if (value.equalsIgnoreCase("max")) 	{speed = 0.0;}
+					else 										{speed = Double.parseDouble(value);}
+				}
+				catch (NumberFormatException e)
+				{
+					ErrorUtils.printError(Replay.class, "Invalid value for " + param + ": " + value, null);
+					
+					return false;
+				}
+				
+				++i;
+			}
+			else
+			{
+				ErrorUtils.printError(Replay.class, "Unknown parameter: " + param, null);
+				
+				return false;
+			}
+		}
+		
+		return checkParams();
+	}
+	
+	
+	private static boolean checkParams()
+	{
+		boolean passed = true;
+		
+		if (capturePath == null)
+		{
+			ErrorUtils.printError(Replay.class, "Missing capture folder", null);
+			
+			passed = false;
+		}
+		else if (!new File(capturePath, CaptureLog.MANIFEST).isFile())
+		{
+			ErrorUtils.printError(Replay.class, "Could not find " + CaptureLog.MANIFEST + " in " + capturePath, null);
+			
+			passed = false;
+		}
+		
+		if (threads < 1 || speed < 0)
+		{
+			ErrorUtils.printError(Replay.class, "Threads must be positive, speed must not be negative", null);
+			
+			passed = false;
+		}
+		
+		return passed;
+	}
+	
+	
+	private static void printHelp()
+	{
+		System.out.println(	"TMSEG replay help. Please use the following parameters:\n" +
+							"-c <path>            Capture folder (written with --capture)\n" +
+							"-o <path>            Output folder for the replayed predictions (default: temporary, deleted)\n" +
+							"--speed <value>      Speed factor relative to the recorded arrivals, or max for flat out (default 1)\n" +
+							"--threads <value>    Number of threads (default 1)\n" +
+							"--report <path>      Report file (default: standard output)\n" +
+							"--models <path>      Folder with the model files (default: models/ next to tmseg.jar)");
+	}
+
+}
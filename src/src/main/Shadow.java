@@ -0,0 +1,373 @@
+//    <TMSEG: Prediction of Transmembrane Helices in Proteins.>
+//    Copyright (C) 2014  Michael Bernhofer
+//
+//    This program is free software: you can redistribute it and/or modify
+//    it under the terms of the GNU General Public License as published by
+//    the Free Software Foundation, either version 3 of the License, or
+//    (at your option) any later version.
+//
+//    This program is distributed in the hope that it will be useful,
+//    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//    GNU General Public License for more details.
+//
+//    You should have received a copy of the GNU General Public License
+//    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package main;
+
+import io.OutputWriter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import predictors.HelixIndexer;
+import predictors.HelixPredictor;
+import predictors.TopologyPredictor;
+import processing.Processing;
+import util.ErrorUtils;
+import util.Globals;
+import util.Mappings;
+import util.Metrics;
+import data.Prediction;
+import data.Protein;
+import data.Pssm;
+
+
+/**
+ * Shadow mode: re-runs a sample of the predicted proteins through the reference
+ * path (dense indexing, full refinement, no prefilter) on a background thread
+ * and compares the per-residue raw scores and the final predictions with the
+ * primary results. Checks are dropped rather than delaying the primary path
+ * if the background thread falls behind.
+ */
+public class Shadow {
+	
+	
+	private static final int 			QUEUE_SIZE 		= 64;
+	private static final int 			MAX_EXAMPLES 	= 20;
+	private static final int 			CONTEXT 		= 20;
+	
+	private ThreadPoolExecutor 			executor 		= null;
+	private HelixIndexer 				helixIndexer 	= null;
+	private HelixPredictor 				helixPredictor 	= null;
+	private TopologyPredictor 			topology 		= null;
+	private double 						fraction 		= 0.0;
+	
+	//counters (sampled and dropped are updated by all prediction threads, all others by the shadow thread)
+	private AtomicLong 					sampled 		= new AtomicLong();
+	private AtomicLong 					dropped 		= new AtomicLong();
+	private long 						compared 		= 0;
+	private long 						failed 			= 0;
+	private long 						diffTmp 		= 0;
+	private long 						diffPrediction 	= 0;
+	private long 						diffResidues 	= 0;
+	private long 						diffRaw 		= 0;
+	private long 						maxRawDiff 		= 0;
+	private List<String> 				examples 		= new ArrayList<String>();
+	
+	
+	/**
+	 * Creates the shadow checker with its own copies of the predictors.
+	 * 
+	 * @param helixIndexer
+	 * @param helixPredictor
+	 * @param topology
+	 * @param fraction
+	 */
+	public Shadow(HelixIndexer helixIndexer, HelixPredictor helixPredictor, TopologyPredictor topology, double fraction)
+	{
+		this.helixIndexer 	= helixIndexer.copy();
+		this.helixPredictor = helixPredictor.copy();
+		this.topology 		= topology.copy();
+		this.fraction 		= fraction;
+		
+		this.helixIndexer.setReference(true);
+		this.helixPredictor.setReference(true);
+		
+		this.executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(QUEUE_SIZE), new ThreadFactory()
+		{
+			@Override
+			public Thread newThread(Runnable runnable)
+			{
+				Thread thread = new Thread(runnable, "tmseg-shadow");
+				
+				thread.setDaemon(true);
+				thread.setPriority(Thread.MIN_PRIORITY);
+				
+				return thread;
+			}
+		});
+	}
+	
+	
+	/**
+	 * Queues a predicted protein for the comparison with the reference path if it is
+	 * in the sample. The result must keep the raw scores, the PSSM is passed separately
+	 * since the protein released it.
+	 * 
+	 * @param result
+	 * @param pssm
+	 */
+	public void submit(Prediction result, Pssm pssm)
+	{
+		if (!isSampled(result.getName(), this.fraction)) {return;}
+		
+		final Prediction 	primary = result;
+		final Pssm 			profile = pssm;
+		
+		this.sampled.incrementAndGet();
+		
+		try
+		{
+			this.executor.execute(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					compare(primary, profile);
+				}
+			});
+		}
+		catch (RejectedExecutionException e)
+		{
+			this.dropped.incrementAndGet();
+		}
+	}
+	
+	
+	/**
+	 * Waits for all queued comparisons.
+	 */
+	public void close()
+	{
+		this.executor.shutdown();
+		
+		try
+		{
+			this.executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	
+	public void printStatistics()
+	{
+		System.out.println("Shadow compared:      " + this.compared + " of " + this.sampled.get() + " sampled (" + this.dropped.get() + " dropped, " + this.failed + " failed)");
+		System.out.println("Shadow differing:     " + this.diffPrediction + " predictions (" + this.diffResidues + " residues, " + this.diffTmp + " TMP class), " + this.diffRaw + " raw scores (max " + this.maxRawDiff + ")");
+	}
+	
+	
+	/**
+	 * Adds the divergence counters to the metrics.
+	 * 
+	 * @param metrics
+	 */
+	public void exportMetrics(Metrics metrics)
+	{
+		metrics.setShadow("sampled", this.sampled.get());
+		metrics.setShadow("dropped", this.dropped.get());
+		metrics.setShadow("compared", this.compared);
+		metrics.setShadow("failed", this.failed);
+		metrics.setShadow("differing_tmp", this.diffTmp);
+		metrics.setShadow("differing_predictions", this.diffPrediction);
+		metrics.setShadow("differing_residues", this.diffResidues);
+		metrics.setShadow("differing_raw", this.diffRaw);
+		metrics.setShadow("max_raw_difference", this.maxRawDiff);
+	}
+	
+	
+	/**
+	 * Writes the counters and up to MAX_EXAMPLES example differences.
+	 * 
+	 * @param filename
+	 */
+	public void writeReport(String filename)
+	{
+		StringBuilder output = new StringBuilder();
+		
+		output.append("sampled\t" + this.sampled.get() + "\n");
+		output.append("dropped\t" + this.dropped.get() + "\n");
+		output.append("compared\t" + this.compared + "\n");
+		output.append("failed\t" + this.failed + "\n");
+		output.append("differing_tmp\t" + this.diffTmp + "\n");
+		output.append("differing_predictions\t" + this.diffPrediction + "\n");
+		output.append("differing_residues\t" + this.diffResidues + "\n");
+		output.append("differing_raw\t" + this.diffRaw + "\n");
+		output.append("max_raw_difference\t" + this.maxRawDiff + "\n");
+		output.append("\n");
+		
+		for (String example : this.examples) {output.append(example + "\n");}
+		
+		OutputWriter.writeFile(filename, output.toString());
+	}
+	
+	
+	/**
+	 * Selects a fraction of the proteins by their names, so that repeated
+	 * runs check the same proteins.
+	 * 
+	 * @param name
+	 * @param fraction
+	 * @return
+	 */
+	static boolean isSampled(String name, double fraction)
+	{
+		if (fraction >= 1.0) {return true;}
+		
+		//mix the bits, similar names differ in the low bits of their hash code only
+		int hash = name.hashCode();
+		
+		hash ^= hash >>> 16;
+		hash *= 0x85ebca6b;
+		hash ^= hash >>> 13;
+		hash *= 0xc2b2ae35;
+		hash ^= hash >>> 16;
+		
+		return (hash & 0x7fffffff) < fraction * Integer.MAX_VALUE;
+	}
+	
+	
+	/**
+	 * Predicts the protein with the reference path and compares the results (shadow thread).
+	 * 
+	 * @param primary
+	 * @param pssm
+	 */
+	private void compare(Prediction primary, Pssm pssm)
+	{
+		Protein reference = Protein.newProtein(primary.getName(), primary.getHeader(), Mappings.decodeResidues(primary.getSequence()), null);
+		
+		try
+		{
+			reference.setPssm(pssm);
+			
+			this.helixIndexer.predict(reference);
+			
+			Processing.process(reference, false, 7, Globals.PROCESSING_WEIGHT_SOL, Globals.PROCESSING_WEIGHT_TMH, Globals.PROCESSING_WEIGHT_SIG);
+			
+			this.helixPredictor.predict(reference, 0.0);
+			
+			Processing.tmpCheck(reference);
+			
+			this.topology.predict(reference, 0.45);
+			
+			Processing.assignConfidence(reference);
+		}
+		catch (Exception e)
+		{
+			ErrorUtils.printError(Shadow.class, "Reference prediction failed for " + primary.getName(), e);
+			
+			++this.failed;
+			
+			return;
+		}
+		
+		String 		name 			= primary.getName();
+		String[] 	fields 			= {"sol_raw", "tmh_raw", "sig_raw", "segment_raw"};
+		byte[] 		prediction 		= primary.getStates();
+		short[][] 	raw 			= {primary.getSolRaw(), primary.getTmhRaw(), primary.getSigRaw(), primary.getSegmentRaw()};
+		int[][] 	referenceRaw 	= {reference.getSolRaw(), reference.getTmhRaw(), reference.getSigRaw(), reference.getSegmentRaw()};
+		int 		topologyRaw 	= primary.getTopologyRaw();
+		boolean 	rawDiffers 		= topologyRaw != reference.getTopologyRaw();
+		String 		missing 		= "";
+		int 		residues 		= 0;
+		int 		first 			= -1;
+		
+		++this.compared;
+		
+		for (int i = 0; i < prediction.length; ++i)
+		{
+			if (prediction[i] != reference.getPrediction()[i])
+			{
+				if (first < 0) {first = i;}
+				
+				++residues;
+			}
+		}
+		
+		if (primary.isPredTmp() != reference.isPredTmp()) {++this.diffTmp;}
+		
+		if (residues > 0)
+		{
+			int start 	= Math.max(0, first - CONTEXT);
+			int end 	= Math.min(prediction.length, first + CONTEXT);
+			
+			++this.diffPrediction;
+			
+			this.diffResidues += residues;
+			
+			this.addExample(name + "\tprediction\t" + residues + " residues, from " + (start+1) + ": " + Mappings.decodeStates(prediction, start, end) + " (primary) " + Mappings.decodeStates(reference.getPrediction(), start, end) + " (reference)");
+		}
+		
+		if (rawDiffers)
+		{
+			this.addExample(name + "\ttopology_raw\t" + topologyRaw + " (primary) " + reference.getTopologyRaw() + " (reference)");
+		}
+		
+		for (int i = 0; i < fields.length; ++i)
+		{
+			short[] a 		= raw[i];
+			int[] 	b 		= referenceRaw[i];
+			int 	count 	= 0;
+			int 	max 	= 0;
+			
+			first = -1;
+			
+			if (a == null || b == null)
+			{
+				if ((a == null) != (b == null))
+				{
+					rawDiffers 	= true;
+					missing 	+= " " + fields[i] + (a == null ? " (primary)" : " (reference)");
+				}
+				
+				continue;
+			}
+			
+			for (int j = 0; j < a.length; ++j)
+			{
+				int difference = Math.abs(a[j] - b[j]);
+				
+				if (difference > 0)
+				{
+					if (first < 0) {first = j;}
+					
+					max = Math.max(max, difference);
+					
+					++count;
+				}
+			}
+			
+			if (count > 0)
+			{
+				rawDiffers = true;
+				
+				this.maxRawDiff = Math.max(this.maxRawDiff, max);
+				
+				this.addExample(name + "\t" + fields[i] + "\t" + count + " residues, max " + max + ", first at " + (first+1) + ": " + a[first] + " (primary) " + b[first] + " (reference)");
+			}
+		}
+		
+		//e.g. proteins skipped by the prefilter have no indexer scores
+		if (!missing.isEmpty()) {this.addExample(name + "\tmissing\t" + missing.trim());}
+		
+		if (rawDiffers) {++this.diffRaw;}
+	}
+	
+	
+	private void addExample(String example)
+	{
+		if (this.examples.size() < MAX_EXAMPLES) {this.examples.add(example);}
+	}
+
+}
@@ -16,46 +16,160 @@
 
 package main;
 
-import io.FWriter;
+import io.ArchiveReader;
+import io.CaptureLog;
+import io.Journal;
+import io.ManifestReader;
+import io.OutputBuffer;
+import io.OutputWriter;
+import io.ProfileLog;
+import io.QuarantineLog;
+import io.RecordStream;
+import io.StreamSink;
+import io.TarArchive;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.MalformedURLException;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import predictors.HelixIndexer;
 import predictors.HelixPredictor;
+import predictors.HydrophobicityFilter;
 import predictors.TopologyPredictor;
 import processing.Processing;
 import util.ErrorUtils;
+import util.Events;
 import util.Globals;
 import util.Mappings;
+import util.Metrics;
+import util.Profile;
 import data.FastaReader;
+import data.Prediction;
 import data.Protein;
 import data.Pssm;
+import data.RawFormat;
 
 public class TMSEG {
 	
 	
-	private static HelixIndexer 		helixIndexer 		= null;
-	private static HelixPredictor 		helixPredictor 		= null;
-	private static TopologyPredictor 	topologyPredictor 	= null;
+	private static Predictors 			originals 			= null;
+	private static HydrophobicityFilter prefilter 			= null;
+	static Metrics 						metrics 			= null;
+	
+	//copies of the predictors for additional worker threads, all copies are kept for the statistics
+	private static final ThreadLocal<Predictors> 	localPredictors = new ThreadLocal<Predictors>();
+	private static final List<Predictors> 			workers 		= Collections.synchronizedList(new ArrayList<Predictors>());
 	
 	private static boolean 	doMultiJob 	= false;
 	private static boolean 	doAdjust 	= false;
 	private static boolean 	doTopology 	= false;
+	private static boolean 	doAudit 	= false;
+	private static boolean 	doGate 		= false;
+	private static boolean 	doGateCheck = false;
+	private static boolean 	doRawBinary = false;
+	
+	private static double 	prefilterThreshold 	= Double.NaN;
+	private static double 	calibrationRecall 	= Double.NaN;
+	private static int 		samplingStep 		= 1;
+	private static int 		samplingMargin 		= Globals.INDEXER_SAMPLING_MARGIN;
+	private static double 	verifyFraction 		= 0.0;
+	private static AtomicInteger verifiedProteins 	= new AtomicInteger(0);
+	private static AtomicInteger differingProteins 	= new AtomicInteger(0);
+	private static AtomicInteger checkedProteins 	= new AtomicInteger(0);
+	private static AtomicInteger changedProteins 	= new AtomicInteger(0);
 	
 	private static String 	fastaPath 	= null;
 	private static String 	pssmPath 	= null;
 	private static String 	outPath 	= null;
 	private static String 	outPathRaw 	= null;
-	private static String 	rootDir 	= null;
+	private static String 	metricsPath = null;
+	static String 			rootDir 	= null;
+	static String 			modelPath 	= null;
+	
+	private static String 		profilePath 	= null;
+	private static String 		slowLogPath 	= null;
+	private static double 		slowMillis 		= 1000.0;
+	private static ProfileLog 	profileLog 		= null;
+	private static String 		capturePath 	= null;
+	private static CaptureLog 	captureLog 		= null;
+	private static double 		shadowFraction 	= 0.0;
+	private static String 		shadowPath 		= null;
+	private static Shadow 		shadow 			= null;
+	private static OutputWriter output 			= null;
+	private static String 		streamPath 		= null;
+	private static boolean 		doStreamRaw 	= false;
+	private static boolean 		doStreamTmp 	= false;
+	private static int 			streamRotate 	= 0;
+	private static StreamSink 	stream 			= null;
+	private static String 		manifestPath 	= null;
+	private static String 		archivePath 	= null;
+	private static String 		watchPath 		= null;
+	private static String 		watchDonePath 	= null;
+	private static int 			watchThreads 	= 1;
+	private static String 		journalPath 	= null;
+	private static boolean 		doResume 		= false;
+	private static Journal 		journal 		= null;
+	private static String 		quarantinePath 	= null;
+	private static double 		maxFailureRate 	= Double.NaN;
+	private static QuarantineLog quarantine 	= null;
+	private static boolean 		doPipe 			= false;
+	private static boolean 		doPipeRaw 		= false;
+	private static boolean 		doPipeFramed 	= false;
+	private static OutputStream pipeOutput 		= null;
+	
+	//output file name of results written to stdout (pipe mode)
+	private static final String STDOUT = "-";
+	
+	//cost profile of the protein predicted by the current thread
+	private static final ThreadLocal<Profile> 	localProfile 	= new ThreadLocal<Profile>();
+	
+	//reused text buffer of the output files written by the current thread
+	private static final ThreadLocal<OutputBuffer> 	localBuffer 	= new ThreadLocal<OutputBuffer>();
 	
 	
 	public static void main(String[] args)
 	{
+		//subcommands
+		if (args != null && args.length > 0 && args[0].equalsIgnoreCase("generate"))
+		{
+			Generator.main(Arrays.copyOfRange(args, 1, args.length));
+			
+			return;
+		}
+		else if (args != null && args.length > 0 && args[0].equalsIgnoreCase("bench"))
+		{
+			Bench.main(Arrays.copyOfRange(args, 1, args.length));
+			
+			return;
+		}
+		else if (args != null && args.length > 0 && args[0].equalsIgnoreCase("replay"))
+		{
+			Replay.main(Arrays.copyOfRange(args, 1, args.length));
+			
+			return;
+		}
+		else if (args != null && args.length > 0 && args[0].equalsIgnoreCase("raw"))
+		{
+			RawConverter.main(Arrays.copyOfRange(args, 1, args.length));
+			
+			return;
+		}
+		
 		//parse parameter
 		if (!parseParams(args))
 		{
@@ -72,66 +186,420 @@ public class TMSEG {
 			return;
 		}
 		
+		if (modelPath == null) {modelPath = rootDir + "/models";}
+		
 		//check all files
-		if (!checkFiles()) {return;}
+		if (!(doPipe || manifestPath != null || archivePath != null || watchPath != null ? checkModels() : checkFiles())) {return;}
+		
+		//keep stdout for the results, all messages go to stderr
+		if (doPipe)
+		{
+			pipeOutput = new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), Globals.OUTPUT_BUFFER_SIZE);
+			
+			System.setOut(System.err);
+		}
+		
+		//calibrate the prefilter only
+		if (!Double.isNaN(calibrationRecall))
+		{
+			calibratePrefilter();
+			
+			return;
+		}
+		
+		//the sampling and gate settings are fixed for the whole run, the checks use reference copies
+		Globals.INDEXER_SAMPLING_STEP 	= samplingStep;
+		Globals.INDEXER_SAMPLING_MARGIN = samplingMargin;
+		Globals.PREDICTOR_GATE 			= doGate;
 		
 		//load the predictors
 		loadPredictors();
 		
-		//run prediction(s)
-		if (doMultiJob)
+		if (metricsPath != null) {metrics = new Metrics();}
+		
+		if (profilePath != null || slowLogPath != null)
 		{
-			File 			fastaFolder = new File(fastaPath);
-			FilenameFilter 	fastaFilter = new FilenameFilter()
+			try
 			{
-				@Override
-				public boolean accept(File dir, String name)
-				{
-					return name.toLowerCase().endsWith(".fasta");
-				}
-			};
+				profileLog = new ProfileLog(profilePath, slowLogPath, slowMillis);
+			}
+			catch (IOException e)
+			{
+				ErrorUtils.printError(TMSEG.class, "Failed to open profile/slow-log files", e);
+				
+				return;
+			}
+		}
+		
+		if (shadowFraction > 0) {shadow = new Shadow(originals.indexer, originals.predictor, originals.topology, shadowFraction);}
+		
+		if (streamPath != null)
+		{
+			try
+			{
+				stream = new StreamSink(streamPath, doStreamRaw, doStreamTmp, streamRotate);
+			}
+			catch (IOException e)
+			{
+				ErrorUtils.printError(TMSEG.class, "Failed to open output stream " + streamPath, e);
+				
+				return;
+			}
+		}
+		
+		try
+		{
+			quarantine = new QuarantineLog(quarantinePath, maxFailureRate);
+		}
+		catch (IOException e)
+		{
+			ErrorUtils.printError(TMSEG.class, "Failed to open quarantine report " + quarantinePath, e);
 			
-			for (File file : fastaFolder.listFiles(fastaFilter))
+			return;
+		}
+		
+		if (journalPath != null)
+		{
+			try
 			{
+				journal = new Journal(journalPath, doResume);
+			}
+			catch (IOException e)
+			{
+				ErrorUtils.printError(TMSEG.class, "Failed to open journal " + journalPath, e);
+				
+				return;
+			}
+		}
+		
+		if (capturePath != null)
+		{
+			try
+			{
+				captureLog = new CaptureLog(capturePath, String.join(" ", args));
+			}
+			catch (IOException e)
+			{
+				ErrorUtils.printError(TMSEG.class, "Failed to open capture folder", e);
+				
+				return;
+			}
+		}
+		
+		openOutput();
+		
+		//run prediction(s)
+		if (doPipe)
+		{
+			doPipePredictions();
+		}
+		else if (manifestPath != null)
+		{
+			doManifestPredictions();
+		}
+		else if (archivePath != null)
+		{
+			doArchivePredictions();
+		}
+		else if (watchPath != null)
+		{
+			new Watcher(watchPath, watchDonePath != null ? watchDonePath : watchPath + "/done", watchThreads).run();
+		}
+		else if (doMultiJob)
+		{
+			for (File file : listFastaFiles())
+			{
+				if (isAborted()) {break;}
+				
 				String fastaFile 	= file.getAbsolutePath();
 				String fileName 	= new File(fastaFile).getName(); fileName = fileName.substring(0, fileName.length()-6);
 				String pssmFile 	= new File(pssmPath + "/" + fileName + ".pssm").getAbsolutePath();
-				String outFile 		= null;
-				String outFileRaw 	= null;
 				
-				if (outPath != null)
+				doPrediction(fastaFile, pssmFile, outputFile(fileName), rawOutputFile(fileName));
+			}
+		}
+		else
+		{
+			doPrediction(fastaPath, pssmPath, outPath, outPathRaw);
+		}
+		
+		closeOutput();
+		
+		if (stream != null) {stream.close();}
+		
+		if (journal != null)
+		{
+			journal.close();
+			
+			if (doResume) {System.out.println("Resumed:              " + journal.getSkipped() + " proteins already completed");}
+		}
+		
+		quarantine.close();
+		
+		if (quarantine.getFailures() > 0)
+		{
+			System.out.println("Failed proteins:      " + quarantine.getFailures() + " of " + quarantine.getProteins() + (quarantinePath != null ? " (see " + quarantinePath + ")" : ""));
+		}
+		
+		if (quarantine.isAborted())
+		{
+			ErrorUtils.printError(TMSEG.class, "Run aborted, the failure rate exceeded " + maxFailureRate, null);
+		}
+		
+		if (prefilter != null) {prefilter.printStatistics();}
+		
+		if (samplingStep > 1) {printSamplingStatistics();}
+		
+		if (doGate) {printGateStatistics();}
+		
+		if (shadow != null)
+		{
+			shadow.close();
+			shadow.printStatistics();
+			
+			if (shadowPath != null) {shadow.writeReport(shadowPath);}
+			if (metrics != null) 	{shadow.exportMetrics(metrics);}
+		}
+		
+		if (metrics != null)
+		{
+			long[] evaluations = new long[3];
+			
+			for (Predictors copy : allPredictors())
+			{
+				evaluations[0] += copy.indexer.getWindowsScored() + (copy.verifier != null ? copy.verifier.getWindowsScored() : 0);
+				evaluations[1] += copy.predictor.getEvaluations() + (copy.checker != null ? copy.checker.getEvaluations() : 0);
+				evaluations[2] += copy.topology.getEvaluations();
+			}
+			
+			metrics.setEvaluations("indexer", evaluations[0]);
+			metrics.setEvaluations("predictor", evaluations[1]);
+			metrics.setEvaluations("topology", evaluations[2]);
+			
+			metrics.write(metricsPath);
+		}
+		
+		if (captureLog != null) {captureLog.close();}
+		
+		if (profileLog != null)
+		{
+			profileLog.close();
+			
+			if (slowLogPath != null)
+			{
+				System.out.println("Slow proteins:        " + profileLog.getSlowProteins() + " (>= " + slowMillis + " ms)");
+			}
+		}
+	}
+	
+	
+	private static File[] listFastaFiles()
+	{
+		File 			fastaFolder = new File(fastaPath);
+		FilenameFilter 	fastaFilter = new FilenameFilter()
+		{
+			@Override
+			public boolean accept(File dir, String name)
+			{
+				return name.toLowerCase().endsWith(".fasta");
+			}
+		};
+		
+		return fastaFolder.listFiles(fastaFilter);
+	}
+	
+	
+	/**
+	 * Predicts the records read from stdin one after another and writes each
+	 * result to stdout as soon as it is finished.
+	 */
+	private static void doPipePredictions()
+	{
+		RecordStream 	records 	= new RecordStream(new BufferedInputStream(System.in, Globals.OUTPUT_BUFFER_SIZE), doPipeFramed);
+		String 			outFile 	= doPipeRaw ? null : STDOUT;
+		String 			outFileRaw 	= doPipeRaw ? STDOUT : null;
+		
+		try
+		{
+			while (!isAborted() && records.next())
+			{
+				doPrediction(records.getName(), records.getName(), records.getFasta(), records.getPssm(), outFile, outFileRaw);
+			}
+		}
+		catch (IOException e)
+		{
+			ErrorUtils.printError(TMSEG.class, "Failed to read the input stream", e);
+		}
+	}
+	
+	
+	private static Protein readProtein(String fastaFile, String pssmFile, boolean annotated)
+	{
+		return readProtein(fastaFile, pssmFile, null, null, annotated);
+	}
+	
+	
+	/**
+	 * Predicts the proteins listed in the manifest while it is read.
+	 */
+	private static void doManifestPredictions()
+	{
+		ManifestReader manifest = null;
+		
+		try
+		{
+			manifest = new ManifestReader(manifestPath);
+			
+			while (!isAborted() && manifest.next())
+			{
+				String outFile 		= outputFile(manifest.getKey());
+				String outFileRaw 	= rawOutputFile(manifest.getKey());
+				
+				if (!(new File(manifest.getFasta()).isFile()))
 				{
-					outFile = new File(outPath + "/" + fileName + ".tmseg").getAbsolutePath();
+					if (quarantine != null) {quarantine.addProtein();}
+					
+					fail(manifest.getFasta(), null, "parse", "Could not find FASTA file " + manifest.getFasta(), null);
 				}
-				
-				if (outPathRaw != null)
+				else if (manifest.isBundle())
+				{
+					doBundlePrediction(manifest.getFasta(), outFile, outFileRaw);
+				}
+				else
 				{
-					outFileRaw = new File(outPathRaw + "/" + fileName + ".tmseg-raw").getAbsolutePath();
+					doPrediction(manifest.getFasta(), manifest.getPssm(), outFile, outFileRaw);
 				}
+			}
+		}
+		catch (IOException e)
+		{
+			ErrorUtils.printError(TMSEG.class, "Failed to read manifest " + manifestPath, e);
+		}
+		finally
+		{
+			if (manifest != null) {manifest.close();}
+		}
+	}
+	
+	
+	/**
+	 * Predicts the FASTA/PSSM pairs of a tar archive as soon as both members were read.
+	 */
+	private static void doArchivePredictions()
+	{
+		ArchiveReader 	archive = null;
+		long 			pairs 	= 0;
+		
+		try
+		{
+			archive = new ArchiveReader(archivePath, Globals.ARCHIVE_PAIRING_BUFFER);
+			
+			while (!isAborted() && archive.next())
+			{
+				doPrediction(archive.getFastaEntry(), archive.getPssmEntry(), archive.getFasta(), archive.getPssm(), outputFile(archive.getKey()), rawOutputFile(archive.getKey()));
 				
-				doPrediction(fastaFile, pssmFile, outFile, outFileRaw);
+				++pairs;
 			}
+			
+			if (pairs == 0) {ErrorUtils.printError(TMSEG.class, "No FASTA/PSSM pairs found in archive " + archivePath, null);}
 		}
-		else
+		catch (IOException e)
 		{
-			doPrediction(fastaPath, pssmPath, outPath, outPathRaw);
+			ErrorUtils.printError(TMSEG.class, "Failed to read archive " + archivePath, e);
+		}
+		finally
+		{
+			if (archive != null) {archive.close();}
+		}
+	}
+	
+	
+	/**
+	 * Returns the output file (-o folder) for the given name.
+	 * 
+	 * @param name
+	 * @return
+	 */
+	static String outputFile(String name)
+	{
+		return outPath != null ? new File(outPath + "/" + name + ".tmseg").getAbsolutePath() : null;
+	}
+	
+	
+	/**
+	 * Returns the raw output file (-r folder) for the given name.
+	 * 
+	 * @param name
+	 * @return
+	 */
+	static String rawOutputFile(String name)
+	{
+		return outPathRaw != null ? new File(outPathRaw + "/" + name + (doRawBinary ? RawFormat.EXTENSION : ".tmseg-raw")).getAbsolutePath() : null;
+	}
+	
+	
+	/**
+	 * Predicts the first FASTA+PSSM record of a bundle file.
+	 * 
+	 * @param bundleFile
+	 * @param outFile
+	 * @param outFileRaw
+	 */
+	private static void doBundlePrediction(String bundleFile, String outFile, String outFileRaw)
+	{
+		InputStream input = null;
+		
+		try
+		{
+			input = new FileInputStream(bundleFile);
+			
+			RecordStream records = new RecordStream(new BufferedInputStream(input, Globals.OUTPUT_BUFFER_SIZE), false);
+			
+			if (records.next()) {doPrediction(bundleFile, bundleFile, records.getFasta(), records.getPssm(), outFile, outFileRaw);}
+			else 				{ErrorUtils.printError(TMSEG.class, "No FASTA record in bundle file " + bundleFile, null);}
+		}
+		catch (IOException e)
+		{
+			ErrorUtils.printError(TMSEG.class, "Failed to read bundle file " + bundleFile, e);
+		}
+		finally
+		{
+			try
+			{
+				if (input != null) {input.close();}
+			}
+			catch (IOException e)
+			{
+				//do nothing
+			}
 		}
 	}
 	
 	
-	private static void doPrediction(String fastaFile, String pssmFile, String outFile, String outFileRaw)
+	/**
+	 * Reads a protein from its FASTA and PSSM file, or from the given texts
+	 * if they are set (the file names are used in messages only).
+	 * 
+	 * @param fastaFile
+	 * @param pssmFile
+	 * @param fastaText
+	 * @param pssmText
+	 * @param annotated
+	 * @return
+	 */
+	private static Protein readProtein(String fastaFile, String pssmFile, String fastaText, String pssmText, boolean annotated)
 	{
 		Protein 			protein = null;
 		ArrayList<Protein> 	tmpList = null;
 		
 		//read input FASTA file
-		if (doAdjust)
+		if (annotated)
 		{
-			tmpList = FastaReader.readStructureFile(fastaFile);
+			tmpList = fastaText != null ? FastaReader.readStructureText(fastaFile, fastaText) : FastaReader.readStructureFile(fastaFile);
 		}
 		else
 		{
-			tmpList = FastaReader.readFastaFile(fastaFile);
+			tmpList = fastaText != null ? FastaReader.readFastaText(fastaFile, fastaText) : FastaReader.readFastaFile(fastaFile);
 		}
 		
 		if (tmpList != null && tmpList.size() > 0) {protein = tmpList.get(0);}
@@ -139,7 +607,14 @@ public class TMSEG {
 		//read intput PSSM file
 		if (protein != null)
 		{
-			Pssm pssm = Pssm.newPssm(pssmFile, protein.getSequence().length);
+			Events.PssmLoad event = new Events.PssmLoad();
+			
+			event.begin();
+			
+			Pssm pssm = pssmText != null ? Pssm.newPssm(pssmFile, pssmText, protein.getLength()) : Pssm.newPssm(pssmFile, protein.getLength());
+			
+			event.setProtein(protein);
+			event.commit();
 			
 			if (pssm != null)
 			{
@@ -147,339 +622,1518 @@ public class TMSEG {
 			}
 			else
 			{
-				ErrorUtils.printError(TMSEG.class, "Failed to parse input PSSM file: " + pssmFile, null);
+				fail(fastaFile, protein.getName(), "parse", "Failed to parse input PSSM file: " + pssmFile, null);
 				
-				return;
+				return null;
 			}
 		}
-		else
+		else
+		{
+			fail(fastaFile, null, "parse", "Failed to parse input FASTA file: " + fastaFile, null);
+			
+			return null;
+		}
+		
+		return protein;
+	}
+	
+	
+	/**
+	 * Reports a protein that failed in the given stage and adds it to the
+	 * quarantine report, the run continues with the next protein.
+	 * 
+	 * @param input
+	 * @param protein
+	 * @param stage
+	 * @param message
+	 * @param e
+	 */
+	private static void fail(String input, String protein, String stage, String message, Exception e)
+	{
+		ErrorUtils.printError(TMSEG.class, message, e);
+		
+		if (quarantine != null) {quarantine.add(protein, input, stage, message);}
+	}
+	
+	
+	/**
+	 * Returns true if the run was aborted since too many proteins failed.
+	 * 
+	 * @return
+	 */
+	static boolean isAborted()
+	{
+		return quarantine != null && quarantine.isAborted();
+	}
+	
+	
+	/**
+	 * Predicts a protein and writes its output files, returns false if the
+	 * inputs could not be read.
+	 * 
+	 * @param fastaFile
+	 * @param pssmFile
+	 * @param outFile
+	 * @param outFileRaw
+	 * @return
+	 */
+	static boolean doPrediction(String fastaFile, String pssmFile, String outFile, String outFileRaw)
+	{
+		return doPrediction(fastaFile, pssmFile, null, null, outFile, outFileRaw);
+	}
+	
+	
+	private static boolean doPrediction(String fastaFile, String pssmFile, String fastaText, String pssmText, String outFile, String outFileRaw)
+	{
+		long 	start 		= System.nanoTime();
+		Profile profile 	= null;
+		long[] 	counters 	= null;
+		long 	checksum 	= 0;
+		String 	fastaInput 	= fastaText;
+		String 	pssmInput 	= pssmText;
+		
+		if (journal != null)
+		{
+			//the checksum covers the content, so the files are read once here and parsed from memory
+			if (fastaInput == null) {fastaInput = Journal.readText(fastaFile);}
+			if (pssmInput == null) 	{pssmInput = Journal.readText(pssmFile);}
+			
+			checksum = Journal.checksum(fastaInput, pssmInput);
+			
+			if (doResume && journal.isCompleted(fastaFile, checksum, outFile, outFileRaw)) {return true;}
+		}
+		
+		if (profileLog != null)
+		{
+			profile 	= new Profile();
+			counters 	= countEvaluations();
+			
+			localProfile.set(profile);
+		}
+		
+		if (quarantine != null) {quarantine.addProtein();}
+		
+		Protein 	protein = null;
+		Prediction 	result 	= null;
+		
+		//a bad input fails its own protein only
+		try
+		{
+			protein = readProtein(fastaFile, pssmFile, fastaInput, pssmInput, doAdjust);
+		}
+		catch (RuntimeException e)
+		{
+			fail(fastaFile, null, "parse", "Failed to read " + fastaFile + ": " + e, e);
+		}
+		
+		try
+		{
+			result = predict(protein, start, outFileRaw != null || (stream != null && stream.hasRaw()));
+		}
+		catch (RuntimeException e)
+		{
+			fail(fastaFile, protein.getName(), "predict", "Prediction failed for " + fastaFile + ": " + e, e);
+		}
+		
+		//the protein is not kept here, so it can be collected as soon as its result exists
+		protein = null;
+		
+		if (result == null)
+		{
+			localProfile.remove();
+			
+			return false;
+		}
+		
+		long time = System.nanoTime();
+		
+		Events.Output event = new Events.Output();
+		
+		event.begin();
+		
+		//the journal entry is added once all files were written
+		Journal.Completion completion = journal != null ? journal.start(fastaFile, result.getName(), checksum, outFile, outFileRaw) : null;
+		
+		byte[] refined = null;
+		
+		//write prediction files
+		if (outFile != null)
+		{
+			refined = writeRefinedPrediction(result, outFile, completion);
+		}
+		
+		if (outFileRaw != null)
+		{
+			writeRawPrediction(result, outFileRaw, completion);
+		}
+		
+		if (stream != null) {stream.add(result);}
+		
+		event.setPrediction(result);
+		event.commit();
+		
+		time = record(Metrics.STAGE_OUTPUT, time);
+		
+		if (metrics != null) {metrics.addProtein(result.getLength(), time - start);}
+		
+		if (profile != null)
+		{
+			long[] current = countEvaluations();
+			
+			profile.setProtein(result.getName(), result.getLength());
+			profile.setTotalNanos(time - start);
+			profile.setEvaluations(current[0] - counters[0], current[1] - counters[1], current[2] - counters[2], current[3] - counters[3], current[4] - counters[4]);
+			
+			profileLog.add(profile, fastaFile, pssmFile, fastaText, pssmText);
+			
+			localProfile.remove();
+		}
+		
+		//records read from memory cannot be replayed from their files
+		if (captureLog != null && fastaText == null) {captureLog.add(result.getName(), fastaFile, pssmFile, start, time - start, outFile, refined);}
+		
+		return true;
+	}
+	
+	
+	/**
+	 * Runs the prediction stages on a parsed protein and returns its result.
+	 * The PSSM is released as soon as the last predictor finished.
+	 * 
+	 * @param protein
+	 * @param start
+	 * @param keepRaw
+	 * @return
+	 */
+	private static Prediction predict(Protein protein, long start, boolean keepRaw)
+	{
+		long time = record(Metrics.STAGE_PARSE, start);
+		
+		if (protein == null) {return null;}
+		
+		//do standard prediction
+		if (!doAdjust)
+		{
+			if (prefilter == null || prefilter.accept(protein))
+			{
+				doStandardPrediction(protein);
+				
+				if (prefilter != null) {prefilter.predicted(protein);}
+			}
+			else if (doAudit)
+			{
+				doStandardPrediction(protein);
+				
+				prefilter.audit(protein);
+			}
+			else
+			{
+				HydrophobicityFilter.assignSoluble(protein);
+			}
+		}
+		//do post-processing only
+		else
+		{
+			protein.setPrediction(protein.getStructure());
+			
+			Processing.tmpCheck(protein);
+			
+			time = record(Metrics.STAGE_PROCESS, time);
+			
+			if (!doTopology) {doAdjustments(protein);}
+			
+			time = record(Metrics.STAGE_REFINE, time);
+			
+			doTopology(protein);
+			
+			record(Metrics.STAGE_TOPOLOGY, time);
+		}
+		
+		Pssm pssm = protein.getPssm();
+		
+		protein.setPssm(null);
+		
+		Prediction result = Prediction.newPrediction(protein, keepRaw || shadow != null);
+		
+		if (shadow != null && result != null) {shadow.submit(result, pssm);}
+		
+		return result;
+	}
+	
+	
+	/**
+	 * Returns the evaluation counters of the predictors of the current thread as
+	 * {indexer windows, split evaluations, adjust evaluations, refinement rounds, topology evaluations}.
+	 * 
+	 * @return
+	 */
+	private static long[] countEvaluations()
+	{
+		Predictors current = predictors();
+		
+		return new long[] {	current.indexer.getWindowsScored() + (current.verifier != null ? current.verifier.getWindowsScored() : 0),
+							current.predictor.getSplitEvaluations() + (current.checker != null ? current.checker.getSplitEvaluations() : 0),
+							current.predictor.getAdjustEvaluations() + (current.checker != null ? current.checker.getAdjustEvaluations() : 0),
+							current.predictor.getRounds() + (current.checker != null ? current.checker.getRounds() : 0),
+							current.topology.getEvaluations()};
+	}
+	
+	
+	/**
+	 * Adds the time since the given start to a stage and returns the current time.
+	 * 
+	 * @param stage
+	 * @param start
+	 * @return
+	 */
+	private static long record(int stage, long start)
+	{
+		long 	now 	= System.nanoTime();
+		Profile profile = localProfile.get();
+		
+		if (metrics != null) {metrics.addTime(stage, now - start);}
+		if (profile != null) {profile.addTime(stage, now - start);}
+		
+		return now;
+	}
+	
+	
+	private static void doStandardPrediction(Protein protein)
+	{
+		doIndexing(protein);
+		
+		long time = System.nanoTime();
+		
+		doAdjustments(protein);
+		
+		time = record(Metrics.STAGE_REFINE, time);
+		
+		doTopology(protein);
+		
+		time = record(Metrics.STAGE_TOPOLOGY, time);
+		
+		Processing.assignConfidence(protein);
+		
+		record(Metrics.STAGE_PROCESS, time);
+	}
+	
+	
+	private static void doIndexing(Protein protein)
+	{
+		long time = System.nanoTime();
+		
+		indexProtein(predictors().indexer, protein, samplingStep);
+		
+		time = record(Metrics.STAGE_INDEX, time);
+		
+		Processing.process(protein, false, 7, Globals.PROCESSING_WEIGHT_SOL, Globals.PROCESSING_WEIGHT_TMH, Globals.PROCESSING_WEIGHT_SIG);
+		
+		time = record(Metrics.STAGE_PROCESS, time);
+		
+		//compare sampled against dense indexing for a sample of the proteins and keep the dense result
+		if (predictors().verifier != null && Shadow.isSampled(protein.getName(), verifyFraction))
+		{
+			byte[] sampled = protein.getPrediction().clone();
+			
+			protein.setPredSigP(false);
+			
+			indexProtein(predictors().verifier, protein, 1);
+			
+			time = record(Metrics.STAGE_INDEX, time);
+			
+			Processing.process(protein, false, 7, Globals.PROCESSING_WEIGHT_SOL, Globals.PROCESSING_WEIGHT_TMH, Globals.PROCESSING_WEIGHT_SIG);
+			
+			record(Metrics.STAGE_PROCESS, time);
+			
+			verifiedProteins.incrementAndGet();
+			
+			if (!Arrays.equals(sampled, protein.getPrediction()))
+			{
+				differingProteins.incrementAndGet();
+				
+				ErrorUtils.printWarning(TMSEG.class, "Sampled prediction differs from dense prediction for " + protein.getName(), null);
+			}
+		}
+	}
+	
+	
+	private static void indexProtein(HelixIndexer indexer, Protein protein, int step)
+	{
+		Events.Indexing event = new Events.Indexing();
+		
+		event.begin();
+		
+		indexer.predict(protein, step);
+		
+		event.setProtein(protein);
+		event.commit();
+	}
+	
+	
+	private static void printSamplingStatistics()
+	{
+		long 	scored 		= 0;
+		long 	total 		= 0;
+		long 	verified 	= 0;
+		
+		for (Predictors copy : allPredictors())
+		{
+			scored 	+= copy.indexer.getWindowsScored();
+			total 	+= copy.indexer.getWindowsTotal();
+			
+			if (copy.verifier != null) {verified += copy.verifier.getWindowsScored();}
+		}
+		
+		double 	fraction 	= total > 0 ? (double)scored / total : 0.0;
+		
+		System.out.println("Sampling step:        " + samplingStep + " (margin " + samplingMargin + ")");
+		System.out.println("Windows scored:       " + scored + " of " + total + " (" + fraction + ")");
+		
+		if (originals.verifier != null)
+		{
+			System.out.println("Proteins verified:    " + verifiedProteins.get() + " (" + differingProteins.get() + " differing, " + verified + " dense windows)");
+		}
+	}
+	
+	
+	private static void doAdjustments(Protein protein)
+	{
+		Globals.PREDICTOR_HELIX_MIN_SIZE 	= 17;
+		Globals.PREDICTOR_MAX_SHIFT 		= 3;
+		Globals.PREDICTOR_GAP_MIN_SIZE 		= 1;
+		
+		//compare gated against full refinement and keep the full result
+		if (doGateCheck && protein.isPredTmp() && protein.getTmhRaw() != null)
+		{
+			byte[] 	prediction 	= protein.getPrediction();
+			byte[] 	original 	= prediction.clone();
+			
+			predictors().predictor.predict(protein, 0.0);
+			
+			byte[] 	gated 		= prediction.clone();
+			int[] 	gatedRaw 	= protein.getSegmentRaw().clone();
+			
+			protein.setPrediction(original);
+			
+			Arrays.fill(protein.getSegmentRaw(), 0);
+			
+			predictors().checker.predict(protein, 0.0);
+			
+			checkedProteins.incrementAndGet();
+			
+			if (!Arrays.equals(gated, protein.getPrediction()) || !Arrays.equals(gatedRaw, protein.getSegmentRaw()))
+			{
+				changedProteins.incrementAndGet();
+				
+				ErrorUtils.printWarning(TMSEG.class, "Gated refinement differs from full refinement for " + protein.getName(), null);
+			}
+		}
+		else
+		{
+			predictors().predictor.predict(protein, 0.0);
+		}
+		
+		Processing.tmpCheck(protein);
+	}
+	
+	
+	private static void printGateStatistics()
+	{
+		long 	checked 	= 0;
+		long 	skipped 	= 0;
+		
+		for (Predictors copy : allPredictors())
+		{
+			checked += copy.predictor.getHelicesChecked();
+			skipped += copy.predictor.getHelicesSkipped();
+		}
+		
+		double 	fraction 	= checked > 0 ? (double)skipped / checked : 0.0;
+		
+		System.out.println("Helices skipped:      " + skipped + " of " + checked + " (" + fraction + ")");
+		
+		if (doGateCheck)
+		{
+			System.out.println("Proteins checked:     " + checkedProteins.get() + " (" + changedProteins.get() + " changed)");
+		}
+	}
+	
+	
+	private static void doTopology(Protein protein)
+	{
+		Events.Topology event = new Events.Topology();
+		
+		event.begin();
+		
+		predictors().topology.predict(protein, 0.45);
+		
+		event.setProtein(protein);
+		event.commit();
+	}
+	
+	
+	static void writeRefinedPrediction(Prediction prediction, String outFile)
+	{
+		writeRefinedPrediction(prediction, outFile, null);
+	}
+	
+	
+	/**
+	 * Formats the .tmseg output of a prediction, writes it and returns its content.
+	 * 
+	 * @param prediction
+	 * @param outFile
+	 * @param completion
+	 * @return
+	 */
+	private static byte[] writeRefinedPrediction(Prediction prediction, String outFile, Journal.Completion completion)
+	{
+		if (prediction == null) {return null;}
+		
+		OutputBuffer buffer = outputBuffer();
+		
+		buffer.append("# SEGMENT\tSTART\tEND\tRI\n");
+		buffer.append("##\n");
+		
+		for (int k = 0; k < prediction.size(); ++k)
+		{
+			int 	start 	= prediction.getStart(k)+1;
+			int 	end 	= prediction.getEnd(k)+1;
+			byte 	type 	= prediction.getType(k);
+			
+			buffer.append("# ").append(Mappings.segmentName(type)).append('\t').append(start).append('\t').append(end);
+			
+			//RI=-1 if no prediction was made (i.e. adjustment-mode only)
+			if (Mappings.ssOf(type) == Mappings.indexTmh) {buffer.append('\t').append(prediction.getConfidence(k));}
+			
+			buffer.append('\n');
+		}
+		
+		buffer.append("##\n");
+		buffer.append(prediction.getHeader()).append('\n');
+		
+		byte[] sequence = prediction.getSequence();
+		
+		for (int i = 0; i < sequence.length; ++i) {buffer.append(Mappings.decodeResidue(sequence[i]));}
+		
+		buffer.append('\n');
+		
+		for (int k = 0; k < prediction.size(); ++k)
+		{
+			char state = Mappings.decodeState(prediction.getType(k));
+			
+			for (int i = prediction.getStart(k); i <= prediction.getEnd(k); ++i) {buffer.append(state);}
+		}
+		
+		buffer.append('\n');
+		
+		byte[] content = buffer.toByteArray();
+		
+		writeOutput(outFile, content, completion);
+		
+		return content;
+	}
+	
+	
+	static void writeRawPrediction(Prediction prediction, String outFileRaw)
+	{
+		writeRawPrediction(prediction, outFileRaw, null);
+	}
+	
+	
+	private static void writeRawPrediction(Prediction prediction, String outFileRaw, Journal.Completion completion)
+	{
+		if (prediction == null) {return;}
+		
+		if (doRawBinary)
+		{
+			writeOutput(outFileRaw, RawFormat.encodeFile(prediction), completion);
+		}
+		else
+		{
+			OutputBuffer buffer = outputBuffer();
+			
+			formatRawPrediction(prediction, buffer);
+			
+			writeOutput(outFileRaw, buffer.toByteArray(), completion);
+		}
+	}
+	
+	
+	/**
+	 * Appends the raw output (text format) of a prediction to the buffer.
+	 * 
+	 * @param prediction
+	 * @param buffer
+	 */
+	static void formatRawPrediction(Prediction prediction, OutputBuffer buffer)
+	{
+		short[][] 	raw 		= {prediction.getSolRaw(), prediction.getTmhRaw(), prediction.getSigRaw(), prediction.getSegmentRaw()};
+		int 		topRaw 		= prediction.getTopologyRaw();
+		byte[] 		sequence 	= prediction.getSequence();
+		
+		buffer.append("# ").append(prediction.getHeader()).append('\n');
+		buffer.append("# SEQ\tSOL\tTMH\tSIG\tSEG\tTOP\tPRED\n");
+		
+		for (int k = 0; k < prediction.size(); ++k)
+		{
+			char state = Mappings.decodeState(prediction.getType(k));
+			
+			for (int i = prediction.getStart(k); i <= prediction.getEnd(k); ++i)
+			{
+				buffer.append(Mappings.decodeResidue(sequence[i])).append('\t');
+				
+				for (short[] scores : raw)
+				{
+					if (scores != null && scores[i] >= 0) 	{buffer.appendPermille(scores[i]).append('\t');}
+					else 									{buffer.append(".\t");}
+				}
+				
+				if (i == 0 && topRaw >= 0) 	{buffer.appendPermille(topRaw).append('\t');}
+				else 						{buffer.append(".\t");}
+				
+				buffer.append(state).append('\n');
+			}
+		}
+	}
+	
+	
+	/**
+	 * Returns the cleared output buffer of the current thread.
+	 * 
+	 * @return
+	 */
+	private static OutputBuffer outputBuffer()
+	{
+		OutputBuffer buffer = localBuffer.get();
+		
+		if (buffer == null)
+		{
+			buffer = new OutputBuffer(Globals.OUTPUT_BUFFER_SIZE);
+			
+			localBuffer.set(buffer);
+		}
+		
+		buffer.clear();
+		
+		return buffer;
+	}
+	
+	
+	/**
+	 * Queues an output file for the background writer. Without an open
+	 * writer (e.g. in benchmarks), the file is written directly. Results
+	 * for stdout are written and flushed immediately. The completion (if
+	 * set) is notified once the file was written.
+	 * 
+	 * @param filename
+	 * @param content
+	 * @param completion
+	 */
+	private static void writeOutput(String filename, byte[] content, Journal.Completion completion)
+	{
+		OutputWriter writer = output;
+		
+		if (STDOUT.equals(filename))
+		{
+			writePipe(content);
+		}
+		else if (writer != null)
+		{
+			writer.write(filename, content, completion);
+		}
+		else if (OutputWriter.writeFile(filename, content) && completion != null)
+		{
+			completion.written(filename, content.length);
+		}
+	}
+	
+	
+	private static void writePipe(byte[] content)
+	{
+		synchronized (pipeOutput)
+		{
+			try
+			{
+				pipeOutput.write(content);
+				pipeOutput.flush();
+			}
+			catch (IOException e)
+			{
+				ErrorUtils.printError(TMSEG.class, "Failed to write to stdout", e);
+			}
+		}
+	}
+	
+	
+	/**
+	 * Starts the background writer for the output files of the following predictions.
+	 */
+	static void openOutput()
+	{
+		output = new OutputWriter(Globals.OUTPUT_QUEUE_SIZE);
+	}
+	
+	
+	/**
+	 * Waits until all output files are written and stops the background writer.
+	 */
+	static void closeOutput()
+	{
+		if (output == null) {return;}
+		
+		output.close();
+		
+		if (output.getFailures() > 0) {ErrorUtils.printError(TMSEG.class, "Failed to write " + output.getFailures() + " output files", null);}
+		
+		output = null;
+	}
+	
+	
+	/**
+	 * Prepares the current thread for predictions in parallel to other threads.
+	 * Predictions in the thread that loaded the predictors use the originals.
+	 */
+	static void initWorker()
+	{
+		if (localPredictors.get() != null) {return;}
+		
+		Predictors copy = originals.copy();
+		
+		localPredictors.set(copy);
+		
+		workers.add(copy);
+	}
+	
+	
+	/**
+	 * Returns the predictors of the current thread.
+	 * 
+	 * @return
+	 */
+	private static Predictors predictors()
+	{
+		Predictors local = localPredictors.get();
+		
+		return local != null ? local : originals;
+	}
+	
+	
+	/**
+	 * Returns the originals and the copies of all worker threads, e.g. to sum
+	 * up their counters once the predictions are done.
+	 * 
+	 * @return
+	 */
+	private static List<Predictors> allPredictors()
+	{
+		List<Predictors> all = new ArrayList<Predictors>();
+		
+		all.add(originals);
+		
+		synchronized (workers) {all.addAll(workers);}
+		
+		return all;
+	}
+	
+	
+	static void loadPredictors()
+	{
+		HelixIndexer 		helixIndexer 		= new HelixIndexer();
+		HelixPredictor 		helixPredictor 		= new HelixPredictor();
+		TopologyPredictor 	topologyPredictor 	= new TopologyPredictor();
+		
+		helixIndexer.initialize();
+		helixPredictor.initialize();
+		topologyPredictor.initialize();
+		
+		helixIndexer.loadModelFromFile(modelPath + "/hIndexer");
+		helixPredictor.loadModelFromFile(modelPath + "/hPredictor");
+		topologyPredictor.loadModelFromFile(modelPath + "/tPredictor");
+		
+		originals = new Predictors(helixIndexer, helixPredictor, topologyPredictor, verifyFraction > 0 && samplingStep > 1, doGateCheck);
+		
+		if (!Double.isNaN(prefilterThreshold))
+		{
+			prefilter = new HydrophobicityFilter(prefilterThreshold);
+		}
+	}
+	
+	
+	private static void calibratePrefilter()
+	{
+		ArrayList<Protein> proteins = new ArrayList<Protein>();
+		
+		if (doMultiJob)
+		{
+			for (File file : listFastaFiles())
+			{
+				String fastaFile 	= file.getAbsolutePath();
+				String fileName 	= file.getName(); fileName = fileName.substring(0, fileName.length()-6);
+				String pssmFile 	= new File(pssmPath + "/" + fileName + ".pssm").getAbsolutePath();
+				Protein protein 	= readProtein(fastaFile, pssmFile, true);
+				
+				if (protein != null) {proteins.add(protein);}
+			}
+		}
+		else
+		{
+			Protein protein = readProtein(fastaPath, pssmPath, true);
+			
+			if (protein != null) {proteins.add(protein);}
+		}
+		
+		HydrophobicityFilter filter = new HydrophobicityFilter(0.0);
+		
+		filter.calibrate(proteins, calibrationRecall);
+		
+		System.out.println("Proteins used:        " + proteins.size());
+		System.out.println("Recall target:        " + calibrationRecall);
+		System.out.println("Prefilter threshold:  " + filter.getThreshold());
+	}
+	
+	
+	private static boolean parseParams(String[] args)
+	{
+		if (args == null || args.length < 1) {return false;}
+		
+		int maxIndex = args.length - 1;
+		
+		for (int i = 0; i <= maxIndex; ++i)
+		{
+			String param = args[i].trim();
+			String value = null;
+			
+			if (param.equalsIgnoreCase("-i"))
+			{
+				if (i == maxIndex) {break;}
+				
+				value = args[i+1].trim();
+				
+				if (value.startsWith("-")) {continue;}
+				
+				fastaPath = new File(value).getAbsolutePath();
+				
+				++i;
+			}
+			else if (param.equalsIgnoreCase("-p"))
+			{
+				if (i == maxIndex) {break;}
+				
+				value = args[i+1].trim();
+				
+				if (value.startsWith("-")) {continue;}
+				
+				pssmPath = new File(value).getAbsolutePath();
+				
+				++i;
+			}
+			else if (param.equalsIgnoreCase("-o"))
+			{
+				if (i == maxIndex) {break;}
+				
+				value = args[i+1].trim();
+				
+				if (value.startsWith("-")) {continue;}
+				
+				outPath = new File(value).getAbsolutePath();
+				
+				++i;
+			}
+			else if (param.equalsIgnoreCase("-r"))
+			{
+				if (i == maxIndex) {break;}
+				
+				value = args[i+1].trim();
+				
+				if (value.startsWith("-")) {continue;}
+				
+				outPathRaw = new File(value).getAbsolutePath();
+				
+				++i;
+			}
+			else if (param.equalsIgnoreCase("--metrics"))
+			{
+				if (i == maxIndex) {break;}
+				
+				value = args[i+1].trim();
+				
+				if (value.startsWith("-")) {continue;}
+				
+				metricsPath = new File(value).getAbsolutePath();
+				
+				++i;
+			}
+			else if (param.equalsIgnoreCase("--profile") || param.equalsIgnoreCase("--slow-log") || param.equalsIgnoreCase("--capture") || param.equalsIgnoreCase("--shadow-report"))
+			{
+				if (i == maxIndex) {break;}
+				
+				value = args[i+1].trim();
+				
+				if (value.startsWith("-")) {continue;}
+				
+				if (param.equalsIgnoreCase("--profile")) 		{profilePath = new File(value).getAbsolutePath();}
+				else if (param.equalsIgnoreCase("--slow-log")) 	{slowLogPath = new File(value).getAbsolutePath();}
+				else if (param.equalsIgnoreCase("--capture")) 	{capturePath = new File(value).getAbsolutePath();}
+				else 											{shadowPath = new File(value).getAbsolutePath();}
+				
+				++i;
+			}
+			else if (param.equalsIgnoreCase("--slow-ms"))
+			{
+				if (i == maxIndex) {break;}
+				
+				value = args[i+1].trim();
+				
+				try
+				{
+					slowMillis = Double.parseDouble(value);
+				}
+				catch (NumberFormatException e)
+				{
+					ErrorUtils.printError(TMSEG.class, "Invalid latency threshold: " + value, null);
+					
+					return false;
+				}
+				
+				++i;
+			}
+			else if (param.equalsIgnoreCase("--shadow"))
+			{
+				if (i == maxIndex) {break;}
+				
+				value = args[i+1].trim();
+				
+				try
+				{
+					shadowFraction = Double.parseDouble(value);
+				}
+				catch (NumberFormatException e)
+				{
+					ErrorUtils.printError(TMSEG.class, "Invalid shadow fraction: " + value, null);
+					
+					return false;
+				}
+				
+				++i;
+			}
+			else if (param.equalsIgnoreCase("--models"))
+			{
+				if (i == maxIndex) {break;}
+				
+				value = args[i+1].trim();
+				
+				if (value.startsWith("-")) {continue;}
+				
+				modelPath = new File(value).getAbsolutePath();
+				
+				++i;
+			}
+			else if (param.equalsIgnoreCase("-m"))
+			{
+				doMultiJob = true;
+			}
+			else if (param.equalsIgnoreCase("-x"))
+			{
+				doAdjust = true;
+			}
+			else if (param.equalsIgnoreCase("-t"))
+			{
+				doTopology = true;
+			}
+			else if (param.equalsIgnoreCase("--prefilter"))
+			{
+				if (i == maxIndex) {break;}
+				
+				value = args[i+1].trim();
+				
+				try
+				{
+					prefilterThreshold = Double.parseDouble(value);
+				}
+				catch (NumberFormatException e)
+				{
+					ErrorUtils.printError(TMSEG.class, "Invalid prefilter threshold: " + value, null);
+					
+					return false;
+				}
+				
+				++i;
+			}
+			else if (param.equalsIgnoreCase("--prefilter-audit"))
+			{
+				doAudit = true;
+			}
+			else if (param.equalsIgnoreCase("--sampling"))
+			{
+				if (i == maxIndex) {break;}
+				
+				value = args[i+1].trim();
+				
+				try
+				{
+					samplingStep = Integer.parseInt(value);
+				}
+				catch (NumberFormatException e)
+				{
+					ErrorUtils.printError(TMSEG.class, "Invalid sampling step: " + value, null);
+					
+					return false;
+				}
+				
+				++i;
+			}
+			else if (param.equalsIgnoreCase("--sampling-margin"))
+			{
+				if (i == maxIndex) {break;}
+				
+				value = args[i+1].trim();
+				
+				try
+				{
+					samplingMargin = Integer.parseInt(value);
+				}
+				catch (NumberFormatException e)
+				{
+					ErrorUtils.printError(TMSEG.class, "Invalid sampling margin: " + value, null);
+					
+					return false;
+				}
+				
+				++i;
+			}
+			else if (param.equalsIgnoreCase("--sampling-verify"))
+			{
+				if (i == maxIndex) {break;}
+				
+				value = args[i+1].trim();
+				
+				try
+				{
+					verifyFraction = Double.parseDouble(value);
+				}
+				catch (NumberFormatException e)
+				{
+					ErrorUtils.printError(TMSEG.class, "Invalid verify fraction: " + value, null);
+					
+					return false;
+				}
+				
+				++i;
+			}
+			else if (param.equalsIgnoreCase("--refine-gate"))
+			{
+				doGate = true;
+			}
+			else if (param.equalsIgnoreCase("--refine-gate-verify"))
+			{
+				doGateCheck = true;
+			}
+			else if (param.equalsIgnoreCase("--pssm-off-heap"))
+			{
+				Globals.PSSM_OFF_HEAP = true;
+			}
+			else if (param.equalsIgnoreCase("--raw-binary"))
+			{
+				doRawBinary = true;
+			}
+			else if (param.equalsIgnoreCase("--stream"))
+			{
+				if (i == maxIndex) {break;}
+				
+				value = args[i+1].trim();
+				
+				if (value.startsWith("-")) {continue;}
+				
+				streamPath = new File(value).getAbsolutePath();
+				
+				++i;
+			}
+			else if (param.equalsIgnoreCase("--stream-raw"))
+			{
+				doStreamRaw = true;
+			}
+			else if (param.equalsIgnoreCase("--stream-tmp-only"))
+			{
+				doStreamTmp = true;
+			}
+			else if (param.equalsIgnoreCase("--stream-rotate"))
+			{
+				if (i == maxIndex) {break;}
+				
+				value = args[i+1].trim();
+				
+				try
+				{
+					streamRotate = Integer.parseInt(value);
+				}
+				catch (NumberFormatException e)
+				{
+					ErrorUtils.printError(TMSEG.class, "Invalid number of proteins per stream: " + value, null);
+					
+					return false;
+				}
+				
+				++i;
+			}
+			else if (param.equalsIgnoreCase("--manifest"))
+			{
+				if (i == maxIndex) {break;}
+				
+				value = args[i+1].trim();
+				
+				if (value.startsWith("-")) {continue;}
+				
+				manifestPath = new File(value).getAbsolutePath();
+				
+				++i;
+			}
+			else if (param.equalsIgnoreCase("--archive"))
+			{
+				if (i == maxIndex) {break;}
+				
+				value = args[i+1].trim();
+				
+				if (value.startsWith("-")) {continue;}
+				
+				archivePath = new File(value).getAbsolutePath();
+				
+				++i;
+			}
+			else if (param.equalsIgnoreCase("--watch"))
+			{
+				if (i == maxIndex) {break;}
+				
+				value = args[i+1].trim();
+				
+				if (value.startsWith("-")) {continue;}
+				
+				watchPath = new File(value).getAbsolutePath();
+				
+				++i;
+			}
+			else if (param.equalsIgnoreCase("--watch-done"))
+			{
+				if (i == maxIndex) {break;}
+				
+				value = args[i+1].trim();
+				
+				if (value.startsWith("-")) {continue;}
+				
+				watchDonePath = new File(value).getAbsolutePath();
+				
+				++i;
+			}
+			else if (param.equalsIgnoreCase("--watch-threads"))
+			{
+				if (i == maxIndex) {break;}
+				
+				value = args[i+1].trim();
+				
+				try
+				{
+					watchThreads = Integer.parseInt(value);
+				}
+				catch (NumberFormatException e)
+				{
+					ErrorUtils.printError(TMSEG.class, "Invalid number of threads: " + value, null);
+					
+					return false;
+				}
+				
+				++i;
+			}
+			else if (param.equalsIgnoreCase("--journal"))
+			{
+				if (i == maxIndex) {break;}
+				
+				value = args[i+1].trim();
+				
+				if (value.startsWith("-")) {continue;}
+				
+				journalPath = new File(value).getAbsolutePath();
+				
+				++i;
+			}
+			else if (param.equalsIgnoreCase("--resume"))
+			{
+				doResume = true;
+			}
+			else if (param.equalsIgnoreCase("--quarantine"))
+			{
+				if (i == maxIndex) {break;}
+				
+				value = args[i+1].trim();
+				
+				if (value.startsWith("-")) {continue;}
+				
+				quarantinePath = new File(value).getAbsolutePath();
+				
+				++i;
+			}
+			else if (param.equalsIgnoreCase("--max-failure-rate"))
+			{
+				if (i == maxIndex) {break;}
+				
+				value = args[i+1].trim();
+				
+				try
+				{
+					maxFailureRate = Double.parseDouble(value);
+				}
+				catch (NumberFormatException e)
+				{
+					ErrorUtils.printError(TMSEG.class, "Invalid failure rate: " + value, null);
+					
+					return false;
+				}
+				
+				++i;
+			}
+			else if (param.equalsIgnoreCase("--pipe"))
+			{
+				doPipe = true;
+			}
+			else if (param.equalsIgnoreCase("--pipe-raw"))
+			{
+				doPipeRaw = true;
+			}
+			else if (param.equalsIgnoreCase("--pipe-framed"))
+			{
+				doPipeFramed = true;
+			}
+			else if (param.equalsIgnoreCase("--calibrate-prefilter"))
+			{
+				if (i == maxIndex) {break;}
+				
+				value = args[i+1].trim();
+				
+				try
+				{
+					calibrationRecall = Double.parseDouble(value);
+				}
+				catch (NumberFormatException e)
+				{
+					ErrorUtils.printError(TMSEG.class, "Invalid recall target: " + value, null);
+					
+					return false;
+				}
+				
+				++i;
+			}
+			else
+			{
+				ErrorUtils.printError(TMSEG.class, "Unkown parameter: " + param, null);
+				
+				return false;
+			}
+		}
+		
+		return checkParams();
+	}
+	
+	
+	private static boolean checkParams()
+	{
+		boolean passed = true;
+		
+		if (doPipe)
+		{
+			if (fastaPath != null || pssmPath != null || outPath != null || outPathRaw != null || doMultiJob || manifestPath != null || archivePath != null || watchPath != null)
+			{
+				ErrorUtils.printError(TMSEG.class, "--pipe cannot be combined with -i, -p, -o, -r, -m, --manifest, --archive or --watch", null);
+				
+				passed = false;
+			}
+			
+			if (!Double.isNaN(calibrationRecall) || capturePath != null || slowLogPath != null)
+			{
+				ErrorUtils.printError(TMSEG.class, "--pipe cannot be combined with --calibrate-prefilter, --capture or --slow-log", null);
+				
+				passed = false;
+			}
+		}
+		else if ((manifestPath != null ? 1 : 0) + (archivePath != null ? 1 : 0) + (watchPath != null ? 1 : 0) > 1)
+		{
+			ErrorUtils.printError(TMSEG.class, "Only one of --manifest, --archive and --watch can be set", null);
+			
+			passed = false;
+		}
+		else if (manifestPath != null)
+		{
+			passed = checkSource("--manifest", manifestPath, false);
+		}
+		else if (watchPath != null)
+		{
+			passed = checkSource("--watch", watchPath, true);
+			
+			if (capturePath != null)
+			{
+				ErrorUtils.printError(TMSEG.class, "--watch cannot be combined with --capture", null);
+				
+				passed = false;
+			}
+		}
+		else if (archivePath != null)
+		{
+			passed = checkSource("--archive", archivePath, false);
+			
+			if (!TarArchive.isArchive(archivePath))
+			{
+				ErrorUtils.printError(TMSEG.class, "Archive must be a .tar, .tar.gz or .tgz file", null);
+				
+				passed = false;
+			}
+		}
+		else
+		{
+			passed = checkPaths();
+		}
+		
+		if (journalPath != null && (doPipe || new File(journalPath).isDirectory() || !Double.isNaN(calibrationRecall)))
+		{
+			ErrorUtils.printError(TMSEG.class, "Journal path must be a file and cannot be combined with --pipe or --calibrate-prefilter", null);
+			
+			passed = false;
+		}
+		
+		if (quarantinePath != null && (new File(quarantinePath).isDirectory()))
+		{
+			ErrorUtils.printError(TMSEG.class, "Quarantine path is not a file", null);
+			
+			passed = false;
+		}
+		
+		if (maxFailureRate < 0 || maxFailureRate > 1)
+		{
+			ErrorUtils.printError(TMSEG.class, "Failure rate must be between 0 and 1", null);
+			
+			passed = false;
+		}
+		
+		if (doResume == true && journalPath == null)
+		{
+			ErrorUtils.printError(TMSEG.class, "--resume set, but --journal is not", null);
+			
+			passed = false;
+		}
+		
+		if (doResume == true && streamPath != null)
+		{
+			ErrorUtils.printError(TMSEG.class, "--resume cannot be combined with --stream (skipped proteins would be missing in the stream)", null);
+			
+			passed = false;
+		}
+		
+		if ((watchDonePath != null || watchThreads != 1) && watchPath == null)
+		{
+			ErrorUtils.printError(TMSEG.class, "--watch-done or --watch-threads set, but --watch is not", null);
+			
+			passed = false;
+		}
+		
+		if (watchThreads < 1)
+		{
+			ErrorUtils.printError(TMSEG.class, "Number of threads must be at least 1", null);
+			
+			passed = false;
+		}
+		
+		if ((doPipeRaw == true || doPipeFramed == true) && doPipe != true)
+		{
+			ErrorUtils.printError(TMSEG.class, "--pipe-raw or --pipe-framed set, but --pipe is not", null);
+			
+			passed = false;
+		}
+		
+		if (doTopology == true && doAdjust != true)
+		{
+			ErrorUtils.printError(TMSEG.class, "-t set, but -x is not", null);
+			
+			passed = false;
+		}
+		
+		if (doAudit == true && Double.isNaN(prefilterThreshold))
+		{
+			ErrorUtils.printError(TMSEG.class, "--prefilter-audit set, but --prefilter is not", null);
+			
+			passed = false;
+		}
+		
+		if (metricsPath != null && (new File(metricsPath).isDirectory()))
+		{
+			ErrorUtils.printError(TMSEG.class, "Metrics path is not a file", null);
+			
+			passed = false;
+		}
+		
+		if (profilePath != null && (new File(profilePath).isDirectory()))
+		{
+			ErrorUtils.printError(TMSEG.class, "Profile path is not a file", null);
+			
+			passed = false;
+		}
+		
+		if (slowLogPath != null && (new File(slowLogPath).isFile()))
+		{
+			ErrorUtils.printError(TMSEG.class, "Slow-log path is not a folder", null);
+			
+			passed = false;
+		}
+		
+		if (capturePath != null && (new File(capturePath).isFile()))
+		{
+			ErrorUtils.printError(TMSEG.class, "Capture path is not a folder", null);
+			
+			passed = false;
+		}
+		
+		if (slowMillis < 0)
+		{
+			ErrorUtils.printError(TMSEG.class, "Latency threshold must not be negative", null);
+			
+			passed = false;
+		}
+		
+		if (doGateCheck == true && doGate != true)
+		{
+			ErrorUtils.printError(TMSEG.class, "--refine-gate-verify set, but --refine-gate is not", null);
+			
+			passed = false;
+		}
+		
+		if (shadowFraction < 0 || shadowFraction > 1)
+		{
+			ErrorUtils.printError(TMSEG.class, "Shadow fraction must be between 0 and 1", null);
+			
+			passed = false;
+		}
+		
+		if (shadowFraction > 0 && doAdjust == true)
+		{
+			ErrorUtils.printError(TMSEG.class, "--shadow cannot be combined with -x", null);
+			
+			passed = false;
+		}
+		
+		if (shadowPath != null && shadowFraction <= 0)
+		{
+			ErrorUtils.printError(TMSEG.class, "--shadow-report set, but --shadow is not", null);
+			
+			passed = false;
+		}
+		
+		if (doRawBinary == true && outPathRaw == null && doPipeRaw != true)
 		{
-			ErrorUtils.printError(TMSEG.class, "Failed to parse input FASTA file: " + fastaFile, null);
+			ErrorUtils.printError(TMSEG.class, "--raw-binary set, but neither -r nor --pipe-raw is", null);
 			
-			return;
+			passed = false;
 		}
 		
-		//do standard prediction
-		if (!doAdjust)
+		if (streamPath != null && (new File(streamPath).isDirectory() || !StreamSink.isSupported(streamPath)))
 		{
-			doIndexing(protein);
-			doAdjustments(protein);
-			doTopology(protein);
+			ErrorUtils.printError(TMSEG.class, "Stream path must be a .tsv or .jsonl file (optionally .gz)", null);
 			
-			Processing.assignConfidence(protein);
+			passed = false;
 		}
-		//do post-processing only
-		else
+		
+		if ((doStreamRaw == true || doStreamTmp == true || streamRotate != 0) && streamPath == null)
 		{
-			protein.setPrediction(protein.getStructure());
-			
-			Processing.tmpCheck(protein);
-			
-			if (!doTopology) {doAdjustments(protein);}
+			ErrorUtils.printError(TMSEG.class, "--stream-raw, --stream-tmp-only or --stream-rotate set, but --stream is not", null);
 			
-			doTopology(protein);
+			passed = false;
 		}
 		
-		//write prediction files
-		if (outFile != null)
+		if (streamRotate < 0)
 		{
-			writeRefinedPrediction(protein, outFile);
+			ErrorUtils.printError(TMSEG.class, "Number of proteins per stream must not be negative", null);
+			
+			passed = false;
 		}
 		
-		if (outFileRaw != null)
+		if (samplingStep < 1)
 		{
-			writeRawPrediction(protein, outFileRaw);
+			ErrorUtils.printError(TMSEG.class, "Sampling step must be at least 1", null);
+			
+			passed = false;
 		}
-	}
-	
-	
-	private static void doIndexing(Protein protein)
-	{
-		helixIndexer.predict(protein);
-		
-		Processing.process(protein, false, 7, 185, 60, 0);
-	}
-	
-	
-	private static void doAdjustments(Protein protein)
-	{
-		Globals.PREDICTOR_HELIX_MIN_SIZE 	= 17;
-		Globals.PREDICTOR_MAX_SHIFT 		= 3;
-		Globals.PREDICTOR_GAP_MIN_SIZE 		= 1;
-		
-		helixPredictor.predict(protein, 0.0);
-		
-		Processing.tmpCheck(protein);
-	}
-	
-	
-	private static void doTopology(Protein protein)
-	{
-		topologyPredictor.predict(protein, 0.45);
-	}
-	
-	
-	private static void writeRefinedPrediction(Protein protein, String outFile)
-	{
-		int[] 	confidence 	= protein.getConfidence();
-		char[] 	sequence 	= protein.getSequence();
-		char[] 	prediction 	= protein.getPrediction();
-		
-		if (sequence == null || prediction == null) {return;}
 		
-		StringBuilder segments = new StringBuilder();
-		
-		segments.append("# SEGMENT\tSTART\tEND\tRI\n");
-		segments.append("##\n");
-		
-		for (int i = 0; i < prediction.length; ++i)
+		if (verifyFraction < 0 || verifyFraction > 1)
 		{
-			int 	start 	= i+1;
-			char 	type 	= prediction[i];
-			
-			while (i < prediction.length && prediction[i] == type) {++i;}
-			
-			--i;
+			ErrorUtils.printError(TMSEG.class, "Verify fraction must be between 0 and 1", null);
 			
-			int end = i+1;
-			int ss 	= Mappings.ssToInt(type);
-			int top = Mappings.topToInt(type);
-			
-			if (ss == Mappings.indexTmh)
-			{
-				int ri = -1; //RI=-1 if no prediction was made (i.e. adjustment-mode only)
-				
-				if (confidence != null) {ri = confidence[start];}
-				
-				segments.append("# TRANSMEM\t" + start + "\t" + end + "\t" + ri + "\n");
-			}
-			else if (ss == Mappings.indexLoop)
-			{
-				segments.append("# REENTRANT\t" + start + "\t" + end + "\n");
-			}
-			else if (ss == Mappings.indexSignal)
-			{
-				segments.append("# SIGNAL\t" + start + "\t" + end + "\n");
-			}
-			else if (ss == Mappings.indexNotTmh)
-			{
-				if (top == Mappings.indexInside)
-				{
-					segments.append("# INSIDE\t" + start + "\t" + end + "\n");
-				}
-				else if (top == Mappings.indexOutside)
-				{
-					segments.append("# OUTSIDE\t" + start + "\t" + end + "\n");
-				}
-				else
-				{
-					segments.append("# NON-MEM\t" + start + "\t" + end + "\n");
-				}
-			}
-			else
-			{
-				segments.append("# UNKNOWN\t" + start + "\t" + end + "\n");
-			}
+			passed = false;
 		}
 		
-		segments.append("##");
+		if (verifyFraction > 0 && samplingStep <= 1)
+		{
+			ErrorUtils.printError(TMSEG.class, "--sampling-verify set, but --sampling is not", null);
+			
+			passed = false;
+		}
 		
-		FWriter.openFile(outFile);
-		FWriter.writeLine(segments.toString());
-		FWriter.writeLine(protein.getHeader());
-		FWriter.writeLine(new String(sequence));
-		FWriter.writeLine(new String(prediction));
-		FWriter.closeFile();
+		return passed;
 	}
 	
 	
-	private static void writeRawPrediction(Protein protein, String outFileRaw)
+	/**
+	 * Checks the input file (or folder) and the output folders of --manifest,
+	 * --archive or --watch.
+	 * 
+	 * @param option
+	 * @param path
+	 * @param folder
+	 * @return
+	 */
+	private static boolean checkSource(String option, String path, boolean folder)
 	{
-		int 			topRaw 		= protein.getTopologyRaw();
-		int[] 			solRaw 		= protein.getSolRaw();
-		int[] 			tmhRaw 		= protein.getTmhRaw();
-		int[] 			sigRaw 		= protein.getSigRaw();
-		int[] 			segRaw 		= protein.getSegmentRaw();
-		char[] 			sequence 	= protein.getSequence();
-		char[] 			prediction 	= protein.getPrediction();
-		
-		if (sequence == null || prediction == null) {return;}
-		
-		StringBuilder output = new StringBuilder();
-		
-		output.append("# " + protein.getHeader() + "\n");
-		output.append("# SEQ\tSOL\tTMH\tSIG\tSEG\tTOP\tPRED\n");
+		boolean passed = true;
 		
-		for (int i = 0; i < sequence.length; ++i)
+		if (fastaPath != null || pssmPath != null || doMultiJob || !Double.isNaN(calibrationRecall))
 		{
-			output.append(sequence[i]);
-			output.append("\t");
-			
-			if (solRaw != null && solRaw[i] >= 0)
-			{
-				output.append(solRaw[i]/1000.0);
-				output.append("\t");
-			}
-			else
-			{
-				output.append('.');
-				output.append("\t");
-			}
-			
-			if (tmhRaw != null && tmhRaw[i] >= 0)
-			{
-				output.append(tmhRaw[i]/1000.0);
-				output.append("\t");
-			}
-			else
-			{
-				output.append('.');
-				output.append("\t");
-			}
-			
-			if (sigRaw != null && sigRaw[i] >= 0)
-			{
-				output.append(sigRaw[i]/1000.0);
-				output.append("\t");
-			}
-			else
-			{
-				output.append('.');
-				output.append("\t");
-			}
-			
-			if (segRaw != null && segRaw[i] >= 0)
-			{
-				output.append(segRaw[i]/1000.0);
-				output.append("\t");
-			}
-			else
-			{
-				output.append('.');
-				output.append("\t");
-			}
-			
-			if (i == 0 && topRaw >= 0)
-			{
-				output.append(topRaw/1000.0);
-				output.append("\t");
-			}
-			else
-			{
-				output.append('.');
-				output.append("\t");
-			}
+			ErrorUtils.printError(TMSEG.class, option + " cannot be combined with -i, -p, -m or --calibrate-prefilter", null);
 			
-			output.append(prediction[i]);
-			output.append("\n");
+			passed = false;
 		}
 		
-		FWriter.openFile(outFileRaw);
-		FWriter.write(output.toString());
-		FWriter.closeFile();
-	}
-	
-	
-	private static void loadPredictors()
-	{
-		helixIndexer 		= new HelixIndexer();
-		helixPredictor 		= new HelixPredictor();
-		topologyPredictor 	= new TopologyPredictor();
-		
-		helixIndexer.initialize();
-		helixPredictor.initialize();
-		topologyPredictor.initialize();
+		if (folder ? !(new File(path).isDirectory()) : !(new File(path).isFile()))
+		{
+			ErrorUtils.printError(TMSEG.class, "Could not find " + option.substring(2) + (folder ? " folder " : " file ") + path, null);
+			
+			passed = false;
+		}
 		
-		helixIndexer.loadModelFromFile(rootDir + "/models/hIndexer");
-		helixPredictor.loadModelFromFile(rootDir + "/models/hPredictor");
-		topologyPredictor.loadModelFromFile(rootDir + "/models/tPredictor");
-	}
-	
-	
-	private static boolean parseParams(String[] args)
-	{
-		if (args == null || args.length < 1) {return false;}
+		if (outPath == null && outPathRaw == null && streamPath == null)
+		{
+			ErrorUtils.printError(TMSEG.class, "Missing output folder", null);
+			
+			passed = false;
+		}
 		
-		int maxIndex = args.length - 1;
+		if (outPath != null && !(new File(outPath).isDirectory()))
+		{
+			ErrorUtils.printError(TMSEG.class, "Output path is not a folder", null);
+			
+			passed = false;
+		}
 		
-		for (int i = 0; i <= maxIndex; ++i)
+		if (outPathRaw != null && !(new File(outPathRaw).isDirectory()))
 		{
-			String param = args[i].trim();
-			String value = null;
+			ErrorUtils.printError(TMSEG.class, "Raw output path is not a folder", null);
 			
-			if (param.equalsIgnoreCase("-i"))
-			{
-				if (i == maxIndex) {break;}
-				
-				value = args[i+1].trim();
-				
-				if (value.startsWith("-")) {continue;}
-				
-				fastaPath = new File(value).getAbsolutePath();
-				
-				++i;
-			}
-			else if (param.equalsIgnoreCase("-p"))
-			{
-				if (i == maxIndex) {break;}
-				
-				value = args[i+1].trim();
-				
-				if (value.startsWith("-")) {continue;}
-				
-				pssmPath = new File(value).getAbsolutePath();
-				
-				++i;
-			}
-			else if (param.equalsIgnoreCase("-o"))
-			{
-				if (i == maxIndex) {break;}
-				
-				value = args[i+1].trim();
-				
-				if (value.startsWith("-")) {continue;}
-				
-				outPath = new File(value).getAbsolutePath();
-				
-				++i;
-			}
-			else if (param.equalsIgnoreCase("-r"))
-			{
-				if (i == maxIndex) {break;}
-				
-				value = args[i+1].trim();
-				
-				if (value.startsWith("-")) {continue;}
-				
-				outPathRaw = new File(value).getAbsolutePath();
-				
-				++i;
-			}
-			else if (param.equalsIgnoreCase("-m"))
-			{
-				doMultiJob = true;
-			}
-			else if (param.equalsIgnoreCase("-x"))
-			{
-				doAdjust = true;
-			}
-			else if (param.equalsIgnoreCase("-t"))
-			{
-				doTopology = true;
-			}
-			else
-			{
-				ErrorUtils.printError(TMSEG.class, "Unkown parameter: " + param, null);
-				
-				return false;
-			}
+			passed = false;
 		}
 		
-		return checkParams();
+		return passed;
 	}
 	
 	
-	private static boolean checkParams()
+	/**
+	 * Checks the input and output paths (all modes but --pipe, --manifest, --archive and --watch).
+	 * 
+	 * @return
+	 */
+	private static boolean checkPaths()
 	{
 		boolean passed = true;
 		
@@ -521,7 +2175,16 @@ public class TMSEG {
 			passed = false;
 		}
 		
-		if (outPath == null && outPathRaw == null)
+		if (!Double.isNaN(calibrationRecall))
+		{
+			if (calibrationRecall <= 0.0 || calibrationRecall > 1.0)
+			{
+				ErrorUtils.printError(TMSEG.class, "Recall target must be within (0, 1]", null);
+				
+				passed = false;
+			}
+		}
+		else if (outPath == null && outPathRaw == null && streamPath == null)
 		{
 			ErrorUtils.printError(TMSEG.class, "Missing output file/folder", null);
 			
@@ -560,13 +2223,6 @@ public class TMSEG {
 			}
 		}
 		
-		if (doTopology == true && doAdjust != true)
-		{
-			ErrorUtils.printError(TMSEG.class, "-t set, but -x is not", null);
-			
-			passed = false;
-		}
-		
 		return passed;
 	}
 	
@@ -575,12 +2231,6 @@ public class TMSEG {
 	{
 		File fasta 	= new File(fastaPath);
 		File pssm 	= new File(pssmPath);
-		File m1 	= new File(rootDir + "/models/hIndexer.model");
-		File m1Gz 	= new File(rootDir + "/models/hIndexer.model.gz");
-		File m2 	= new File(rootDir + "/models/hPredictor.model");
-		File m2Gz 	= new File(rootDir + "/models/hPredictor.model.gz");
-		File m3 	= new File(rootDir + "/models/tPredictor.model");
-		File m3Gz 	= new File(rootDir + "/models/tPredictor.model.gz");
 		
 		if (!fasta.exists())
 		{
@@ -596,6 +2246,19 @@ public class TMSEG {
 			return false;
 		}
 		
+		return checkModels();
+	}
+	
+	
+	static boolean checkModels()
+	{
+		File m1 	= new File(modelPath + "/hIndexer.model");
+		File m1Gz 	= new File(modelPath + "/hIndexer.model.gz");
+		File m2 	= new File(modelPath + "/hPredictor.model");
+		File m2Gz 	= new File(modelPath + "/hPredictor.model.gz");
+		File m3 	= new File(modelPath + "/tPredictor.model");
+		File m3Gz 	= new File(modelPath + "/tPredictor.model.gz");
+		
 		if (!m1.exists() && !m1Gz.exists())
 		{
 			ErrorUtils.printError(TMSEG.class, "Could not find HelixIndexer model file", null);
@@ -622,7 +2285,7 @@ public class TMSEG {
 	
 	
 	@SuppressWarnings("rawtypes")
-	private static boolean initRootDir(Class target)
+	static boolean initRootDir(Class target)
 	{
 		URL 	url 	= null;
 		String 	extURL 	= null;
@@ -692,7 +2355,93 @@ public class TMSEG {
 							"-r <path>      Output file/folder (raw prediction scores)\n" +
 							"-m FLAG        if set, do multi-job (interpret input/output paths as folders)\n" +
 							"-x FLAG        if set, a previous prediction is processed (must be supplied in FASTA file)\n" +
-							"-t FLAG        if set, only the topology prediction is performed (-x must be set)");
+							"-t FLAG        if set, only the topology prediction is performed (-x must be set)\n" +
+							"\n" +
+							"generate [options]             generate a synthetic FASTA/PSSM corpus and stand-in models (see: tmseg generate)\n" +
+							"bench [options]                measure throughput and latency over a corpus at increasing thread counts (see: tmseg bench)\n" +
+							"replay [options]               re-run a workload recorded with --capture and compare it with the recording (see: tmseg replay)\n" +
+							"raw [options]                  convert binary raw output files (--raw-binary) into the text format (see: tmseg raw)\n" +
+							"--models <path>                folder with the model files (default: models/ next to tmseg.jar)\n" +
+							"\n" +
+							"--prefilter <value>            skip proteins without a hydrophobic stretch above the threshold\n" +
+							"--prefilter-audit FLAG         if set, skipped proteins are still predicted to measure missed TMPs\n" +
+							"--calibrate-prefilter <value>  print the prefilter threshold for the given recall of annotated TMPs (-i in -x format)\n" +
+							"--sampling <value>             score only every k-th residue with the HelixIndexer and interpolate the rest\n" +
+							"--sampling-margin <value>      score densely wherever the scores are closer than this to a decision (permille, default 250)\n" +
+							"--sampling-verify <value>      compare sampled and dense predictions for this fraction of proteins and keep the dense one\n" +
+							"--refine-gate FLAG             if set, unambiguous TMHs are not refined by the HelixPredictor\n" +
+							"--refine-gate-verify FLAG      if set, compare gated and full refinement and keep the full one\n" +
+							"--pssm-off-heap FLAG           if set, keep the PSSM scores in direct buffers outside the Java heap\n" +
+							"--raw-binary FLAG              if set, the raw output (-r) is written in the compact binary format (.tmseg-rawb)\n" +
+							"--stream <path>                append all results to one .tsv or .jsonl file (.gz: compressed) with an offset index (<path>.idx)\n" +
+							"--stream-raw FLAG              if set, the raw prediction scores are streamed as well\n" +
+							"--stream-tmp-only FLAG         if set, only predicted transmembrane proteins are streamed\n" +
+							"--stream-rotate <value>        start a new stream file every n proteins (default 0: one file)\n" +
+							"--manifest <path>              read the inputs from a TSV file (FASTA file, PSSM file or '-' for a FASTA+PSSM bundle, output name)\n" +
+							"--archive <path>               read FASTA/PSSM pairs (same name, .fasta and .pssm) from a .tar or .tar.gz file\n" +
+							"--watch <path>                 keep running and predict the FASTA/PSSM pairs dropped into this folder\n" +
+							"--watch-done <path>            folder for processed inputs (default: done/ in the watched folder)\n" +
+							"--watch-threads <value>        number of worker threads in watch mode (default 1)\n" +
+							"--journal <path>               append every completed protein (input, checksum, output lengths) to this file\n" +
+							"--resume FLAG                  if set, skip proteins completed according to the journal with unchanged inputs and outputs\n" +
+							"--quarantine <path>            write the failed proteins (protein, input, stage, message) as TSV, the run continues\n" +
+							"--max-failure-rate <value>     abort the run if more than this fraction of the proteins failed (after 100 proteins)\n" +
+							"--pipe FLAG                    if set, read FASTA+PSSM records from stdin and write each result to stdout (no -i/-p/-o/-r)\n" +
+							"--pipe-raw FLAG                if set, the raw prediction scores are written to stdout instead of the prediction\n" +
+							"--pipe-framed FLAG             if set, stdin is read as length-prefixed binary frames instead of text\n" +
+							"--metrics <path>               write per-stage timings and throughput (.prom: Prometheus text, else JSON)\n" +
+							"--profile <path>               write the cost profile of each protein (stage times, classifier evaluations, rounds) as TSV\n" +
+							"--slow-log <path>              copy FASTA/PSSM files and profiles of proteins above the latency threshold into this folder\n" +
+							"--slow-ms <value>              latency threshold for --slow-log in milliseconds (default 1000)\n" +
+							"--capture <path>               record the workload (input files, arrival times, latencies, outputs) for tmseg replay\n" +
+							"--shadow <value>               compare this fraction of proteins with the reference path (dense, ungated, unfiltered) in the background\n" +
+							"--shadow-report <path>         write the shadow divergence counters and example differences");
+	}
+
+	
+	
+	/**
+	 * The predictors used by one thread. The copies share the models, but
+	 * each has its own counters.
+	 */
+	private static class Predictors {
+		
+		
+		private HelixIndexer 		indexer 	= null;
+		private HelixIndexer 		verifier 	= null; //dense indexing to verify the sampling
+		private HelixPredictor 		predictor 	= null;
+		private HelixPredictor 		checker 	= null; //full refinement to verify the refinement gate
+		private TopologyPredictor 	topology 	= null;
+		
+		
+		public Predictors(HelixIndexer indexer, HelixPredictor predictor, TopologyPredictor topology, boolean verify, boolean check)
+		{
+			this.indexer 	= indexer;
+			this.predictor 	= predictor;
+			this.topology 	= topology;
+			
+			//separate instances for the checks, so that their work is not counted as sampled or gated
+			if (verify) {this.verifier = indexer.copy();}
+			
+			if (check)
+			{
+				this.checker = predictor.copy();
+				
+				this.checker.setReference(true);
+			}
+		}
+		
+		
+		/**
+		 * Creates the predictors for another thread.
+		 * 
+		 * @return
+		 */
+		public Predictors copy()
+		{
+			return new Predictors(this.indexer.copy(), this.predictor.copy(), this.topology.copy(), this.verifier != null, this.checker != null);
+		}
+	
 	}
 
 }
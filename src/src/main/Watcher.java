@@ -0,0 +1,301 @@
+//    <TMSEG: Prediction of Transmembrane Helices in Proteins.>
+//    Copyright (C) 2014  Michael Bernhofer
+//
+//    This program is free software: you can redistribute it and/or modify
+//    it under the terms of the GNU General Public License as published by
+//    the Free Software Foundation, either version 3 of the License, or
+//    (at your option) any later version.
+//
+//    This program is distributed in the hope that it will be useful,
+//    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//    GNU General Public License for more details.
+//
+//    You should have received a copy of the GNU General Public License
+//    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package main;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import util.ErrorUtils;
+import util.Globals;
+
+
+/**
+ * Watch-folder mode: predicts the FASTA/PSSM pairs (name.fasta and name.pssm)
+ * dropped into a spool folder on a pool of worker threads and moves the inputs
+ * into a done folder (or its subfolder failed/). A pair is picked up once both
+ * files exist and neither changed for the settle time, so files still being
+ * written are not read. Runs until the process is terminated; the queued
+ * predictions are finished first.
+ */
+public class Watcher {
+	
+	
+	private Path 					spool 		= null;
+	private Path 					done 		= null;
+	private Path 					failed 		= null;
+	private int 					threads 	= 1;
+	private long 					settleNanos = 0;
+	
+	private Map<String, Long> 		pending 	= new LinkedHashMap<String, Long>(); //name -> time of the last change
+	private Set<String> 			running 	= Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	private volatile boolean 		stopped 	= false;
+	private AtomicLong 				predicted 	= new AtomicLong();
+	private AtomicLong 				errors 		= new AtomicLong();
+	
+	
+	public Watcher(String spool, String done, int threads)
+	{
+		this.spool 			= Paths.get(spool);
+		this.done 			= Paths.get(done);
+		this.failed 		= this.done.resolve("failed");
+		this.threads 		= threads;
+		this.settleNanos 	= Globals.WATCH_SETTLE_MILLIS * 1000000L;
+	}
+	
+	
+	/**
+	 * Watches the spool folder until the process is terminated.
+	 * 
+	 * @return
+	 */
+	public boolean run()
+	{
+		ExecutorService pool 		= Executors.newFixedThreadPool(this.threads);
+		final Thread 	mainThread 	= Thread.currentThread();
+		WatchService 	watcher 	= null;
+		
+		try
+		{
+			Files.createDirectories(this.failed);
+			
+			watcher = FileSystems.getDefault().newWatchService();
+			
+			this.spool.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+		}
+		catch (IOException e)
+		{
+			ErrorUtils.printError(Watcher.class, "Failed to watch " + this.spool, e);
+			
+			pool.shutdown();
+			
+			return false;
+		}
+		
+		//on termination, stop watching and wait until the running predictions are written
+		Runtime.getRuntime().addShutdownHook(new Thread()
+		{
+			@Override
+			public void run()
+			{
+				stopped = true;
+				
+				try
+				{
+					mainThread.join();
+				}
+				catch (InterruptedException e)
+				{
+					//do nothing
+				}
+			}
+		});
+		
+		System.out.println("Watching:             " + this.spool + " (done: " + this.done + ")");
+		
+		//files dropped before the start
+		this.scan();
+		
+		while (!this.stopped && !TMSEG.isAborted())
+		{
+			WatchKey key = null;
+			
+			try
+			{
+				key = watcher.poll(Math.max(10, Globals.WATCH_SETTLE_MILLIS / 4), TimeUnit.MILLISECONDS);
+			}
+			catch (InterruptedException e)
+			{
+				break;
+			}
+			
+			if (key != null)
+			{
+				for (WatchEvent<?> event : key.pollEvents())
+				{
+					if (event.kind() == StandardWatchEventKinds.OVERFLOW) 	{this.scan();}
+					else 													{this.touch(((Path)event.context()).getFileName().toString());}
+				}
+				
+				if (!key.reset())
+				{
+					ErrorUtils.printError(Watcher.class, "Spool folder is no longer accessible: " + this.spool, null);
+					
+					break;
+				}
+			}
+			
+			this.submitReady(pool);
+		}
+		
+		pool.shutdown();
+		
+		try
+		{
+			watcher.close();
+			
+			pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		}
+		catch (IOException e)
+		{
+			//do nothing
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		
+		System.out.println("Watch predictions:    " + this.predicted.get() + " (" + this.errors.get() + " failed, " + this.pending.size() + " incomplete pairs left)");
+		
+		return true;
+	}
+	
+	
+	/**
+	 * Adds all FASTA and PSSM files in the spool folder.
+	 */
+	private void scan()
+	{
+		DirectoryStream<Path> files = null;
+		
+		try
+		{
+			files = Files.newDirectoryStream(this.spool);
+			
+			for (Path file : files) {this.touch(file.getFileName().toString());}
+		}
+		catch (IOException e)
+		{
+			ErrorUtils.printError(Watcher.class, "Failed to list " + this.spool, e);
+		}
+		finally
+		{
+			try
+			{
+				if (files != null) {files.close();}
+			}
+			catch (IOException e)
+			{
+				//do nothing
+			}
+		}
+	}
+	
+	
+	private void touch(String filename)
+	{
+		if (filename.endsWith(".fasta")) 		{this.pending.put(filename.substring(0, filename.length() - 6), System.nanoTime());}
+		else if (filename.endsWith(".pssm")) 	{this.pending.put(filename.substring(0, filename.length() - 5), System.nanoTime());}
+	}
+	
+	
+	/**
+	 * Submits all pairs that are complete and did not change for the settle time.
+	 * 
+	 * @param pool
+	 */
+	private void submitReady(ExecutorService pool)
+	{
+		long now = System.nanoTime();
+		
+		for (Iterator<Map.Entry<String, Long>> iterator = this.pending.entrySet().iterator(); iterator.hasNext(); )
+		{
+			Map.Entry<String, Long> entry = iterator.next();
+			
+			if (now - entry.getValue() < this.settleNanos || this.running.contains(entry.getKey())) {continue;}
+			
+			final String 	name 		= entry.getKey();
+			final Path 		fasta 		= this.spool.resolve(name + ".fasta");
+			final Path 		pssm 		= this.spool.resolve(name + ".pssm");
+			boolean 		hasFasta 	= Files.isRegularFile(fasta);
+			boolean 		hasPssm 	= Files.isRegularFile(pssm);
+			
+			//wait for the partner, forget pairs that were removed
+			if (hasFasta != hasPssm) {continue;}
+			
+			iterator.remove();
+			
+			if (!hasFasta) {continue;}
+			
+			this.running.add(name);
+			
+			pool.execute(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					boolean success = false;
+					
+					//an unexpected exception fails the pair, the watcher keeps running
+					try
+					{
+						TMSEG.initWorker();
+						
+						success = TMSEG.doPrediction(fasta.toString(), pssm.toString(), TMSEG.outputFile(name), TMSEG.rawOutputFile(name));
+					}
+					catch (RuntimeException e)
+					{
+						ErrorUtils.printError(Watcher.class, "Prediction failed for " + name, e);
+					}
+					finally
+					{
+						if (success) 	{predicted.incrementAndGet();}
+						else 			{errors.incrementAndGet();}
+						
+						move(fasta, success ? done : failed);
+						move(pssm, success ? done : failed);
+						
+						running.remove(name);
+					}
+				}
+			});
+		}
+	}
+	
+	
+	private void move(Path file, Path folder)
+	{
+		try
+		{
+			Files.move(file, folder.resolve(file.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+		}
+		catch (IOException e)
+		{
+			ErrorUtils.printError(Watcher.class, "Failed to move " + file + " to " + folder, e);
+		}
+	}
+
+}
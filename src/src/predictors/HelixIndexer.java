@@ -56,6 +56,10 @@ public class HelixIndexer {
 	private double[] 				globalConsAa 	= null;
 	private double[] 				globalNonConsAa = null;
 	
+	private long 					windowsTotal 	= 0;
+	private long 					windowsScored 	= 0;
+	private boolean 				reference 		= false;
+	
 	
 	public HelixIndexer()
 	{
@@ -135,6 +139,23 @@ public class HelixIndexer {
 	}
 	
 	
+	/**
+	 * Creates a predictor for another thread. The random forest is not
+	 * modified during prediction and is shared with the copy.
+	 * 
+	 * @return
+	 */
+	public HelixIndexer copy()
+	{
+		HelixIndexer copy = new HelixIndexer();
+		
+		copy.classifier = this.classifier;
+		copy.isTrained 	= this.isTrained;
+		
+		return copy;
+	}
+	
+	
 	/**
 	 * Inputs a given list of proteins for the training data.
 	 * 
@@ -162,7 +183,7 @@ public class HelixIndexer {
 		
 		Pssm 	pssm 		= protein.getPssm();
 		int 	length 		= pssm.getLength();
-		char[] 	structure 	= protein.getStructure();
+		byte[] 	structure 	= protein.getStructure();
 		
 		if (pssm.getLength() != structure.length)
 		{
@@ -175,7 +196,7 @@ public class HelixIndexer {
 		
 		for (int i = 0; i < length; ++i)
 		{
-			if (Mappings.ssToInt(structure[i]) != Mappings.indexUnknown)
+			if (Mappings.ssOf(structure[i]) != Mappings.indexUnknown)
 			{
 				this.addWindowToDatabase(pssm, i, structure);
 			}
@@ -198,11 +219,26 @@ public class HelixIndexer {
 	
 	
 	/**
-	 * Predicts transmembrane residues for a given protein.
+	 * Predicts transmembrane residues for a given protein
+	 * with the configured sampling step.
 	 * 
 	 * @param protein
 	 */
 	public void predict(Protein protein)
+	{
+		this.predict(protein, this.reference ? 1 : Globals.INDEXER_SAMPLING_STEP);
+	}
+	
+	
+	/**
+	 * Predicts transmembrane residues for a given protein scoring
+	 * only every step-th residue (1 scores every residue).
+	 * A classifier error is thrown as an IllegalStateException.
+	 * 
+	 * @param protein
+	 * @param step
+	 */
+	public void predict(Protein protein, int step)
 	{
 		if (protein == null || protein.getPssm() == null) {return;}
 		
@@ -211,41 +247,40 @@ public class HelixIndexer {
 		int[] 		scoresSol 	= new int[length];
 		int[] 		scoresTmh 	= new int[length];
 		int[] 		scoresSig 	= new int[length];
+		boolean[] 	scored 		= new boolean[length];
 		
 		this.globalComposition(pssm);
 		
-		//slide window along the sequence
-		for (int i = 0; i < length; ++i)
+		try
 		{
-			try
+			step = Math.max(1, step);
+			
+			//slide window along the sequence (only every step-th residue if sampling is enabled)
+			for (int i = 0; i < length; i += step)
 			{
-				Instance window = this.buildInstance(pssm, i);
-				
-				window.isMissing((Attribute)this.attributes.get(this.attributes.size()-1));
-				window.setDataset(this.dataset);
-				
-				double[] probabilities = this.classifier.distributionForInstance(window);
+				this.scoreWindow(pssm, i, scoresSol, scoresTmh, scoresSig);
 				
-				if (i < 40)
-				{
-					scoresSol[i] = (int)(1000 * probabilities[HelixIndexer.indexNotTmh]);
-					scoresTmh[i] = (int)(1000 * probabilities[HelixIndexer.indexTmh]);
-					scoresSig[i] = (int)(1000 * probabilities[HelixIndexer.indexSignal]);
-				}
-				else
-				{
-					scoresSol[i] = (int)(1000 * probabilities[HelixIndexer.indexNotTmh]);
-					scoresTmh[i] = (int)(1000 * probabilities[HelixIndexer.indexTmh]);
-					scoresSig[i] = 0;
-				}
+				scored[i] = true;
 			}
-			catch (Exception e)
+			
+			if (step > 1 && length > 0)
 			{
-				ErrorUtils.printError(HelixIndexer.class, "Prediction failed for " + protein.getHeader(), e);
+				if (!scored[length-1])
+				{
+					this.scoreWindow(pssm, length-1, scoresSol, scoresTmh, scoresSig);
+					
+					scored[length-1] = true;
+				}
 				
-				return;
+				this.refineSampling(pssm, scored, scoresSol, scoresTmh, scoresSig);
 			}
 		}
+		catch (Exception e)
+		{
+			throw new IllegalStateException("Prediction failed for " + protein.getHeader(), e);
+		}
+		
+		this.windowsTotal += length;
 		
 		//save scores into the protein
 		protein.setSolRaw(scoresSol);
@@ -254,6 +289,184 @@ public class HelixIndexer {
 	}
 	
 	
+	/**
+	 * Predicts the scores of a single window and saves them into the score arrays.
+	 * 
+	 * @param pssm
+	 * @param i
+	 * @param scoresSol
+	 * @param scoresTmh
+	 * @param scoresSig
+	 * @throws Exception
+	 */
+	private void scoreWindow(Pssm pssm, int i, int[] scoresSol, int[] scoresTmh, int[] scoresSig) throws Exception
+	{
+		Instance window = this.buildInstance(pssm, i);
+		
+		window.isMissing((Attribute)this.attributes.get(this.attributes.size()-1));
+		window.setDataset(this.dataset);
+		
+		double[] probabilities = this.classifier.distributionForInstance(window);
+		
+		if (i < 40)
+		{
+			scoresSol[i] = (int)(1000 * probabilities[HelixIndexer.indexNotTmh]);
+			scoresTmh[i] = (int)(1000 * probabilities[HelixIndexer.indexTmh]);
+			scoresSig[i] = (int)(1000 * probabilities[HelixIndexer.indexSignal]);
+		}
+		else
+		{
+			scoresSol[i] = (int)(1000 * probabilities[HelixIndexer.indexNotTmh]);
+			scoresTmh[i] = (int)(1000 * probabilities[HelixIndexer.indexTmh]);
+			scoresSig[i] = 0;
+		}
+		
+		++this.windowsScored;
+	}
+	
+	
+	/**
+	 * Interpolates the scores between sampled windows and scores all windows
+	 * of a gap densely if the gap contains a class transition or if any score
+	 * comes close to the decision thresholds of the post-processing.
+	 * 
+	 * @param pssm
+	 * @param scored
+	 * @param scoresSol
+	 * @param scoresTmh
+	 * @param scoresSig
+	 * @throws Exception
+	 */
+	private void refineSampling(Pssm pssm, boolean[] scored, int[] scoresSol, int[] scoresTmh, int[] scoresSig) throws Exception
+	{
+		int prev = 0;
+		
+		for (int next = 1; next < scored.length; ++next)
+		{
+			if (!scored[next]) {continue;}
+			
+			if (next - prev > 1)
+			{
+				boolean ambiguous = classOf(scoresSol[prev], scoresTmh[prev], scoresSig[prev]) != classOf(scoresSol[next], scoresTmh[next], scoresSig[next]);
+				
+				for (int j = prev+1; j < next; ++j)
+				{
+					scoresSol[j] = interpolate(scoresSol, prev, next, j);
+					scoresTmh[j] = interpolate(scoresTmh, prev, next, j);
+					scoresSig[j] = j < 40 ? interpolate(scoresSig, prev, next, j) : 0;
+				}
+				
+				for (int j = prev; j <= next && !ambiguous; ++j)
+				{
+					ambiguous = marginOf(scoresSol[j], scoresTmh[j], scoresSig[j]) < Globals.INDEXER_SAMPLING_MARGIN;
+				}
+				
+				if (ambiguous)
+				{
+					for (int j = prev+1; j < next; ++j)
+					{
+						this.scoreWindow(pssm, j, scoresSol, scoresTmh, scoresSig);
+						
+						scored[j] = true;
+					}
+				}
+			}
+			
+			prev = next;
+		}
+	}
+	
+	
+	/**
+	 * Linear interpolation of the scores between two sampled windows.
+	 * 
+	 * @param scores
+	 * @param prev
+	 * @param next
+	 * @param pos
+	 * @return
+	 */
+	private static int interpolate(int[] scores, int prev, int next, int pos)
+	{
+		return scores[prev] + ((scores[next] - scores[prev]) * (pos - prev)) / (next - prev);
+	}
+	
+	
+	/**
+	 * Returns the class the post-processing would assign to the given scores.
+	 * 
+	 * @param sol
+	 * @param tmh
+	 * @param sig
+	 * @return
+	 */
+	private static int classOf(int sol, int tmh, int sig)
+	{
+		int sSol = sol - Globals.PROCESSING_WEIGHT_SOL;
+		int sTmh = tmh - Globals.PROCESSING_WEIGHT_TMH;
+		int sSig = sig - Globals.PROCESSING_WEIGHT_SIG;
+		
+		if (sSol >= sTmh && sSol >= sSig) 	{return HelixIndexer.indexNotTmh;}
+		else if (sTmh >= sSig) 				{return HelixIndexer.indexTmh;}
+		else 								{return HelixIndexer.indexSignal;}
+	}
+	
+	
+	/**
+	 * Returns the distance between the best and second best weighted score.
+	 * 
+	 * @param sol
+	 * @param tmh
+	 * @param sig
+	 * @return
+	 */
+	private static int marginOf(int sol, int tmh, int sig)
+	{
+		int sSol = sol - Globals.PROCESSING_WEIGHT_SOL;
+		int sTmh = tmh - Globals.PROCESSING_WEIGHT_TMH;
+		int sSig = sig - Globals.PROCESSING_WEIGHT_SIG;
+		
+		int best 	= Math.max(sSol, Math.max(sTmh, sSig));
+		int second 	= Math.max(Math.min(sSol, sTmh), Math.min(Math.max(sSol, sTmh), sSig));
+		
+		return best - second;
+	}
+	
+	
+	/**
+	 * If set, every residue is scored regardless of the sampling step
+	 * (reference predictions for shadow checks).
+	 * 
+	 * @param reference
+	 */
+	public void setReference(boolean reference)
+	{
+		this.reference = reference;
+	}
+	
+	
+	/**
+	 * Returns the number of windows scored by the classifier.
+	 * 
+	 * @return
+	 */
+	public long getWindowsScored()
+	{
+		return this.windowsScored;
+	}
+	
+	
+	/**
+	 * Returns the number of windows of all predicted proteins.
+	 * 
+	 * @return
+	 */
+	public long getWindowsTotal()
+	{
+		return this.windowsTotal;
+	}
+	
+	
 	/**
 	 * Analyzes a given window and saves it in the database.
 	 * 
@@ -261,9 +474,9 @@ public class HelixIndexer {
 	 * @param windowCenter
 	 * @param structure
 	 */
-	private void addWindowToDatabase(Pssm pssm, int windowCenter, char[] structure)
+	private void addWindowToDatabase(Pssm pssm, int windowCenter, byte[] structure)
 	{
-		int 		index 	= Mappings.ssToInt(structure[windowCenter]);
+		int 		index 	= Mappings.ssOf(structure[windowCenter]);
 		Instance 	window 	= this.buildInstance(pssm, windowCenter);
 		
 		if 		(index == Mappings.indexTmh) 	{index = HelixIndexer.indexTmh;}
@@ -291,21 +504,14 @@ public class HelixIndexer {
 		
 		for (int i = 0; i < pssm.getLength(); ++i)
 		{
-			for (int j = 0; j < 20; ++j)
-			{
-				int score = pssm.getScore(i, j);
-				
-				if (score > 0)
-				{
-					++globalConserved[j];
-					++conserved;
-				}
-				else if (score < 0)
-				{
-					++globalNonConserved[j];
-					++nonConserved;
-				}
-			}
+			int cons 	= pssm.getConserved(i);
+			int nonCons = pssm.getNonConserved(i);
+			
+			for (int bits = cons; bits != 0; bits &= bits - 1) 		{++globalConserved[Integer.numberOfTrailingZeros(bits)];}
+			for (int bits = nonCons; bits != 0; bits &= bits - 1) 	{++globalNonConserved[Integer.numberOfTrailingZeros(bits)];}
+			
+			conserved 		+= Integer.bitCount(cons);
+			nonConserved 	+= Integer.bitCount(nonCons);
 		}
 		
 		for (int i = 0; i < 20; ++i)
@@ -326,7 +532,7 @@ public class HelixIndexer {
 	 * @param windowCenter
 	 * @return
 	 */
-	private Instance buildInstance(Pssm pssm, int windowCenter)
+	Instance buildInstance(Pssm pssm, int windowCenter)
 	{
 		SparseInstance 	window 			= new SparseInstance(this.attributes.size());
 		int 			windowStart 	= windowCenter - Globals.INDEXER_WINDOW_SIZE;
@@ -355,40 +561,32 @@ public class HelixIndexer {
 			{
 				for (int j = 0; j < 20; ++j)
 				{
-					int score = pssm.getScore(i, j);
-					
-					if (Math.abs(i - windowCenter) <= Globals.INDEXER_INNER_WINDOW_SIZE)
-					{
-						char aa = Mappings.intToAa(j);
-						
-						if (score > 0)
-						{
-							consAvgHydro += Mappings.hydrophobicity(aa);
-
-							if (Mappings.hydrophobicity(aa) > 0) 	{++consHydro;}
-							if (Mappings.charge(aa) > 0) 			{++consPCharged;}
-							if (Mappings.charge(aa) < 0) 			{++consNCharged;}
-							if (Mappings.polarity(aa) > 0) 			{++consPolar;}
-							
-							++conserved;
-						}
-						else if (score < 0)
-						{
-							nonConsAvgHydro += Mappings.hydrophobicity(aa);
-							
-							if (Mappings.hydrophobicity(aa) > 0) 	{++nonConsHydro;}
-							if (Mappings.charge(aa) > 0) 			{++nonConsPCharged;}
-							if (Mappings.charge(aa) < 0) 			{++nonConsNCharged;}
-							if (Mappings.polarity(aa) > 0) 			{++nonConsPolar;}
-							
-							++nonConserved;
-						}
-					}
-					
-					window.setValue((Attribute)this.attributes.get(attIndex++), score);
+					window.setValue((Attribute)this.attributes.get(attIndex++), pssm.getScore(i, j));
 				}
 				
 				window.setValue((Attribute)this.attributes.get(attIndex++), -10);
+				
+				if (Math.abs(i - windowCenter) <= Globals.INDEXER_INNER_WINDOW_SIZE)
+				{
+					int cons 	= pssm.getConserved(i);
+					int nonCons = pssm.getNonConserved(i);
+					
+					//sum up in the order of the amino acids to keep the rounding of the averages
+					for (int bits = cons; bits != 0; bits &= bits - 1) 		{consAvgHydro 		+= Mappings.hydrophobicityOf(Integer.numberOfTrailingZeros(bits));}
+					for (int bits = nonCons; bits != 0; bits &= bits - 1) 	{nonConsAvgHydro 	+= Mappings.hydrophobicityOf(Integer.numberOfTrailingZeros(bits));}
+					
+					consHydro 		+= Integer.bitCount(cons & Mappings.maskHydrophobic);
+					consPCharged 	+= Integer.bitCount(cons & Mappings.maskPositive);
+					consNCharged 	+= Integer.bitCount(cons & Mappings.maskNegative);
+					consPolar 		+= Integer.bitCount(cons & Mappings.maskPolar);
+					conserved 		+= Integer.bitCount(cons);
+					
+					nonConsHydro 	+= Integer.bitCount(nonCons & Mappings.maskHydrophobic);
+					nonConsPCharged += Integer.bitCount(nonCons & Mappings.maskPositive);
+					nonConsNCharged += Integer.bitCount(nonCons & Mappings.maskNegative);
+					nonConsPolar 	+= Integer.bitCount(nonCons & Mappings.maskPolar);
+					nonConserved 	+= Integer.bitCount(nonCons);
+				}
 			}
 			else
 			{
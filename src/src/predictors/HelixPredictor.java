@@ -21,12 +21,15 @@ import io.ModelHandler;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
 
 import util.ErrorUtils;
+import util.Events;
 import util.Globals;
 import util.Mappings;
+import weka.classifiers.AbstractClassifier;
 import weka.classifiers.Classifier;
 import weka.classifiers.functions.MultilayerPerceptron;
 import weka.core.Attribute;
@@ -36,6 +39,7 @@ import weka.core.SparseInstance;
 import weka.core.converters.ArffSaver;
 import data.Protein;
 import data.Pssm;
+import data.SegmentIndex;
 
 
 /**
@@ -49,6 +53,15 @@ public class HelixPredictor {
 	private Classifier 				classifier 		= null;
 	private boolean 				isTrained 		= false;
 	
+	private long 					helicesChecked 	= 0;
+	private long 					helicesSkipped 	= 0;
+	private long 					evaluations 	= 0;
+	
+	private long 					splitEvaluations 	= 0;
+	private long 					adjustEvaluations 	= 0;
+	private long 					rounds 				= 0;
+	private boolean 				reference 			= false;
+	
 	
 	public HelixPredictor()
 	{
@@ -109,6 +122,30 @@ public class HelixPredictor {
 	}
 	
 	
+	/**
+	 * Creates a predictor for another thread. The neural network keeps
+	 * intermediate values during prediction, so the copy gets its own network.
+	 * 
+	 * @return
+	 */
+	public HelixPredictor copy()
+	{
+		HelixPredictor copy = new HelixPredictor();
+		
+		try
+		{
+			copy.classifier = this.classifier != null ? AbstractClassifier.makeCopy(this.classifier) : null;
+			copy.isTrained 	= this.isTrained;
+		}
+		catch (Exception e)
+		{
+			ErrorUtils.printError(HelixPredictor.class, "Failed to copy the model", e);
+		}
+		
+		return copy;
+	}
+	
+	
 	/**
 	 * Inputs a given list of proteins for the training data.
 	 * 
@@ -135,16 +172,16 @@ public class HelixPredictor {
 		if (protein.getPssm() == null) 		{return;}
 		
 		Pssm 	pssm 		= protein.getPssm();
-		char[] 	structure 	= protein.getStructure();
+		byte[] 	structure 	= protein.getStructure();
 		
-		char 	type 	= Mappings.intToSs(Mappings.defaultValue);
+		byte 	type 	= Mappings.encodeState('X');
 		int 	start 	= 0;
 		int 	end 	= 0;
 		
 		for (int i = 0; i < structure.length; ++i)
 		{
 			//find consecutive transmembrane helices and non-transmembrane regions
-			if (Mappings.ssToInt(structure[i]) == Mappings.indexTmh)
+			if (Mappings.ssOf(structure[i]) == Mappings.indexTmh)
 			{
 				start 	= i;
 				type 	= structure[i];
@@ -187,7 +224,7 @@ public class HelixPredictor {
 					this.addSegmentToDatabse(pssm, start-6, end-6, Mappings.indexNotTmh);
 				}
 			}
-			else if (Mappings.ssToInt(structure[i]) != Mappings.indexUnknown)
+			else if (Mappings.ssOf(structure[i]) != Mappings.indexUnknown)
 			{
 				start 	= i;
 				type 	= structure[i];
@@ -225,7 +262,8 @@ public class HelixPredictor {
 	
 	/**
 	 * Analyzes and optimizes predicted transmembrane helices
-	 * within a given protein.
+	 * within a given protein. Throws an IllegalStateException
+	 * if a segment cannot be classified.
 	 * 
 	 * @param protein
 	 * @param cutoff
@@ -241,17 +279,87 @@ public class HelixPredictor {
 		
 		if (protein.getSegmentRaw() == null) {protein.setSegmentRaw(new int[protein.getPrediction().length]);}
 		
+		this.refine(protein, cutoff);
+		
+		this.countGate(protein);
+	}
+	
+	
+	/**
+	 * Splits and adjusts the TMHs of a protein for up to seven rounds.
+	 * 
+	 * @param protein
+	 * @param cutoff
+	 */
+	private void refine(Protein protein, double cutoff)
+	{
+		Events.Refinement 	event 		= this.beginRound();
+		long 				evaluations = this.getEvaluations();
+		
 		this.splitTMHs(protein, cutoff);
 		this.adjustTMHs(protein, cutoff);
 		
+		this.commitRound(event, protein, 0, evaluations);
+		
 		for (int i = 0; i < 5; ++i)
 		{
+			event 		= this.beginRound();
+			evaluations = this.getEvaluations();
+			
 			//continue for up to five additional rounds (only adjust after splitting)
-			if (!this.splitTMHs(protein, cutoff) || !this.adjustTMHs(protein, cutoff)) {return;}
+			boolean changed = this.splitTMHs(protein, cutoff) && this.adjustTMHs(protein, cutoff);
+			
+			this.commitRound(event, protein, i+1, evaluations);
+			
+			if (!changed) {return;}
 		}
 		
+		event 		= this.beginRound();
+		evaluations = this.getEvaluations();
+		
 		//final split
 		this.splitTMHs(protein, cutoff);
+		
+		this.commitRound(event, protein, 6, evaluations);
+	}
+	
+	
+	private Events.Refinement beginRound()
+	{
+		Events.Refinement event = new Events.Refinement();
+		
+		++this.rounds;
+		
+		event.begin();
+		
+		return event;
+	}
+	
+	
+	/**
+	 * Commits the flight recorder event of a refinement round with the
+	 * resulting number of TMHs and the classifier evaluations of the round.
+	 * 
+	 * @param event
+	 * @param protein
+	 * @param round
+	 * @param evaluations
+	 */
+	private void commitRound(Events.Refinement event, Protein protein, int round, long evaluations)
+	{
+		if (!event.isEnabled()) {return;}
+		
+		SegmentIndex 	segments 	= protein.getSegments();
+		int 			helices 	= 0;
+		
+		for (int k = 0; k < segments.size(); ++k)
+		{
+			if (Mappings.ssOf(segments.getType(k)) == Mappings.indexTmh) {++helices;}
+		}
+		
+		event.setProtein(protein);
+		event.setRound(round, helices, this.getEvaluations() - evaluations);
+		event.commit();
 	}
 	
 	
@@ -262,29 +370,24 @@ public class HelixPredictor {
 	 * @param cutoff
 	 * @return
 	 */
-	private boolean adjustTMHs(Protein protein, double cutoff)
+	boolean adjustTMHs(Protein protein, double cutoff)
 	{
-		boolean adjust 		= false;
-		Pssm 	pssm 		= protein.getPssm();
-		char[] 	structure 	= protein.getPrediction();
-		int[] 	segmentRaw 	= protein.getSegmentRaw();
+		boolean 		adjust 		= false;
+		Pssm 			pssm 		= protein.getPssm();
+		SegmentIndex 	segments 	= protein.getSegments();
+		int 			length 		= protein.getLength();
+		int[] 			segmentRaw 	= protein.getSegmentRaw();
 		
-		for (int i = 0; i < structure.length; ++i)
+		for (int pos = 0; pos < length; )
 		{
+			int k 		= segments.indexOf(pos);
+			int start 	= pos;
+			int end 	= segments.getEnd(k);
+			
 			try
 			{
-				if (Mappings.ssToInt(structure[i]) == Mappings.indexTmh)
+				if (Mappings.ssOf(segments.getType(k)) == Mappings.indexTmh)
 				{
-					int 	start 	= i;
-					char 	type 	= structure[i];
-					
-					//go to end of transmembrane helix
-					while (i < structure.length && structure[i] == type) {++i;}
-					
-					--i;
-					
-					int end = i;
-					
 					Instance window = this.buildInstance(pssm, start, end);
 					
 					window.isMissing((Attribute)this.attributes.get(this.attributes.size()-1));
@@ -292,18 +395,21 @@ public class HelixPredictor {
 					
 					double[] probabilities = this.classifier.distributionForInstance(window);
 					
+					++this.adjustEvaluations;
+					
 					double 	bestProb 	= probabilities[Mappings.indexTmh];
 					int 	bestStart 	= -1;
 					int 	bestEnd 	= -1;
+					boolean skip 		= this.isUnambiguous(protein, start, end);
 					
-					//shift TMH start/end around and find best position
-					for (int newStart = start-Globals.PREDICTOR_MAX_SHIFT; newStart <= start+Globals.PREDICTOR_MAX_SHIFT; ++newStart)
+					//shift TMH start/end around and find best position (unless the TMH is unambiguous)
+					for (int newStart = start-Globals.PREDICTOR_MAX_SHIFT; newStart <= start+Globals.PREDICTOR_MAX_SHIFT && !skip; ++newStart)
 					{
 						if (newStart < 0) {continue;}
 						
 						for (int newEnd = end-Globals.PREDICTOR_MAX_SHIFT; newEnd <= end+Globals.PREDICTOR_MAX_SHIFT; ++newEnd)
 						{
-							if (newEnd >= structure.length) {break;}
+							if (newEnd >= length) {break;}
 							
 							window = this.buildInstance(pssm, newStart, newEnd);
 							
@@ -312,6 +418,8 @@ public class HelixPredictor {
 							
 							probabilities = this.classifier.distributionForInstance(window);
 							
+							++this.adjustEvaluations;
+							
 							if (probabilities[Mappings.indexTmh] > bestProb)
 							{
 								bestProb 	= probabilities[Mappings.indexTmh];
@@ -324,59 +432,182 @@ public class HelixPredictor {
 					//adjust the TMH!
 					if (bestProb < cutoff)
 					{
-						for (int j = start; j <= end; ++j)
-						{
-							structure[j] 	= Mappings.intToSs(Mappings.indexNotTmh);
-							segmentRaw[j] 	= 0;
-						}
+						protein.setPrediction(start, end, Mappings.stateNotTmh);
+						
+						Arrays.fill(segmentRaw, start, end + 1, 0);
 					}
 					else if (bestStart != -1 && bestEnd != -1)
 					{
 						start 	= Math.min(start, bestStart);
 						end 	= Math.max(end, bestEnd);
 						
-						for (int j = start; j <= end; ++j)
-						{
-							if (j >= bestStart && j <= bestEnd)
-							{
-								structure[j] 	= Mappings.intToSs(Mappings.indexTmh);
-								segmentRaw[j] 	= (int)(1000 * bestProb);
-							}
-							else
-							{
-								structure[j] 	= Mappings.intToSs(Mappings.indexNotTmh);
-								segmentRaw[j] 	= 0;
-							}
-						}
+						protein.setPrediction(start, end, Mappings.stateNotTmh);
+						protein.setPrediction(bestStart, bestEnd, Mappings.stateTmh);
+						
+						Arrays.fill(segmentRaw, start, end + 1, 0);
+						Arrays.fill(segmentRaw, bestStart, bestEnd + 1, (int)(1000 * bestProb));
 						
-						adjust 	= true;
-						i 		= end;
+						adjust = true;
 					}
 					else
 					{
-						for (int j = start; j <= end; ++j)
-						{
-							segmentRaw[j] = (int)(1000 * bestProb);
-						}
+						Arrays.fill(segmentRaw, start, end + 1, (int)(1000 * bestProb));
 					}
 				}
 				else
 				{
-					segmentRaw[i] = 0;
+					Arrays.fill(segmentRaw, start, end + 1, 0);
 				}
 			}
 			catch (Exception e)
 			{
-				ErrorUtils.printError(HelixPredictor.class, "Prediction failed for " + protein.getHeader(), e);
-				
-				return false;
+				throw new IllegalStateException("Prediction failed for " + protein.getHeader(), e);
 			}
+			
+			pos = end + 1;
 		}
 		
 		return adjust;
 	}
 	
 	
+	/**
+	 * Checks if a predicted TMH has a typical length and strong, uniform
+	 * HelixIndexer scores with clear boundaries, so that shifting its
+	 * boundaries is not expected to find a better position.
+	 * 
+	 * @param protein
+	 * @param start
+	 * @param end
+	 * @return
+	 */
+	private boolean isUnambiguous(Protein protein, int start, int end)
+	{
+		int[] 	tmhRaw 	= protein.getTmhRaw();
+		int 	length 	= end - start + 1;
+		
+		if (!Globals.PREDICTOR_GATE || this.reference || tmhRaw == null) {return false;}
+		
+		if (length < Globals.PREDICTOR_GATE_MIN_LENGTH || length > Globals.PREDICTOR_GATE_MAX_LENGTH) {return false;}
+		
+		for (int i = start; i <= end; ++i)
+		{
+			if (tmhRaw[i] < Globals.PREDICTOR_GATE_MIN_SCORE) {return false;}
+		}
+		
+		//residues within the shift range around the TMH must be clearly non-TMH
+		for (int i = start-Globals.PREDICTOR_MAX_SHIFT; i <= end+Globals.PREDICTOR_MAX_SHIFT; ++i)
+		{
+			if (i >= start && i <= end) {continue;}
+			
+			if (i >= 0 && i < tmhRaw.length && tmhRaw[i] > Globals.PREDICTOR_GATE_MAX_FLANK) {return false;}
+		}
+		
+		return true;
+	}
+	
+	
+	/**
+	 * Counts the final TMHs of a protein and those the refinement gate passes,
+	 * once per TMH rather than once per refinement round.
+	 * 
+	 * @param protein
+	 */
+	private void countGate(Protein protein)
+	{
+		if (!Globals.PREDICTOR_GATE || this.reference || protein.getTmhRaw() == null) {return;}
+		
+		SegmentIndex segments = protein.getSegments();
+		
+		for (int k = 0; k < segments.size(); ++k)
+		{
+			if (Mappings.ssOf(segments.getType(k)) != Mappings.indexTmh) {continue;}
+			
+			++this.helicesChecked;
+			
+			if (this.isUnambiguous(protein, segments.getStart(k), segments.getEnd(k))) {++this.helicesSkipped;}
+		}
+	}
+	
+	
+	/**
+	 * If set, all TMHs are refined regardless of the refinement gate
+	 * (reference predictions for shadow checks).
+	 * 
+	 * @param reference
+	 */
+	public void setReference(boolean reference)
+	{
+		this.reference = reference;
+	}
+	
+	
+	/**
+	 * Returns the number of final TMHs checked by the refinement gate.
+	 * 
+	 * @return
+	 */
+	public long getHelicesChecked()
+	{
+		return this.helicesChecked;
+	}
+	
+	
+	/**
+	 * Returns the number of final TMHs passed through the refinement gate without boundary refinement.
+	 * 
+	 * @return
+	 */
+	public long getHelicesSkipped()
+	{
+		return this.helicesSkipped;
+	}
+	
+	
+	/**
+	 * Returns the number of classifier evaluations.
+	 * 
+	 * @return
+	 */
+	public long getEvaluations()
+	{
+		return this.evaluations + this.splitEvaluations + this.adjustEvaluations;
+	}
+	
+	
+	/**
+	 * Returns the number of classifier evaluations while splitting TMHs.
+	 * 
+	 * @return
+	 */
+	public long getSplitEvaluations()
+	{
+		return this.splitEvaluations;
+	}
+	
+	
+	/**
+	 * Returns the number of classifier evaluations while adjusting TMHs.
+	 * 
+	 * @return
+	 */
+	public long getAdjustEvaluations()
+	{
+		return this.adjustEvaluations;
+	}
+	
+	
+	/**
+	 * Returns the number of refinement rounds (splitting and/or adjusting).
+	 * 
+	 * @return
+	 */
+	public long getRounds()
+	{
+		return this.rounds;
+	}
+	
+	
 	/**
 	 * Splits predicted transmembrane helices within a given protein.
 	 * 
@@ -384,30 +615,27 @@ public class HelixPredictor {
 	 * @param cutoff
 	 * @return
 	 */
-	private boolean splitTMHs(Protein protein, double cutoff)
+	boolean splitTMHs(Protein protein, double cutoff)
 	{
-		boolean split 		= false;
-		Pssm 	pssm 		= protein.getPssm();
-		char[] 	structure 	= protein.getPrediction();
-		int[] 	segmentRaw 	= protein.getSegmentRaw();
-		int 	minLength 	= 2*Globals.PREDICTOR_HELIX_MIN_SIZE+Globals.PREDICTOR_GAP_MIN_SIZE;
-		
-		for (int i = 0; i < structure.length; ++i)
+		boolean 		split 		= false;
+		Pssm 			pssm 		= protein.getPssm();
+		SegmentIndex 	segments 	= protein.getSegments();
+		int 			length 		= protein.getLength();
+		int[] 			segmentRaw 	= protein.getSegmentRaw();
+		int 			minLength 	= 2*Globals.PREDICTOR_HELIX_MIN_SIZE+Globals.PREDICTOR_GAP_MIN_SIZE;
+		
+		for (int pos = 0; pos < length; )
 		{
+			int k 		= segments.indexOf(pos);
+			int start 	= pos;
+			int end 	= segments.getEnd(k);
+			
+			pos = end + 1;
+			
 			try
 			{
-				if (Mappings.ssToInt(structure[i]) == Mappings.indexTmh)
+				if (Mappings.ssOf(segments.getType(k)) == Mappings.indexTmh)
 				{
-					int 	start 	= i;
-					char 	type 	= structure[i];
-					
-					//go to end of transmembrane helix
-					while (i < structure.length && structure[i] == type) {++i;}
-					
-					--i;
-					
-					int end = i;
-					
 					//if TMH is too short jump to the next one
 					if (end-start+1 < minLength) {continue;}
 					
@@ -418,6 +646,8 @@ public class HelixPredictor {
 					
 					double[] probabilities = this.classifier.distributionForInstance(window);
 					
+					++this.splitEvaluations;
+					
 					double 	bestProb 	= probabilities[Mappings.indexTmh];
 					double 	bestProb1 	= 0;
 					double 	bestProb2 	= 0;
@@ -442,6 +672,8 @@ public class HelixPredictor {
 							double prob1 = this.classifier.distributionForInstance(window1)[Mappings.indexTmh];
 							double prob2 = this.classifier.distributionForInstance(window2)[Mappings.indexTmh];
 							
+							this.splitEvaluations += 2;
+							
 							if (prob1 >= cutoff && prob2 >= cutoff)
 							{
 								double avgProb = (prob1 + prob2) / 2.0;
@@ -461,23 +693,13 @@ public class HelixPredictor {
 					//split the TMH!
 					if (bestBreak1 != -1 && bestBreak2 != -1)
 					{
-						for (int j = start; j <= bestBreak1; ++j)
-						{
-							structure[j] 	= Mappings.intToSs(Mappings.indexTmh);
-							segmentRaw[j] 	= (int)(1000 * bestProb1);
-						}
+						protein.setPrediction(start, bestBreak1, Mappings.stateTmh);
+						protein.setPrediction(bestBreak1+1, bestBreak2, Mappings.stateNotTmh);
+						protein.setPrediction(bestBreak2+1, end, Mappings.stateTmh);
 						
-						for (int j = bestBreak1+1; j <= bestBreak2; ++j)
-						{
-							structure[j] 	= Mappings.intToSs(Mappings.indexNotTmh);
-							segmentRaw[j] 	= 0;
-						}
-						
-						for (int j = bestBreak2+1; j <= end; ++j)
-						{
-							structure[j] 	= Mappings.intToSs(Mappings.indexTmh);
-							segmentRaw[j] 	= (int)(1000 * bestProb2);
-						}
+						Arrays.fill(segmentRaw, start, bestBreak1+1, (int)(1000 * bestProb1));
+						Arrays.fill(segmentRaw, bestBreak1+1, bestBreak2+1, 0);
+						Arrays.fill(segmentRaw, bestBreak2+1, end+1, (int)(1000 * bestProb2));
 						
 						split = true;
 					}
@@ -485,9 +707,7 @@ public class HelixPredictor {
 			}
 			catch (Exception e)
 			{
-				ErrorUtils.printError(HelixPredictor.class, "Prediction failed for " + protein.getHeader(), e);
-				
-				return false;
+				throw new IllegalStateException("Prediction failed for " + protein.getHeader(), e);
 			}
 		}
 		
@@ -535,6 +755,8 @@ public class HelixPredictor {
 			window.setDataset(this.dataset);
 			
 			tmhProbability = this.classifier.distributionForInstance(window)[Mappings.indexTmh];;
+			
+			++this.evaluations;
 		}
 		catch (Exception e)
 		{
@@ -574,32 +796,34 @@ public class HelixPredictor {
 		//amino acid composition, hydrophobicity, and charge
 		for (int i = start; i <= end; ++i)
 		{
-			for (int j = 0; j < 20; ++j)
+			int cons 	= pssm.getConserved(i);
+			int nonCons = pssm.getNonConserved(i);
+			
+			for (int bits = cons; bits != 0; bits &= bits - 1)
 			{
-				int 	score 	= pssm.getScore(i, j);
-				char 	aa 		= Mappings.intToAa(j);
+				int j = Integer.numberOfTrailingZeros(bits);
 				
-				if (score > 0)
-				{
-					consAvgHydro += Mappings.hydrophobicity(aa);
-					
-					if (Mappings.hydrophobicity(aa) > 0) 	{++consHydro;}
-					if (Mappings.charge(aa) != 0) 			{++consCharged;}
-					
-					++consAaComp[j];
-					++conserved;
-				}
-				else if (score < 0)
-				{
-					nonConsAvgHydro += Mappings.hydrophobicity(aa);
-					
-					if (Mappings.hydrophobicity(aa) > 0) 	{++nonConsHydro;}
-					if (Mappings.charge(aa) != 0) 			{++nonConsCharged;}
-					
-					++nonConsAaComp[j];
-					++nonConserved;
-				}
+				consAvgHydro += Mappings.hydrophobicityOf(j);
+				
+				++consAaComp[j];
+			}
+			
+			for (int bits = nonCons; bits != 0; bits &= bits - 1)
+			{
+				int j = Integer.numberOfTrailingZeros(bits);
+				
+				nonConsAvgHydro += Mappings.hydrophobicityOf(j);
+				
+				++nonConsAaComp[j];
 			}
+			
+			consHydro 		+= Integer.bitCount(cons & Mappings.maskHydrophobic);
+			consCharged 	+= Integer.bitCount(cons & Mappings.maskCharged);
+			conserved 		+= Integer.bitCount(cons);
+			
+			nonConsHydro 	+= Integer.bitCount(nonCons & Mappings.maskHydrophobic);
+			nonConsCharged 	+= Integer.bitCount(nonCons & Mappings.maskCharged);
+			nonConserved 	+= Integer.bitCount(nonCons);
 		}
 		
 		conserved 		= Math.max(conserved, 1);
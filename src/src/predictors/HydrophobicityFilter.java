@@ -0,0 +1,242 @@
+//    <TMSEG: Prediction of Transmembrane Helices in Proteins.>
+//    Copyright (C) 2014  Michael Bernhofer
+//
+//    This program is free software: you can redistribute it and/or modify
+//    it under the terms of the GNU General Public License as published by
+//    the Free Software Foundation, either version 3 of the License, or
+//    (at your option) any later version.
+//
+//    This program is distributed in the hope that it will be useful,
+//    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//    GNU General Public License for more details.
+//
+//    You should have received a copy of the GNU General Public License
+//    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package predictors;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import util.ErrorUtils;
+import util.Globals;
+import util.Mappings;
+import data.Protein;
+import data.Pssm;
+
+
+/**
+ * Cheap first stage that screens whole proteins for hydrophobic stretches
+ * before the HelixIndexer is run. Proteins without any candidate stretch
+ * are treated as soluble and skip the random forest.
+ */
+public class HydrophobicityFilter {
+	
+	
+	private double[] 	hydrophobicity 	= null;
+	private double 		threshold 		= 0.0;
+	
+	//counters (updated by all prediction threads)
+	private AtomicInteger 	screened 		= new AtomicInteger(0);
+	private AtomicInteger 	skipped 		= new AtomicInteger(0);
+	private AtomicInteger 	tmps 			= new AtomicInteger(0);
+	private AtomicInteger 	audited 		= new AtomicInteger(0);
+	private AtomicInteger 	missed 			= new AtomicInteger(0);
+	
+	
+	public HydrophobicityFilter(double threshold)
+	{
+		this.threshold 		= threshold;
+		this.hydrophobicity = new double[20];
+		
+		for (int i = 0; i < 20; ++i)
+		{
+			this.hydrophobicity[i] = Mappings.hydrophobicity(Mappings.intToAa(i));
+		}
+	}
+	
+	
+	/**
+	 * Checks if a given protein contains a candidate stretch
+	 * and has to be passed on to the HelixIndexer.
+	 * 
+	 * @param protein
+	 * @return
+	 */
+	public boolean accept(Protein protein)
+	{
+		if (protein == null || protein.getPssm() == null) {return true;}
+		
+		boolean accept = this.score(protein.getPssm()) >= this.threshold;
+		
+		this.screened.incrementAndGet();
+		
+		if (!accept) {this.skipped.incrementAndGet();}
+		
+		return accept;
+	}
+	
+	
+	/**
+	 * Records the outcome of the prediction for a protein that passed the filter.
+	 * 
+	 * @param protein
+	 */
+	public void predicted(Protein protein)
+	{
+		if (protein != null && protein.isPredTmp()) {this.tmps.incrementAndGet();}
+	}
+	
+	
+	/**
+	 * Records the outcome of the full prediction for a protein that was
+	 * rejected by the filter (audit mode).
+	 * 
+	 * @param protein
+	 */
+	public void audit(Protein protein)
+	{
+		if (protein == null) {return;}
+		
+		this.audited.incrementAndGet();
+		
+		if (protein.isPredTmp()) {this.missed.incrementAndGet();}
+	}
+	
+	
+	/**
+	 * Assigns an all-soluble prediction to a protein that was rejected by the filter.
+	 * 
+	 * @param protein
+	 */
+	public static void assignSoluble(Protein protein)
+	{
+		protein.setPrediction(0, protein.getLength() - 1, Mappings.stateNotTmh);
+		
+		protein.setPredTmp(false);
+		protein.setPredSigP(false);
+	}
+	
+	
+	/**
+	 * Calculates the highest average PSSM-weighted hydrophobicity
+	 * of all windows within a protein.
+	 * 
+	 * @param pssm
+	 * @return
+	 */
+	public double score(Pssm pssm)
+	{
+		int 		length 		= pssm.getLength();
+		int 		windowSize 	= Math.min(Globals.PREFILTER_WINDOW_SIZE, length);
+		double[] 	profile 	= new double[length];
+		
+		if (length == 0) {return 0.0;}
+		
+		//hydrophobicity per position weighted by the conserved PSSM scores
+		for (int i = 0; i < length; ++i)
+		{
+			double 	sum 	= 0;
+			int 	weight 	= 0;
+			
+			for (int bits = pssm.getConserved(i); bits != 0; bits &= bits - 1)
+			{
+				int j 		= Integer.numberOfTrailingZeros(bits);
+				int score 	= pssm.getScore(i, j);
+				
+				sum 	+= score * this.hydrophobicity[j];
+				weight 	+= score;
+			}
+			
+			if (weight > 0) {profile[i] = sum / weight;}
+		}
+		
+		double window = 0;
+		
+		for (int i = 0; i < windowSize; ++i) {window += profile[i];}
+		
+		double best = window;
+		
+		for (int i = windowSize; i < length; ++i)
+		{
+			window 	+= profile[i] - profile[i-windowSize];
+			best 	= Math.max(best, window);
+		}
+		
+		return best / windowSize;
+	}
+	
+	
+	/**
+	 * Calculates the filter threshold for a list of annotated proteins
+	 * so that the given fraction of real TMPs passes the filter.
+	 * 
+	 * @param proteins
+	 * @param recall
+	 * @return
+	 */
+	public double calibrate(List<Protein> proteins, double recall)
+	{
+		ArrayList<Double> scores = new ArrayList<Double>();
+		
+		for (Protein protein : proteins)
+		{
+			if (protein == null || protein.getPssm() == null) {continue;}
+			
+			if (protein.isRealTmp()) {scores.add(this.score(protein.getPssm()));}
+		}
+		
+		if (scores.isEmpty())
+		{
+			ErrorUtils.printError(HydrophobicityFilter.class, "No annotated transmembrane proteins found for calibration", null);
+			
+			return this.threshold;
+		}
+		
+		Collections.sort(scores);
+		
+		int index = (int)Math.floor((1.0 - recall) * scores.size());
+		
+		index = Math.max(0, Math.min(index, scores.size() - 1));
+		
+		this.threshold = scores.get(index);
+		
+		return this.threshold;
+	}
+	
+	
+	public double getThreshold()
+	{
+		return this.threshold;
+	}
+	
+	
+	/**
+	 * Prints the number of screened and skipped proteins and, if available,
+	 * the fraction of the TMPs of a full run that the filter skipped. The
+	 * misses found by the audit are scaled to all skipped proteins.
+	 */
+	public void printStatistics()
+	{
+		int 	screened 		= this.screened.get();
+		int 	skipped 		= this.skipped.get();
+		int 	audited 		= this.audited.get();
+		int 	missed 			= this.missed.get();
+		double 	fractionSkipped = screened > 0 ? (double)skipped / screened : 0.0;
+		double 	estimated 		= audited > 0 ? (double)missed * skipped / audited : 0.0;
+		double 	fractionMissed 	= estimated > 0 ? estimated / (this.tmps.get() + estimated) : 0.0;
+		
+		System.out.println("Prefilter threshold:  " + this.threshold);
+		System.out.println("Proteins screened:    " + screened);
+		System.out.println("Proteins skipped:     " + skipped + " (" + fractionSkipped + ")");
+		
+		if (audited > 0)
+		{
+			System.out.println("Missed TMPs (audit):  " + missed + " of " + audited + " audited, " + fractionMissed + " of all predicted TMPs");
+		}
+	}
+
+}
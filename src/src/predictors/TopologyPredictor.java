@@ -21,6 +21,7 @@ import io.ModelHandler;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
 
@@ -37,6 +38,7 @@ import weka.core.converters.ArffSaver;
 import data.Protein;
 import data.Pssm;
 import data.Segment;
+import data.SegmentIndex;
 
 
 /**
@@ -53,6 +55,8 @@ public class TopologyPredictor {
 	private Classifier 				classifier 		= null;
 	private boolean 				isTrained 		= false;
 	
+	private long 					evaluations 	= 0;
+	
 	
 	public TopologyPredictor()
 	{
@@ -119,6 +123,23 @@ public class TopologyPredictor {
 	}
 	
 	
+	/**
+	 * Creates a predictor for another thread. The random forest is not
+	 * modified during prediction and is shared with the copy.
+	 * 
+	 * @return
+	 */
+	public TopologyPredictor copy()
+	{
+		TopologyPredictor copy = new TopologyPredictor();
+		
+		copy.classifier = this.classifier;
+		copy.isTrained 	= this.isTrained;
+		
+		return copy;
+	}
+	
+	
 	/**
 	 * Inputs a given list of proteins for the training data.
 	 * 
@@ -145,7 +166,7 @@ public class TopologyPredictor {
 		if (protein.getStructure() == null) {return;}
 		
 		Pssm 	pssm 		= protein.getPssm();
-		char[] 	structure 	= protein.getStructure();
+		byte[] 	structure 	= protein.getStructure();
 		
 		if (Processing.testTopology(structure))
 		{
@@ -156,7 +177,7 @@ public class TopologyPredictor {
 			
 			for (int i = 0; i < structure.length; ++i)
 			{
-				int topIndex = Mappings.topToInt(structure[i]);
+				int topIndex = Mappings.topOf(structure[i]);
 				
 				if (topIndex != Mappings.defaultValue)
 				{
@@ -199,7 +220,8 @@ public class TopologyPredictor {
 	
 	
 	/**
-	 * Predicts the N-terminal topology for a given protein.
+	 * Predicts the N-terminal topology for a given protein, a classifier
+	 * error is thrown as an IllegalStateException.
 	 * 
 	 * @param protein
 	 * @param cutoff
@@ -213,11 +235,12 @@ public class TopologyPredictor {
 		if (!protein.isPredTmp()) {return;}
 		
 		Pssm 	pssm 		= protein.getPssm();
-		char[] 	prediction 	= protein.getPrediction();
+		byte[] 	prediction 	= protein.getPrediction();
 		
 		try
 		{
-			ArrayList<Segment> 	solSegments = findSegments(prediction);
+			SegmentIndex 		segments 	= protein.getSegments();
+			ArrayList<Segment> 	solSegments = findSegments(segments, prediction.length);
 			Instance 			instance 	= this.buildInstance(pssm, prediction, solSegments, 0);
 			
 			instance.isMissing((Attribute)this.attributes.get(this.attributes.size()-1));
@@ -225,53 +248,62 @@ public class TopologyPredictor {
 			
 			double[] probabilities = this.classifier.distributionForInstance(instance);
 			
-			char top = Character.UNASSIGNED;
+			++this.evaluations;
+			
+			byte top = Mappings.stateUnknown;
 			
 			protein.setTopologyRaw((int)(1000 * probabilities[TopologyPredictor.indexInside]));
 			
 			if (!protein.hasPredSigP() && probabilities[TopologyPredictor.indexInside] >= cutoff)
 			{
-				top = Mappings.intToTop(Mappings.indexInside);
+				top = Mappings.stateInside;
 			}
 			else
 			{
-				top = Mappings.intToTop(Mappings.indexOutside);
+				top = Mappings.stateOutside;
 			}
 			
-			for (int i = 0; i < prediction.length; ++i)
+			for (int k = 0; k < segments.size(); ++k)
 			{
-				char type = prediction[i];
+				byte type = segments.getType(k);
 				
-				if (Mappings.ssToInt(type) == Mappings.indexNotTmh)
+				if (Mappings.ssOf(type) == Mappings.indexNotTmh)
 				{
-					prediction[i] = top;
+					Arrays.fill(prediction, segments.getStart(k), segments.getEnd(k) + 1, top);
 				}
-				else if (Mappings.ssToInt(type) == Mappings.indexTmh)
+				else if (Mappings.ssOf(type) == Mappings.indexTmh)
 				{
-					if (top == Mappings.intToTop(Mappings.indexInside))
+					if (top == Mappings.stateInside)
 					{
-						top = Mappings.intToTop(Mappings.indexOutside);
+						top = Mappings.stateOutside;
 					}
 					else
 					{
-						top = Mappings.intToTop(Mappings.indexInside);
+						top = Mappings.stateInside;
 					}
-					
-					while (i < prediction.length && type == prediction[i]) {++i;}
-					
-					--i;
 				}
 			}
+			
+			protein.setPrediction(prediction);
 		}
 		catch (Exception e)
 		{
-			ErrorUtils.printError(TopologyPredictor.class, "Prediction failed for " + protein.getHeader(), e);
-			
-			return;
+			throw new IllegalStateException("Prediction failed for " + protein.getHeader(), e);
 		}
 	}
 	
 	
+	/**
+	 * Returns the number of classifier evaluations.
+	 * 
+	 * @return
+	 */
+	public long getEvaluations()
+	{
+		return this.evaluations;
+	}
+	
+	
 	/**
 	 * Analyzes a given window and saves it in the database.
 	 * 
@@ -280,9 +312,9 @@ public class TopologyPredictor {
 	 * @param structureIndex
 	 * @param startPos
 	 */
-	private void addProteinToDatabse(Pssm pssm, char[] structure, int structureIndex, int startPos)
+	private void addProteinToDatabse(Pssm pssm, byte[] structure, int structureIndex, int startPos)
 	{
-		ArrayList<Segment> 	solSegments = findSegments(structure);
+		ArrayList<Segment> 	solSegments = findSegments(new SegmentIndex(structure), structure.length);
 		Instance 			segment 	= this.buildInstance(pssm, structure, solSegments, startPos);
 		
 		segment.setValue((Attribute)this.attributes.get(this.attributes.size()-1), structureIndex);
@@ -298,29 +330,20 @@ public class TopologyPredictor {
 	 * the list of segments that will be used for the features of each
 	 * side of the membrane.
 	 * 
-	 * @param structure
+	 * @param segments
+	 * @param length
 	 * @return
 	 */
-	private ArrayList<Segment> findSegments(char[] structure)
+	private ArrayList<Segment> findSegments(SegmentIndex segments, int length)
 	{
 		ArrayList<Segment> tmhSegments = new ArrayList<Segment>();
 		ArrayList<Segment> solSegments = new ArrayList<Segment>();
 		
-		for (int i = 0; i < structure.length; ++i)
+		for (int k = 0; k < segments.size(); ++k)
 		{
-			char type = structure[i];
-			
-			if (Mappings.ssToInt(type) == Mappings.indexTmh)
+			if (Mappings.ssOf(segments.getType(k)) == Mappings.indexTmh)
 			{
-				int start = i;
-				
-				while (i < structure.length && structure[i] == type) {++i;}
-				
-				--i;
-				
-				int end = i;
-				
-				tmhSegments.add(new Segment(start, end));
+				tmhSegments.add(new Segment(segments.getStart(k), segments.getEnd(k)));
 			}
 		}
 		
@@ -335,7 +358,7 @@ public class TopologyPredictor {
 			if (i == 0)
 			{
 				int start 	= Math.max(segment.start - off2, 0);
-				int end 	= Math.min(segment.start + off1, structure.length - 1);
+				int end 	= Math.min(segment.start + off1, length - 1);
 				
 				end 		= Math.min(segment.end, end); //do not extend beyond helix end
 				
@@ -346,7 +369,7 @@ public class TopologyPredictor {
 				Segment prev = tmhSegments.get(i - 1);
 				
 				int start 	= Math.max(prev.end - off1, 0);
-				int end 	= Math.min(prev.end + off2, structure.length - 1);
+				int end 	= Math.min(prev.end + off2, length - 1);
 				
 				start 		= Math.max(prev.start, start); // do not extend beyond helix start
 				
@@ -359,7 +382,7 @@ public class TopologyPredictor {
 				start 		= Math.max(prev.end - off1, start); // do not extend beyond prev helix cutoff
 				start 		= Math.max(prev.start, start); // do not extend beyond prev helix start
 				
-				end 		= Math.min(segment.start + off1, structure.length - 1);
+				end 		= Math.min(segment.start + off1, length - 1);
 				end 		= Math.min(segment.end, end); // do not extend beyond helix end
 				
 				solSegments.add(new Segment(start, end, side, 0));
@@ -370,7 +393,7 @@ public class TopologyPredictor {
 			if (i == tmhSegments.size() - 1)
 			{
 				int start 	= Math.max(segment.end - off1, 0);
-				int end 	= Math.min(segment.end + off2, structure.length - 1);
+				int end 	= Math.min(segment.end + off2, length - 1);
 				
 				start 		= Math.max(segment.start, start); //do not extend beyond helix start
 				
@@ -391,7 +414,7 @@ public class TopologyPredictor {
 	 * @param startPos
 	 * @return
 	 */
-	private Instance buildInstance(Pssm pssm, char[] structure, ArrayList<Segment> segments, int startPos)
+	private Instance buildInstance(Pssm pssm, byte[] structure, ArrayList<Segment> segments, int startPos)
 	{
 		SparseInstance 	protein 			= new SparseInstance(this.attributes.size());
 		double[] 		consComposition1 	= new double[20];
@@ -421,47 +444,30 @@ public class TopologyPredictor {
 			
 			for (int i = start; i <= end; ++i)
 			{
-				if (Mappings.ssToInt(structure[i]) != Mappings.indexUnknown)
+				if (Mappings.ssOf(structure[i]) != Mappings.indexUnknown)
 				{
-					for (int j = 0; j < 20; ++j)
+					int cons 	= pssm.getConserved(i);
+					int nonCons = pssm.getNonConserved(i);
+					
+					if (side == firstSide)
+					{
+						for (int bits = cons; bits != 0; bits &= bits - 1) 		{++consComposition1[Integer.numberOfTrailingZeros(bits)];}
+						for (int bits = nonCons; bits != 0; bits &= bits - 1) 	{++nonConsComposition1[Integer.numberOfTrailingZeros(bits)];}
+						
+						conserved1 			+= Integer.bitCount(cons);
+						nonConserved1 		+= Integer.bitCount(nonCons);
+						consPosCharged1 	+= Integer.bitCount(cons & Mappings.maskPositive);
+						nonConsPosCharged1 	+= Integer.bitCount(nonCons & Mappings.maskPositive);
+					}
+					else
 					{
-						int 	score 	= pssm.getScore(i, j);
-						char 	aa 		= Mappings.intToAa(j);
+						for (int bits = cons; bits != 0; bits &= bits - 1) 		{++consComposition2[Integer.numberOfTrailingZeros(bits)];}
+						for (int bits = nonCons; bits != 0; bits &= bits - 1) 	{++nonConsComposition2[Integer.numberOfTrailingZeros(bits)];}
 						
-						if (score > 0)
-						{
-							if (side == firstSide)
-							{
-								++consComposition1[j];
-								++conserved1;
-								
-								if (Mappings.charge(aa) > 0) {++consPosCharged1;}
-							}
-							else
-							{
-								++consComposition2[j];
-								++conserved2;
-								
-								if (Mappings.charge(aa) > 0) {++conPosCharged2;}
-							}
-						}
-						else if (score < 0)
-						{
-							if (side == firstSide)
-							{
-								++nonConsComposition1[j];
-								++nonConserved1;
-								
-								if (Mappings.charge(aa) > 0) {++nonConsPosCharged1;}
-							}
-							else
-							{
-								++nonConsComposition2[j];
-								++nonConserved2;
-								
-								if (Mappings.charge(aa) > 0) {++nonConsPosCharged2;}
-							}
-						}
+						conserved2 			+= Integer.bitCount(cons);
+						nonConserved2 		+= Integer.bitCount(nonCons);
+						conPosCharged2 		+= Integer.bitCount(cons & Mappings.maskPositive);
+						nonConsPosCharged2 	+= Integer.bitCount(nonCons & Mappings.maskPositive);
 					}
 				}
 			}
@@ -21,6 +21,7 @@ import java.util.List;
 
 import util.Mappings;
 import data.Protein;
+import data.SegmentIndex;
 
 
 /**
@@ -81,12 +82,12 @@ public class Processing {
 	 * @param wTmh
 	 * @param wSig
 	 */
-	private static void processPrediction(Protein protein, int minLength, int wSol, int wTmh, int wSig)
+	static void processPrediction(Protein protein, int minLength, int wSol, int wTmh, int wSig)
 	{
 		int[] 	scoresSol 	= protein.getSolRaw();
 		int[] 	scoresTmh 	= protein.getTmhRaw();
 		int[] 	scoresSig 	= protein.getSigRaw();
-		char[] 	prediction 	= protein.getPrediction();
+		byte[] 	prediction 	= protein.getPrediction();
 		
 		if (scoresSol == null || scoresTmh == null || scoresSig == null) {return;}
 		
@@ -105,29 +106,29 @@ public class Processing {
 			
 			if (sSol >= sTmh && sSol >= sSig)
 			{
-				prediction[i] = Mappings.intToSs(Mappings.indexNotTmh);
+				prediction[i] = Mappings.stateNotTmh;
 			}
 			else if (sTmh >= sSig)
 			{
-				prediction[i] = Mappings.intToSs(Mappings.indexTmh);
+				prediction[i] = Mappings.stateTmh;
 			}
 			else
 			{
 				lastSPIndex 		= i;
 				hasSignalPeptide 	= true;
 				
-				prediction[i] = Mappings.intToSs(Mappings.indexSignal);
+				prediction[i] = Mappings.stateSignal;
 			}
 		}
 		
+		protein.setPrediction(prediction);
+		
 		protein.setPredTmp(cutShortHelices(protein, minLength));
 		
 		if (hasSignalPeptide)
 		{
-			protein.setPredSigP(processSignalPeptide(prediction, lastSPIndex));
+			protein.setPredSigP(processSignalPeptide(protein, lastSPIndex));
 		}
-		
-		protein.setPrediction(prediction);
 	}
 	
 	
@@ -135,50 +136,44 @@ public class Processing {
 	 * Refines the signal peptide prediction by removing short 
 	 * signal peptides (less than 4 consecutive residues).
 	 * 
-	 * @param prediction
+	 * @param protein
 	 * @param lastSPIndex
 	 * @return
 	 */
-	private static boolean processSignalPeptide(char[] prediction, int lastSPIndex)
+	private static boolean processSignalPeptide(Protein protein, int lastSPIndex)
 	{
-		boolean hasSignalPeptide = false;
+		SegmentIndex 	segments 			= protein.getSegments();
+		boolean 		hasSignalPeptide 	= false;
 		
-		for (int i = 0; i <= lastSPIndex; ++i)
+		for (int k = 0; k < segments.size() && segments.getStart(k) <= lastSPIndex; ++k)
 		{
-			char type = prediction[i];
+			int end = Math.min(segments.getEnd(k), lastSPIndex);
 			
-			if (Mappings.ssToInt(type) == Mappings.indexSignal)
+			if (Mappings.ssOf(segments.getType(k)) == Mappings.indexSignal && (end - segments.getStart(k) + 1) >= 4)
 			{
-				int start = i;
+				hasSignalPeptide = true;
 				
-				while (i <= lastSPIndex && prediction[i] == type) {++i;}
-				
-				--i;
-				
-				if ((i - start + 1) >= 4)
-				{
-					hasSignalPeptide = true;
-					
-					break;
-				}
+				break;
 			}
 		}
 		
 		if (hasSignalPeptide)
 		{
-			for (int i = 0; i <= lastSPIndex; ++i)
-			{
-				prediction[i] = Mappings.intToSs(Mappings.indexSignal);
-			}
+			protein.setPrediction(0, lastSPIndex, Mappings.stateSignal);
 		}
 		else
 		{
-			for (int i = 0; i <= lastSPIndex; ++i)
+			for (int pos = 0; pos <= lastSPIndex; )
 			{
-				if (Mappings.ssToInt(prediction[i]) == Mappings.indexSignal)
+				int k 	= segments.indexOf(pos);
+				int end = Math.min(segments.getEnd(k), lastSPIndex);
+				
+				if (Mappings.ssOf(segments.getType(k)) == Mappings.indexSignal)
 				{
-					prediction[i] = Mappings.intToSs(Mappings.indexNotTmh);
+					protein.setPrediction(pos, end, Mappings.stateNotTmh);
 				}
+				
+				pos = end + 1;
 			}
 		}
 		
@@ -194,35 +189,27 @@ public class Processing {
 	 */
 	private static boolean cutShortHelices(Protein protein, int minLength)
 	{
-		boolean isTmp = false;
-		
-		char[] prediction = protein.getPrediction();
+		boolean 		isTmp 		= false;
+		SegmentIndex 	segments 	= protein.getSegments();
 		
-		for (int i = 0; i < prediction.length; ++i)
+		for (int pos = 0; pos < protein.getLength(); )
 		{
-			if (Mappings.ssToInt(prediction[i]) == Mappings.indexTmh)
+			int k 	= segments.indexOf(pos);
+			int end = segments.getEnd(k);
+			
+			if (Mappings.ssOf(segments.getType(k)) == Mappings.indexTmh)
 			{
-				int 	start 	= i;
-				char 	type 	= prediction[i];
-				
-				while (i < prediction.length && prediction[i] == type) {++i;}
-				
-				int length = i - start;
-				
-				if (length < minLength)
+				if (end - pos + 1 < minLength)
 				{
-					for (int j = start; j < i; ++j)
-					{
-						prediction[j] = Mappings.intToSs(Mappings.indexNotTmh);
-					}
+					protein.setPrediction(pos, end, Mappings.stateNotTmh);
 				}
 				else
 				{
 					isTmp = true;
 				}
-				
-				--i;
 			}
+			
+			pos = end + 1;
 		}
 		
 		return isTmp;
@@ -268,11 +255,11 @@ public class Processing {
 	 */
 	private static boolean isTmp(Protein protein)
 	{
-		char[] prediction = protein.getPrediction();
+		SegmentIndex segments = protein.getSegments();
 		
-		for (int i = 0; i < prediction.length; ++i)
+		for (int k = 0; k < segments.size(); ++k)
 		{
-			if (Mappings.ssToInt(prediction[i]) == Mappings.indexTmh) {return true;}
+			if (Mappings.ssOf(segments.getType(k)) == Mappings.indexTmh) {return true;}
 		}
 		
 		return false;
@@ -285,7 +272,7 @@ public class Processing {
 	 * @param structure
 	 * @return
 	 */
-	public static boolean testTopology(char[] structure)
+	public static boolean testTopology(byte[] structure)
 	{
 		if (structure == null) {return false;}
 		
@@ -294,9 +281,9 @@ public class Processing {
 		
 		for (int i = 0; i < structure.length; ++i)
 		{
-			char 	type 		= structure[i];
-			int 	ssIndex 	= Mappings.ssToInt(type);
-			int 	topIndex 	= Mappings.topToInt(type);
+			byte 	type 		= structure[i];
+			int 	ssIndex 	= Mappings.ssOf(type);
+			int 	topIndex 	= Mappings.topOf(type);
 			
 			if (firstTop == Mappings.defaultValue && topIndex != Mappings.defaultValue)
 			{
@@ -326,17 +313,17 @@ public class Processing {
 	 * @param structure
 	 * @return
 	 */
-	public static char[] extrapolateTopology(char[] structure)
+	public static byte[] extrapolateTopology(byte[] structure)
 	{
 		if (structure == null) {return structure;}
 		
-		char[] 	newStructure 	= structure.clone();
+		byte[] 	newStructure 	= structure.clone();
 		int 	firstTop 		= Mappings.defaultValue;
 		int 	firstPos 		= 0;
 		
 		for (int i = 0; i < newStructure.length; ++i)
 		{
-			int topIndex = Mappings.topToInt(newStructure[i]);
+			int topIndex = Mappings.topOf(newStructure[i]);
 			
 			if (firstTop == Mappings.defaultValue && topIndex != Mappings.defaultValue)
 			{
@@ -349,9 +336,9 @@ public class Processing {
 		
 		for (int i = firstPos; i >= 0; --i)
 		{
-			char 	type 		= newStructure[i];
-			int 	ssIndex 	= Mappings.ssToInt(type);
-			int 	topIndex 	= Mappings.topToInt(type);
+			byte 	type 		= newStructure[i];
+			int 	ssIndex 	= Mappings.ssOf(type);
+			int 	topIndex 	= Mappings.topOf(type);
 			
 			if (ssIndex != Mappings.indexUnknown)
 			{
@@ -367,15 +354,15 @@ public class Processing {
 				{
 					if (!switched)
 					{
-						newStructure[i] = Mappings.intToTop(firstTop);
+						newStructure[i] = Mappings.topToState(firstTop);
 					}
 					else if (firstTop == Mappings.indexInside)
 					{
-						newStructure[i] = Mappings.intToTop(Mappings.indexOutside);
+						newStructure[i] = Mappings.topToState(Mappings.indexOutside);
 					}
 					else if (firstTop == Mappings.indexOutside)
 					{
-						newStructure[i] = Mappings.intToTop(Mappings.indexInside);
+						newStructure[i] = Mappings.topToState(Mappings.indexInside);
 					}
 				}
 			}
@@ -385,9 +372,9 @@ public class Processing {
 		
 		for (int i = firstPos; i < newStructure.length; ++i)
 		{
-			char 	type 		= newStructure[i];
-			int 	ssIndex 	= Mappings.ssToInt(type);
-			int 	topIndex 	= Mappings.topToInt(type);
+			byte 	type 		= newStructure[i];
+			int 	ssIndex 	= Mappings.ssOf(type);
+			int 	topIndex 	= Mappings.topOf(type);
 			
 			if (ssIndex != Mappings.indexUnknown)
 			{
@@ -403,15 +390,15 @@ public class Processing {
 				{
 					if (!switched)
 					{
-						newStructure[i] = Mappings.intToTop(firstTop);
+						newStructure[i] = Mappings.topToState(firstTop);
 					}
 					else if (firstTop == Mappings.indexInside)
 					{
-						newStructure[i] = Mappings.intToTop(Mappings.indexOutside);
+						newStructure[i] = Mappings.topToState(Mappings.indexOutside);
 					}
 					else if (firstTop == Mappings.indexOutside)
 					{
-						newStructure[i] = Mappings.intToTop(Mappings.indexInside);
+						newStructure[i] = Mappings.topToState(Mappings.indexInside);
 					}
 				}
 			}
@@ -447,39 +434,30 @@ public class Processing {
 		int[] 	tmhScores 	= protein.getTmhRaw();
 		int[] 	solScores 	= protein.getSolRaw();
 		int[] 	segScores 	= protein.getSegmentRaw();
-		char[] 	prediction 	= protein.getPrediction();
+		byte[] 	prediction 	= protein.getPrediction();
 		
 		if (tmhScores == null || segScores == null || prediction == null) {return;}
 		
-		int[] confidence = new int[prediction.length];
+		int[] 			confidence 	= new int[prediction.length];
+		SegmentIndex 	segments 	= protein.getSegments();
 		
-		for (int i = 0; i < prediction.length; ++i)
+		for (int k = 0; k < segments.size(); ++k)
 		{
-			char type = prediction[i];
-			
-			if (Mappings.ssToInt(type) == Mappings.indexTmh)
+			if (Mappings.ssOf(segments.getType(k)) == Mappings.indexTmh)
 			{
 				int conf 	= 0;
-				int start 	= i;
+				int start 	= segments.getStart(k);
+				int end 	= segments.getEnd(k) + 1;
 				
-				while (i < prediction.length && prediction[i] == type)
+				for (int i = start; i < end; ++i)
 				{
 					conf += Math.max((tmhScores[i] - solScores[i] + 125) , segScores[i]);
-					
-					++i;
 				}
 				
-				int end = i;
-				
 				conf = conf / (end - start);
 				conf = conf / 100;
 				
-				for (int j = start; j < end; ++j)
-				{
-					confidence[j] = Math.min(9, conf);
-				}
-				
-				--i;
+				Arrays.fill(confidence, start, end, Math.min(9, conf));
 			}
 		}
 		
@@ -0,0 +1,126 @@
+//    <TMSEG: Prediction of Transmembrane Helices in Proteins.>
+//    Copyright (C) 2014  Michael Bernhofer
+//
+//    This program is free software: you can redistribute it and/or modify
+//    it under the terms of the GNU General Public License as published by
+//    the Free Software Foundation, either version 3 of the License, or
+//    (at your option) any later version.
+//
+//    This program is distributed in the hope that it will be useful,
+//    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//    GNU General Public License for more details.
+//
+//    You should have received a copy of the GNU General Public License
+//    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package util;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import data.Prediction;
+import data.Protein;
+
+
+/**
+ * Java Flight Recorder events for the prediction stages of a single protein.
+ * The events are only enabled (and committed) while a recording is running, e.g.
+ * java -XX:StartFlightRecording=filename=tmseg.jfr -jar tmseg.jar ...
+ */
+public class Events {
+	
+	
+	@Category({"TMSEG"})
+	@StackTrace(false)
+	public static abstract class ProteinEvent extends Event
+	{
+		@Label("Protein")
+		String 	protein;
+		
+		@Label("Length")
+		int 	length;
+		
+		
+		/**
+		 * Sets the protein name and length if the event is enabled.
+		 * 
+		 * @param protein
+		 */
+		public void setProtein(Protein protein)
+		{
+			if (protein == null || !this.isEnabled()) {return;}
+			
+			this.protein 	= protein.getName();
+			this.length 	= protein.getSequence() != null ? protein.getLength() : 0;
+		}
+		
+		
+		/**
+		 * Sets the protein name and length from a result if the event is enabled.
+		 * 
+		 * @param prediction
+		 */
+		public void setPrediction(Prediction prediction)
+		{
+			if (prediction == null || !this.isEnabled()) {return;}
+			
+			this.protein 	= prediction.getName();
+			this.length 	= prediction.getLength();
+		}
+	}
+	
+	
+	@Name("tmseg.PssmLoad")
+	@Label("PSSM Load")
+	@Description("Parsing of the PSSM file of a protein")
+	public static class PssmLoad extends ProteinEvent {}
+	
+	
+	@Name("tmseg.Indexing")
+	@Label("Indexing")
+	@Description("Per-residue scoring with the HelixIndexer")
+	public static class Indexing extends ProteinEvent {}
+	
+	
+	@Name("tmseg.Refinement")
+	@Label("Refinement Round")
+	@Description("One round of splitting and adjusting TMHs with the HelixPredictor")
+	public static class Refinement extends ProteinEvent
+	{
+		@Label("Round")
+		int 	round;
+		
+		@Label("Helices")
+		int 	helices;
+		
+		@Label("Candidates")
+		@Description("Number of classifier evaluations")
+		long 	candidates;
+		
+		
+		public void setRound(int round, int helices, long candidates)
+		{
+			this.round 		= round;
+			this.helices 	= helices;
+			this.candidates = candidates;
+		}
+	}
+	
+	
+	@Name("tmseg.Topology")
+	@Label("Topology")
+	@Description("Topology prediction with the TopologyPredictor")
+	public static class Topology extends ProteinEvent {}
+	
+	
+	@Name("tmseg.Output")
+	@Label("Output")
+	@Description("Formatting of the prediction files of a protein and queueing them for the writer thread (the file I/O is not included)")
+	public static class Output extends ProteinEvent {}
+
+}
@@ -21,9 +21,32 @@ public class Globals {
 	
 	public static int INDEXER_WINDOW_SIZE 			= 9;
 	public static int INDEXER_INNER_WINDOW_SIZE 	= 4;
+	public static int INDEXER_SAMPLING_STEP 		= 1;
+	public static int INDEXER_SAMPLING_MARGIN 		= 250;
+	
+	public static int PROCESSING_WEIGHT_SOL 		= 185;
+	public static int PROCESSING_WEIGHT_TMH 		= 60;
+	public static int PROCESSING_WEIGHT_SIG 		= 0;
 	
 	public static int PREDICTOR_HELIX_MIN_SIZE 		= 17;
 	public static int PREDICTOR_GAP_MIN_SIZE 		= 1;
 	public static int PREDICTOR_MAX_SHIFT 			= 3;
+	
+	public static boolean PREDICTOR_GATE 			= false;
+	public static int PREDICTOR_GATE_MIN_LENGTH 	= 18;
+	public static int PREDICTOR_GATE_MAX_LENGTH 	= 25;
+	public static int PREDICTOR_GATE_MIN_SCORE 		= 750;
+	public static int PREDICTOR_GATE_MAX_FLANK 		= 250;
+	
+	public static int PREFILTER_WINDOW_SIZE 		= 19;
+	
+	public static boolean PSSM_OFF_HEAP 			= false;
+	
+	public static int OUTPUT_QUEUE_SIZE 			= 256;
+	public static int OUTPUT_BUFFER_SIZE 			= 65536;
+	
+	public static int ARCHIVE_PAIRING_BUFFER 		= 1024;
+	public static int WATCH_SETTLE_MILLIS 			= 1000;
+	public static int QUARANTINE_MIN_PROTEINS 		= 100;
 
 }
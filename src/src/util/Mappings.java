@@ -33,6 +33,64 @@ public class Mappings {
 	public static final int indexInside 	= 5;
 	public static final int indexOutside 	= 6;
 	
+	//byte codes of the sequence and structure states in Protein: the 20 amino acids and
+	//the gap are coded by their index, the states N, H, L, S, U, 1 and 2 by the index of
+	//their secondary structure (topology) and all other characters by their ASCII value
+	public static final byte stateNotTmh 	= indexNotTmh;
+	public static final byte stateTmh 		= indexTmh;
+	public static final byte stateLoop 		= indexLoop;
+	public static final byte stateSignal 	= indexSignal;
+	public static final byte stateUnknown 	= indexUnknown;
+	public static final byte stateInside 	= indexInside;
+	public static final byte stateOutside 	= indexOutside;
+	
+	private static final char[] 	stateChars 	= {'N', 'H', 'L', 'S', 'U', '1', '2'};
+	private static final int[] 		stateSs 	= new int[128];
+	private static final int[] 		stateTop 	= new int[128];
+	
+	//bit masks of the 20 amino acids with the given property (bit j for amino acid j)
+	public static final int maskHydrophobic;
+	public static final int maskPositive;
+	public static final int maskNegative;
+	public static final int maskCharged;
+	public static final int maskPolar;
+	
+	private static final double[] 	hydrophobicities = new double[20];
+	
+	static
+	{
+		for (int i = 0; i < 128; ++i)
+		{
+			char state = i < stateChars.length ? stateChars[i] : (char)i;
+			
+			stateSs[i] 	= ssToInt(state);
+			stateTop[i] = topToInt(state);
+		}
+		
+		int hydrophobic = 0;
+		int positive 	= 0;
+		int negative 	= 0;
+		int polar 		= 0;
+		
+		for (int i = 0; i < 20; ++i)
+		{
+			char aa = intToAa(i);
+			
+			hydrophobicities[i] = hydrophobicity(aa);
+			
+			if (hydrophobicity(aa) > 0) {hydrophobic 	|= 1 << i;}
+			if (charge(aa) > 0) 		{positive 		|= 1 << i;}
+			if (charge(aa) < 0) 		{negative 		|= 1 << i;}
+			if (polarity(aa) > 0) 		{polar 			|= 1 << i;}
+		}
+		
+		maskHydrophobic = hydrophobic;
+		maskPositive 	= positive;
+		maskNegative 	= negative;
+		maskCharged 	= positive | negative;
+		maskPolar 		= polar;
+	}
+	
 	
 	public static int aaToInt(char aminoAcid)
 	{
@@ -151,6 +209,172 @@ public class Mappings {
 	}
 	
 	
+	/**
+	 * Returns the secondary structure index of a state code.
+	 * 
+	 * @param state
+	 * @return
+	 */
+	public static int ssOf(byte state)
+	{
+		return stateSs[state];
+	}
+	
+	
+	/**
+	 * Returns the topology index of a state code (defaultValue if none).
+	 * 
+	 * @param state
+	 * @return
+	 */
+	public static int topOf(byte state)
+	{
+		return stateTop[state];
+	}
+	
+	
+	public static byte topToState(int topology)
+	{
+		switch (topology)
+		{
+			case indexInside: 	return stateInside;
+			case indexOutside: 	return stateOutside;
+			default: 			return encodeState('X');
+		}
+	}
+	
+	
+	/**
+	 * Returns the segment name of a state code as used in the output files.
+	 * 
+	 * @param state
+	 * @return
+	 */
+	public static String segmentName(byte state)
+	{
+		int ss 	= ssOf(state);
+		int top = topOf(state);
+		
+		if (ss == indexTmh) 	{return "TRANSMEM";}
+		if (ss == indexLoop) 	{return "REENTRANT";}
+		if (ss == indexSignal) 	{return "SIGNAL";}
+		
+		if (ss == indexNotTmh)
+		{
+			if (top == indexInside) 	{return "INSIDE";}
+			if (top == indexOutside) 	{return "OUTSIDE";}
+			
+			return "NON-MEM";
+		}
+		
+		return "UNKNOWN";
+	}
+	
+	
+	public static byte encodeResidue(char aminoAcid)
+	{
+		int index = aaToInt(aminoAcid);
+		
+		//keep lower case and unknown residues as they are
+		if (index != defaultValue && intToAa(index) == aminoAcid) {return (byte)index;}
+		
+		return encodeOther(aminoAcid);
+	}
+	
+	
+	public static char decodeResidue(byte residue)
+	{
+		return residue <= 20 ? intToAa(residue) : (char)residue;
+	}
+	
+	
+	public static byte encodeState(char state)
+	{
+		for (int i = 0; i < stateChars.length; ++i)
+		{
+			if (stateChars[i] == state) {return (byte)i;}
+		}
+		
+		return encodeOther(state);
+	}
+	
+	
+	public static char decodeState(byte state)
+	{
+		return state < stateChars.length ? stateChars[state] : (char)state;
+	}
+	
+	
+	public static byte[] encodeResidues(String sequence)
+	{
+		byte[] residues = new byte[sequence.length()];
+		
+		for (int i = 0; i < residues.length; ++i) {residues[i] = encodeResidue(sequence.charAt(i));}
+		
+		return residues;
+	}
+	
+	
+	public static String decodeResidues(byte[] residues)
+	{
+		char[] sequence = new char[residues.length];
+		
+		for (int i = 0; i < residues.length; ++i) {sequence[i] = decodeResidue(residues[i]);}
+		
+		return new String(sequence);
+	}
+	
+	
+	public static byte[] encodeStates(String structure)
+	{
+		byte[] states = new byte[structure.length()];
+		
+		for (int i = 0; i < states.length; ++i) {states[i] = encodeState(structure.charAt(i));}
+		
+		return states;
+	}
+	
+	
+	public static String decodeStates(byte[] states)
+	{
+		return decodeStates(states, 0, states.length);
+	}
+	
+	
+	public static String decodeStates(byte[] states, int start, int end)
+	{
+		char[] structure = new char[end - start];
+		
+		for (int i = start; i < end; ++i) {structure[i - start] = decodeState(states[i]);}
+		
+		return new String(structure);
+	}
+	
+	
+	/**
+	 * Codes a character without index by its ASCII value (printable characters only).
+	 * 
+	 * @param character
+	 * @return
+	 */
+	private static byte encodeOther(char character)
+	{
+		return character >= ' ' && character < 127 ? (byte)character : (byte)'?';
+	}
+	
+	
+	/**
+	 * Returns the hydrophobicity of the amino acid with the given index.
+	 * 
+	 * @param aminoAcid
+	 * @return
+	 */
+	public static double hydrophobicityOf(int aminoAcid)
+	{
+		return hydrophobicities[aminoAcid];
+	}
+	
+	
 	public static double hydrophobicity(char aminoAcid)
 	{
 		aminoAcid = Character.toUpperCase(aminoAcid);
@@ -0,0 +1,321 @@
+//    <TMSEG: Prediction of Transmembrane Helices in Proteins.>
+//    Copyright (C) 2014  Michael Bernhofer
+//
+//    This program is free software: you can redistribute it and/or modify
+//    it under the terms of the GNU General Public License as published by
+//    the Free Software Foundation, either version 3 of the License, or
+//    (at your option) any later version.
+//
+//    This program is distributed in the hope that it will be useful,
+//    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//    GNU General Public License for more details.
+//
+//    You should have received a copy of the GNU General Public License
+//    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package util;
+
+import io.OutputWriter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * Collects timers per prediction stage, classifier evaluation counts,
+ * and per-protein latencies, and exports them in JSON or Prometheus text format.
+ * The output stage covers formatting the results and handing them to the
+ * background writer; the file I/O itself overlaps with later predictions
+ * and is not part of any stage.
+ */
+public class Metrics {
+	
+	
+	public static final int 		STAGE_PARSE 		= 0;
+	public static final int 		STAGE_INDEX 		= 1;
+	public static final int 		STAGE_PROCESS 		= 2;
+	public static final int 		STAGE_REFINE 		= 3;
+	public static final int 		STAGE_TOPOLOGY 		= 4;
+	public static final int 		STAGE_OUTPUT 		= 5;
+	
+	private static final String[] 	stageNames 			= {"parse", "index", "process", "refine", "topology", "output"};
+	private static final int[] 		lengthBuckets 		= {100, 250, 500, 1000, 2500, 5000, Integer.MAX_VALUE};
+	private static final double[] 	latencyBuckets 		= {0.001, 0.005, 0.01, 0.05, 0.1, 0.5, 1.0, 5.0, 10.0, 60.0};
+	
+	private long 					startTime 			= 0;
+	private long 					proteins 			= 0;
+	private long 					residues 			= 0;
+	private long[] 					stageNanos 			= null;
+	private long[] 					stageCalls 			= null;
+	private long[][] 				histogram 			= null;
+	private long[] 					histogramNanos 		= null;
+	private long[] 					histogramCount 		= null;
+	private Map<String, Long> 		evaluations 		= null;
+	private Map<String, Long> 		shadow 				= null;
+	
+	
+	public Metrics()
+	{
+		this.startTime 		= System.nanoTime();
+		this.stageNanos 	= new long[stageNames.length];
+		this.stageCalls 	= new long[stageNames.length];
+		this.histogram 		= new long[lengthBuckets.length][latencyBuckets.length];
+		this.histogramNanos = new long[lengthBuckets.length];
+		this.histogramCount = new long[lengthBuckets.length];
+		this.evaluations 	= new LinkedHashMap<String, Long>();
+		this.shadow 		= new LinkedHashMap<String, Long>();
+	}
+	
+	
+	/**
+	 * Adds the time spent in a stage for one protein.
+	 * 
+	 * @param stage
+	 * @param nanos
+	 */
+	public synchronized void addTime(int stage, long nanos)
+	{
+		this.stageNanos[stage] += nanos;
+		
+		++this.stageCalls[stage];
+	}
+	
+	
+	/**
+	 * Adds the total latency of one predicted protein.
+	 * 
+	 * @param length
+	 * @param nanos
+	 */
+	public synchronized void addProtein(int length, long nanos)
+	{
+		int 	bucket 	= 0;
+		double 	seconds = nanos / 1e9;
+		
+		while (length > lengthBuckets[bucket]) {++bucket;}
+		
+		for (int i = 0; i < latencyBuckets.length; ++i)
+		{
+			if (seconds <= latencyBuckets[i]) {++this.histogram[bucket][i];}
+		}
+		
+		this.histogramNanos[bucket] += nanos;
+		
+		++this.histogramCount[bucket];
+		++this.proteins;
+		
+		this.residues += length;
+	}
+	
+	
+	/**
+	 * Sets the number of evaluations of a classifier.
+	 * 
+	 * @param classifier
+	 * @param count
+	 */
+	public synchronized void setEvaluations(String classifier, long count)
+	{
+		this.evaluations.put(classifier, count);
+	}
+	
+	
+	/**
+	 * Sets a counter of the shadow comparison against the reference path.
+	 * 
+	 * @param counter
+	 * @param count
+	 */
+	public synchronized void setShadow(String counter, long count)
+	{
+		this.shadow.put(counter, count);
+	}
+	
+	
+	public synchronized long getProteins()
+	{
+		return this.proteins;
+	}
+	
+	
+	public synchronized long getResidues()
+	{
+		return this.residues;
+	}
+	
+	
+	public synchronized long getStageNanos(int stage)
+	{
+		return this.stageNanos[stage];
+	}
+	
+	
+	public static int getStageCount()
+	{
+		return stageNames.length;
+	}
+	
+	
+	public static String getStageName(int stage)
+	{
+		return stageNames[stage];
+	}
+	
+	
+	/**
+	 * Writes all metrics into a file. Files ending with .prom are written
+	 * in Prometheus text format, all others in JSON format.
+	 * 
+	 * @param filename
+	 */
+	public synchronized void write(String filename)
+	{
+		String output = null;
+		
+		if (filename.toLowerCase().endsWith(".prom"))
+		{
+			output = this.toPrometheus();
+		}
+		else
+		{
+			output = this.toJson();
+		}
+		
+		OutputWriter.writeFile(filename, output);
+	}
+	
+	
+	private String toJson()
+	{
+		double 			runTime = (System.nanoTime() - this.startTime) / 1e9;
+		StringBuilder 	output 	= new StringBuilder();
+		
+		output.append("{\n");
+		output.append("  \"run_seconds\": " + runTime + ",\n");
+		output.append("  \"proteins\": " + this.proteins + ",\n");
+		output.append("  \"residues\": " + this.residues + ",\n");
+		output.append("  \"proteins_per_second\": " + (runTime > 0 ? this.proteins / runTime : 0.0) + ",\n");
+		output.append("  \"stages\": {\n");
+		
+		for (int i = 0; i < stageNames.length; ++i)
+		{
+			output.append("    \"" + stageNames[i] + "\": {\"seconds\": " + (this.stageNanos[i] / 1e9) + ", \"calls\": " + this.stageCalls[i] + "}");
+			output.append(i < stageNames.length - 1 ? ",\n" : "\n");
+		}
+		
+		output.append("  },\n");
+		output.append("  \"evaluations\": {");
+		
+		int index = 0;
+		
+		for (Map.Entry<String, Long> entry : this.evaluations.entrySet())
+		{
+			output.append(index++ > 0 ? ", " : "");
+			output.append("\"" + entry.getKey() + "\": " + entry.getValue());
+		}
+		
+		output.append("},\n");
+		
+		if (!this.shadow.isEmpty())
+		{
+			output.append("  \"shadow\": {");
+			
+			index = 0;
+			
+			for (Map.Entry<String, Long> entry : this.shadow.entrySet())
+			{
+				output.append(index++ > 0 ? ", " : "");
+				output.append("\"" + entry.getKey() + "\": " + entry.getValue());
+			}
+			
+			output.append("},\n");
+		}
+		
+		output.append("  \"latency\": [\n");
+		
+		for (int i = 0; i < lengthBuckets.length; ++i)
+		{
+			output.append("    {\"max_length\": " + (lengthBuckets[i] == Integer.MAX_VALUE ? "null" : String.valueOf(lengthBuckets[i])));
+			output.append(", \"count\": " + this.histogramCount[i]);
+			output.append(", \"seconds\": " + (this.histogramNanos[i] / 1e9));
+			output.append(", \"buckets\": {");
+			
+			for (int j = 0; j < latencyBuckets.length; ++j)
+			{
+				output.append((j > 0 ? ", " : "") + "\"" + latencyBuckets[j] + "\": " + this.histogram[i][j]);
+			}
+			
+			output.append("}}");
+			output.append(i < lengthBuckets.length - 1 ? ",\n" : "\n");
+		}
+		
+		output.append("  ]\n");
+		output.append("}\n");
+		
+		return output.toString();
+	}
+	
+	
+	private String toPrometheus()
+	{
+		double 			runTime = (System.nanoTime() - this.startTime) / 1e9;
+		StringBuilder 	output 	= new StringBuilder();
+		
+		output.append("# TYPE tmseg_run_seconds gauge\n");
+		output.append("tmseg_run_seconds " + runTime + "\n");
+		output.append("# TYPE tmseg_proteins_total counter\n");
+		output.append("tmseg_proteins_total " + this.proteins + "\n");
+		output.append("# TYPE tmseg_residues_total counter\n");
+		output.append("tmseg_residues_total " + this.residues + "\n");
+		output.append("# TYPE tmseg_proteins_per_second gauge\n");
+		output.append("tmseg_proteins_per_second " + (runTime > 0 ? this.proteins / runTime : 0.0) + "\n");
+		
+		output.append("# TYPE tmseg_stage_seconds_total counter\n");
+		
+		for (int i = 0; i < stageNames.length; ++i)
+		{
+			output.append("tmseg_stage_seconds_total{stage=\"" + stageNames[i] + "\"} " + (this.stageNanos[i] / 1e9) + "\n");
+		}
+		
+		output.append("# TYPE tmseg_stage_calls_total counter\n");
+		
+		for (int i = 0; i < stageNames.length; ++i)
+		{
+			output.append("tmseg_stage_calls_total{stage=\"" + stageNames[i] + "\"} " + this.stageCalls[i] + "\n");
+		}
+		
+		output.append("# TYPE tmseg_classifier_evaluations_total counter\n");
+		
+		for (Map.Entry<String, Long> entry : this.evaluations.entrySet())
+		{
+			output.append("tmseg_classifier_evaluations_total{classifier=\"" + entry.getKey() + "\"} " + entry.getValue() + "\n");
+		}
+		
+		if (!this.shadow.isEmpty()) {output.append("# TYPE tmseg_shadow_total counter\n");}
+		
+		for (Map.Entry<String, Long> entry : this.shadow.entrySet())
+		{
+			output.append("tmseg_shadow_total{counter=\"" + entry.getKey() + "\"} " + entry.getValue() + "\n");
+		}
+		
+		output.append("# TYPE tmseg_protein_latency_seconds histogram\n");
+		
+		for (int i = 0; i < lengthBuckets.length; ++i)
+		{
+			String length = lengthBuckets[i] == Integer.MAX_VALUE ? "+Inf" : String.valueOf(lengthBuckets[i]);
+			
+			for (int j = 0; j < latencyBuckets.length; ++j)
+			{
+				output.append("tmseg_protein_latency_seconds_bucket{max_length=\"" + length + "\",le=\"" + latencyBuckets[j] + "\"} " + this.histogram[i][j] + "\n");
+			}
+			
+			output.append("tmseg_protein_latency_seconds_bucket{max_length=\"" + length + "\",le=\"+Inf\"} " + this.histogramCount[i] + "\n");
+			output.append("tmseg_protein_latency_seconds_sum{max_length=\"" + length + "\"} " + (this.histogramNanos[i] / 1e9) + "\n");
+			output.append("tmseg_protein_latency_seconds_count{max_length=\"" + length + "\"} " + this.histogramCount[i] + "\n");
+		}
+		
+		return output.toString();
+	}
+
+}
@@ -0,0 +1,142 @@
+//    <TMSEG: Prediction of Transmembrane Helices in Proteins.>
+//    Copyright (C) 2014  Michael Bernhofer
+//
+//    This program is free software: you can redistribute it and/or modify
+//    it under the terms of the GNU General Public License as published by
+//    the Free Software Foundation, either version 3 of the License, or
+//    (at your option) any later version.
+//
+//    This program is distributed in the hope that it will be useful,
+//    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//    GNU General Public License for more details.
+//
+//    You should have received a copy of the GNU General Public License
+//    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package util;
+
+import java.util.Locale;
+
+
+/**
+ * Cost profile of the prediction of a single protein: time per stage,
+ * classifier evaluations and refinement rounds.
+ */
+public class Profile {
+	
+	
+	private String 	name 				= null;
+	private int 	length 				= 0;
+	private long 	totalNanos 			= 0;
+	private long[] 	stageNanos 			= null;
+	
+	private long 	indexerEvaluations 	= 0;
+	private long 	splitEvaluations 	= 0;
+	private long 	adjustEvaluations 	= 0;
+	private long 	rounds 				= 0;
+	private long 	topologyEvaluations = 0;
+	
+	
+	public Profile()
+	{
+		this.stageNanos = new long[Metrics.getStageCount()];
+	}
+	
+	
+	public void addTime(int stage, long nanos)
+	{
+		this.stageNanos[stage] += nanos;
+	}
+	
+	
+	public void setProtein(String name, int length)
+	{
+		this.name 	= name;
+		this.length = length;
+	}
+	
+	
+	public void setTotalNanos(long nanos)
+	{
+		this.totalNanos = nanos;
+	}
+	
+	
+	/**
+	 * Sets the evaluations of the random forests (HelixIndexer windows and
+	 * TopologyPredictor), of the neural network (split and adjust) and the
+	 * number of refinement rounds.
+	 * 
+	 * @param indexer
+	 * @param split
+	 * @param adjust
+	 * @param rounds
+	 * @param topology
+	 */
+	public void setEvaluations(long indexer, long split, long adjust, long rounds, long topology)
+	{
+		this.indexerEvaluations 	= indexer;
+		this.splitEvaluations 		= split;
+		this.adjustEvaluations 		= adjust;
+		this.rounds 				= rounds;
+		this.topologyEvaluations 	= topology;
+	}
+	
+	
+	public String getName()
+	{
+		return this.name;
+	}
+	
+	
+	public long getTotalNanos()
+	{
+		return this.totalNanos;
+	}
+	
+	
+	/**
+	 * Returns the tab-separated column names matching toString().
+	 * 
+	 * @return
+	 */
+	public static String getHeader()
+	{
+		StringBuilder header = new StringBuilder();
+		
+		header.append("protein\tlength\ttotal_ms");
+		
+		for (int i = 0; i < Metrics.getStageCount(); ++i) {header.append("\t" + Metrics.getStageName(i) + "_ms");}
+		
+		header.append("\tforest_indexer\tmlp_split\tmlp_adjust\trounds\tforest_topology");
+		
+		return header.toString();
+	}
+	
+	
+	@Override
+	public String toString()
+	{
+		StringBuilder line = new StringBuilder();
+		
+		line.append(this.name + "\t" + this.length + "\t" + toMillis(this.totalNanos));
+		
+		for (int i = 0; i < this.stageNanos.length; ++i) {line.append("\t" + toMillis(this.stageNanos[i]));}
+		
+		line.append("\t" + this.indexerEvaluations);
+		line.append("\t" + this.splitEvaluations);
+		line.append("\t" + this.adjustEvaluations);
+		line.append("\t" + this.rounds);
+		line.append("\t" + this.topologyEvaluations);
+		
+		return line.toString();
+	}
+	
+	
+	private static String toMillis(long nanos)
+	{
+		return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+	}
+
+}